@@ -0,0 +1,106 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.viktorvranar.airport_metar_service.config.BinaryFormatsConfig;
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+
+/**
+ * JMH benchmarks for encoding the latest, bulk and history responses as JSON, CBOR and Smile.
+ * The mappers are configured like the application mapper, and the payload size of every
+ * response and encoding is printed once per trial next to the serialization cost.
+ *
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Dbenchmark=MetarEncodingBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetarEncodingBenchmark {
+
+    private static final String RAW_DATA = "METAR LDZA 030700Z 24010KT 9999 -SHRA FEW030CB SCT040 15/10 Q1013 NOSIG";
+
+    @Param({"json", "cbor", "smile"})
+    private String encoding;
+
+    private ObjectMapper objectMapper;
+    private MetarData latest;
+    private Map<String, MetarData> bulk;
+    private MetarHistoryPage<MetarData> history;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JsonProcessingException {
+        ObjectMapper jsonMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        objectMapper = switch (encoding) {
+            case "cbor" -> BinaryFormatsConfig.cborMapper(jsonMapper);
+            case "smile" -> BinaryFormatsConfig.smileMapper(jsonMapper);
+            default -> jsonMapper;
+        };
+
+        latest = newMetarData("LDZA", 1);
+        bulk = new LinkedHashMap<>();
+        for (int i = 0; i < 50; i++) {
+            String icaoCode = String.format("K%03d", i);
+            bulk.put(icaoCode, newMetarData(icaoCode, i));
+        }
+        List<MetarData> reports = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            reports.add(newMetarData("LDZA", i));
+        }
+        history = new MetarHistoryPage<>(reports, "eyJvYnNlcnZlZEF0IjoiMjAyNS0wOS0wMyJ9");
+
+        System.out.printf("%n%s payload bytes: latest %d, bulk %d, history %d%n", encoding,
+                encodeLatest().length, encodeBulk().length, encodeHistory().length);
+    }
+
+    @Benchmark
+    public byte[] encodeLatest() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(latest);
+    }
+
+    @Benchmark
+    public byte[] encodeBulk() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bulk);
+    }
+
+    @Benchmark
+    public byte[] encodeHistory() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(history);
+    }
+
+    private static MetarData newMetarData(String icaoCode, int index) {
+        MetarData metarData = new MetarData();
+        metarData.setId(1000L + index);
+        metarData.setIcaoCode(icaoCode);
+        metarData.setReceivedAt(Instant.parse("2025-09-03T07:05:00Z").minusSeconds(1800L * index));
+        MetarParser.parse(metarData, RAW_DATA, metarData.getReceivedAt());
+        return metarData;
+    }
+}
@@ -0,0 +1,125 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+
+/**
+ * JMH benchmarks for the METAR parse and decode hot path.
+ * Every invocation takes the next report of the bundled corpus, so the numbers are an average
+ * over the whole mix of report shapes rather than one best case. Throughput mode reports
+ * operations per microsecond, sample time mode reports the latency percentiles, and the gc
+ * profiler (enabled in the benchmark profile, see pom.xml) reports the allocation rate.
+ *
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetarParseBenchmark {
+
+    private static final String CORPUS = "/metar/benchmark-corpus.txt";
+
+    /**
+     * Fixed receipt time, so observation time resolution does the same work on every run.
+     */
+    private static final Instant RECEIVED_AT = Instant.parse("2025-09-12T13:00:00Z");
+
+    private MetarService metarService;
+    private String[] reports;
+    private MetarData[] parsed;
+    private String[] weatherConditions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // Parsing and decoding never touch the repository or the latest METAR cache
+        metarService = new MetarService(null, null, null, null);
+        reports = loadCorpus().toArray(new String[0]);
+
+        parsed = new MetarData[reports.length];
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i < reports.length; i++) {
+            parsed[i] = newMetarData(reports[i]);
+            metarService.parseAndSetMetarElements(parsed[i], reports[i]);
+            if (parsed[i].getWeatherConditions() != null) {
+                conditions.add(parsed[i].getWeatherConditions());
+            }
+        }
+        weatherConditions = conditions.toArray(new String[0]);
+    }
+
+    @Benchmark
+    public MetarData parseAndSetMetarElements() {
+        String rawData = reports[nextIndex(reports.length)];
+        MetarData metarData = newMetarData(rawData);
+        metarService.parseAndSetMetarElements(metarData, rawData);
+        return metarData;
+    }
+
+    @Benchmark
+    public String decodeMetarData() {
+        return MetarDecoder.decode(parsed[nextIndex(parsed.length)]);
+    }
+
+    @Benchmark
+    public String decodeMetarDataMemoized() {
+        return metarService.decodeMetarData(parsed[nextIndex(parsed.length)]);
+    }
+
+    @Benchmark
+    public String decodeWeatherConditions() {
+        return MetarDecoder.decodeWeatherConditions(weatherConditions[nextIndex(weatherConditions.length)]);
+    }
+
+    private int nextIndex(int length) {
+        int index = next;
+        next = index + 1 < length ? index + 1 : 0;
+        return index % length;
+    }
+
+    private static MetarData newMetarData(String rawData) {
+        MetarData metarData = new MetarData();
+        metarData.setIcaoCode("LDZA");
+        metarData.setRawData(rawData);
+        metarData.setReceivedAt(RECEIVED_AT);
+        return metarData;
+    }
+
+    private static List<String> loadCorpus() throws IOException {
+        List<String> reports = new ArrayList<>();
+        try (InputStream in = MetarParseBenchmark.class.getResourceAsStream(CORPUS);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith("#")) {
+                    reports.add(line);
+                }
+            }
+        }
+        return reports;
+    }
+}
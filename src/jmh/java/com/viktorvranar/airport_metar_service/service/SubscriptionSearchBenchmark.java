@@ -0,0 +1,89 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort;
+
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.repository.SubscriptionRepository;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * JMH benchmarks for filtered and paged subscription listings from the subscription cache search index.
+ * Every ICAO code of a 4 character alphabet is subscribed, every third one inactive.
+ *
+ * Run with: ./mvnw -Pbenchmark test-compile exec:exec -Dbenchmark=SubscriptionSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SubscriptionSearchBenchmark {
+
+    @Param({"50000"})
+    private int subscriptions;
+
+    private SubscriptionCache subscriptionCache;
+    private String secondPageCursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Subscription> all = new ArrayList<>(subscriptions);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        for (int i = 0; i < subscriptions; i++) {
+            int n = i;
+            StringBuilder icaoCode = new StringBuilder();
+            for (int c = 0; c < 4; c++) {
+                icaoCode.append(alphabet.charAt(n % alphabet.length()));
+                n /= alphabet.length();
+            }
+            Subscription subscription = new Subscription(icaoCode.toString());
+            subscription.setId(i + 1L);
+            subscription.setActive(i % 3 != 0);
+            all.add(subscription);
+        }
+        SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+        when(subscriptionRepository.findAll(any(Sort.class))).thenReturn(all);
+        subscriptionCache = new SubscriptionCache(subscriptionRepository);
+        secondPageCursor = subscriptionCache.find(null, List.of(), SubscriptionSort.ICAO_CODE, null, 100).getNextCursor();
+    }
+
+    @Benchmark
+    public SubscriptionPage substringPage() {
+        return subscriptionCache.find(true, List.of("%ZA%"), SubscriptionSort.ID, null, 100);
+    }
+
+    @Benchmark
+    public SubscriptionPage prefixPage() {
+        return subscriptionCache.find(null, List.of("LD%"), SubscriptionSort.ICAO_CODE_DESC, null, 100);
+    }
+
+    @Benchmark
+    public SubscriptionPage secondPageByIcaoCode() {
+        return subscriptionCache.find(null, List.of(), SubscriptionSort.ICAO_CODE, secondPageCursor, 100);
+    }
+
+    @Benchmark
+    public List<Subscription> substringAll() {
+        return subscriptionCache.find(null, List.of("%A%"), SubscriptionSort.ID, null, Integer.MAX_VALUE).getSubscriptions();
+    }
+}
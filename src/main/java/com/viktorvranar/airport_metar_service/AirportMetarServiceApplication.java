@@ -2,6 +2,7 @@ package com.viktorvranar.airport_metar_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for the Airport METAR Service.
@@ -9,6 +10,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * METAR (Meteorological Terminal Aviation Routine Weather Report) data for airports.
  */
 @SpringBootApplication
+@EnableScheduling
 public class AirportMetarServiceApplication {
 
 	/**
@@ -0,0 +1,79 @@
+package com.viktorvranar.airport_metar_service.config;
+
+import java.util.List;
+import java.util.ListIterator;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Binary encodings of the JSON responses, selected with the Accept header: CBOR (application/cbor)
+ * and Jackson Smile (application/x-jackson-smile).
+ * The binary mappers are copies of the application JSON ObjectMapper with another factory, so every
+ * response has the same fields, names and date formats in all encodings. JSON stays the default.
+ */
+@Configuration
+public class BinaryFormatsConfig implements WebMvcConfigurer {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    private final ObjectMapper objectMapper;
+
+    public BinaryFormatsConfig(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Create the CBOR mapper for a JSON mapper.
+     *
+     * @param objectMapper the JSON ObjectMapper
+     * @return a copy of the mapper writing CBOR
+     */
+    public static ObjectMapper cborMapper(ObjectMapper objectMapper) {
+        return objectMapper.copyWith(new CBORFactory());
+    }
+
+    /**
+     * Create the Smile mapper for a JSON mapper.
+     *
+     * @param objectMapper the JSON ObjectMapper
+     * @return a copy of the mapper writing Smile
+     */
+    public static ObjectMapper smileMapper(ObjectMapper objectMapper) {
+        return objectMapper.copyWith(new SmileFactory());
+    }
+
+    /**
+     * Replace the default CBOR and Smile converters, which use a mapper without the application
+     * configuration, keeping their position after the JSON converter.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        boolean cbor = false;
+        boolean smile = false;
+        for (ListIterator<HttpMessageConverter<?>> it = converters.listIterator(); it.hasNext(); ) {
+            HttpMessageConverter<?> converter = it.next();
+            if (converter instanceof MappingJackson2CborHttpMessageConverter) {
+                it.set(new MappingJackson2CborHttpMessageConverter(cborMapper(objectMapper)));
+                cbor = true;
+            } else if (converter instanceof MappingJackson2SmileHttpMessageConverter) {
+                it.set(new MappingJackson2SmileHttpMessageConverter(smileMapper(objectMapper)));
+                smile = true;
+            }
+        }
+        if (!smile) {
+            converters.add(new MappingJackson2SmileHttpMessageConverter(smileMapper(objectMapper)));
+        }
+        if (!cbor) {
+            converters.add(new MappingJackson2CborHttpMessageConverter(cborMapper(objectMapper)));
+        }
+    }
+}
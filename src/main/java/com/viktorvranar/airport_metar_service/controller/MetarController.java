@@ -2,8 +2,15 @@ package com.viktorvranar.airport_metar_service.controller;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -11,17 +18,52 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viktorvranar.airport_metar_service.config.BinaryFormatsConfig;
 import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.MetarField;
+import com.viktorvranar.airport_metar_service.entity.MetarProjection;
+import com.viktorvranar.airport_metar_service.exception.MetarDataNotFoundException;
+import com.viktorvranar.airport_metar_service.service.MetarDemandTracker;
+import com.viktorvranar.airport_metar_service.service.MetarExportService;
+import com.viktorvranar.airport_metar_service.service.MetarHistoryPage;
+import com.viktorvranar.airport_metar_service.service.MetarIngestProgress;
+import com.viktorvranar.airport_metar_service.service.MetarIngestQueue;
+import com.viktorvranar.airport_metar_service.service.MetarResponseCache;
 import com.viktorvranar.airport_metar_service.service.MetarService;
+import com.viktorvranar.airport_metar_service.service.MetarStreamHub;
+import com.viktorvranar.airport_metar_service.service.MetarStreamIngestService;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Set;
-import java.util.HashSet;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST controller for managing METAR (Meteorological Terminal Aviation Routine Weather Report) data.
@@ -33,62 +75,222 @@ public class MetarController {
     
     private static final Logger logger = LoggerFactory.getLogger(MetarController.class);
     
+    /**
+     * The maximum number of airports in one bulk latest METAR request.
+     */
+    static final int MAX_BULK_ICAO_CODES = 500;
+    
+    /**
+     * The maximum number of reports on one METAR history page.
+     */
+    static final int MAX_HISTORY_LIMIT = 1000;
+    
     private final MetarService metarService;
+    private final MetarStreamIngestService metarStreamIngestService;
+    private final MetarIngestQueue metarIngestQueue;
+    private final MetarExportService metarExportService;
+    private final MetarResponseCache metarResponseCache;
+    private final MetarStreamHub metarStreamHub;
+    private final MetarDemandTracker metarDemandTracker;
+    private final ObjectMapper objectMapper;
+    private final Duration longPollTimeout;
+    private final Duration exportTimeout;
+    
+    /**
+     * Permits of running exports, each holds a database connection for as long as it runs.
+     */
+    private final Semaphore exportPermits;
     
-    public MetarController(MetarService metarService) {
+    /**
+     * Mappers of the encodings the latest METAR data can be written in, in order of preference.
+     */
+    private final Map<MediaType, ObjectMapper> objectMappers;
+    
+    public MetarController(MetarService metarService, MetarStreamIngestService metarStreamIngestService,
+                           MetarIngestQueue metarIngestQueue, MetarExportService metarExportService,
+                           MetarResponseCache metarResponseCache, MetarStreamHub metarStreamHub,
+                           MetarDemandTracker metarDemandTracker, ObjectMapper objectMapper,
+                           @Value("${metar.long-poll.timeout:PT30S}") Duration longPollTimeout,
+                           @Value("${metar.export.timeout:PT1H}") Duration exportTimeout,
+                           @Value("${metar.export.max-concurrent:4}") int maxConcurrentExports) {
         this.metarService = metarService;
+        this.metarStreamIngestService = metarStreamIngestService;
+        this.metarIngestQueue = metarIngestQueue;
+        this.metarExportService = metarExportService;
+        this.metarResponseCache = metarResponseCache;
+        this.metarStreamHub = metarStreamHub;
+        this.metarDemandTracker = metarDemandTracker;
+        this.objectMapper = objectMapper;
+        this.longPollTimeout = longPollTimeout;
+        this.exportTimeout = exportTimeout;
+        this.exportPermits = new Semaphore(maxConcurrentExports);
+        this.objectMappers = new LinkedHashMap<>();
+        this.objectMappers.put(MediaType.APPLICATION_JSON, objectMapper);
+        this.objectMappers.put(MediaType.APPLICATION_CBOR, BinaryFormatsConfig.cborMapper(objectMapper));
+        this.objectMappers.put(BinaryFormatsConfig.APPLICATION_SMILE, BinaryFormatsConfig.smileMapper(objectMapper));
     }
     
     /**
      * Store METAR data for an airport.
+     * With asynchronous ingest enabled the report is only validated and queued, and the
+     * response is ACCEPTED with a ticket, or TOO_MANY_REQUESTS if the queue is full.
      *
      * @param icaoCode the ICAO code of the airport
      * @param request the request containing METAR data
-     * @return ResponseEntity with the saved METAR data
+     * @return ResponseEntity with the saved METAR data, or OK with the already stored data and
+     *         deduplicated set to true if the report is a repeat
      */
     @PostMapping("/{icaoCode}/METAR")
-    public ResponseEntity<MetarData> storeMetarData(
+    public ResponseEntity<?> storeMetarData(
             @PathVariable String icaoCode,
             @Valid @RequestBody MetarDataRequest request) {
         
+        if (metarIngestQueue.isEnabled()) {
+            String ticket = metarIngestQueue.enqueue(icaoCode, request.getData());
+            if (ticket == null) {
+                logger.warn("Ingest queue full, refusing METAR data for airport: {}", icaoCode);
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+            }
+            logger.info("Queued METAR data for airport: {} with ticket: {}", icaoCode, ticket);
+            return new ResponseEntity<>(new MetarIngestTicket(ticket, icaoCode), HttpStatus.ACCEPTED);
+        }
+        
         logger.info("Storing METAR data for airport: {}", icaoCode);
         MetarData metarData = metarService.saveMetarData(icaoCode, request.getData());
+        if (metarData.isDeduplicated()) {
+            logger.info("METAR data for airport: {} is a repeat of ID: {}, not stored again", icaoCode, metarData.getId());
+            return new ResponseEntity<>(metarData, HttpStatus.OK);
+        }
         logger.info("Successfully stored METAR data for airport: {} with ID: {}", icaoCode, metarData.getId());
         return new ResponseEntity<>(metarData, HttpStatus.CREATED);
     }
     
+    /**
+     * Store a batch of METAR reports for any number of airports in a single transaction.
+     * Archive reports are backfilled with a referenceTime, per report or for the whole batch, that their
+     * day/time group is resolved against instead of the receipt time.
+     *
+     * @param request the request containing the METAR reports
+     * @return ResponseEntity with the saved METAR data in request order, repeated reports are skipped
+     */
+    @PostMapping("/METAR/batch")
+    public ResponseEntity<List<MetarData>> storeMetarDataBatch(@Valid @RequestBody MetarBatchRequest request) {
+        logger.info("Storing batch of {} METAR reports", request.getReports().size());
+        List<MetarData> metarDataList = new ArrayList<>(request.getReports().size());
+        for (MetarBatchItem item : request.getReports()) {
+            Instant referenceTime = item.getReferenceTime() != null ? item.getReferenceTime() : request.getReferenceTime();
+            metarDataList.add(metarService.createMetarData(item.getIcaoCode(), item.getData(), referenceTime));
+        }
+        List<MetarData> savedData = metarService.saveMetarDataBatch(metarDataList);
+        logger.info("Successfully stored batch of {} METAR reports", savedData.size());
+        return new ResponseEntity<>(savedData, HttpStatus.CREATED);
+    }
+    
+    /**
+     * Bulk load newline-delimited METAR reports from the request body.
+     * The body is read incrementally and stored in bounded chunks. One progress line is written
+     * to the response per stored chunk, followed by a final summary line. The summary has completed
+     * set to true if the whole body was read, and false if it broke off; lines with an invalid ICAO
+     * code or report are counted as rejected, reports of chunks that could not be saved as failed.
+     *
+     * @param referenceTime optional time the day/time groups of the reports are resolved against instead of
+     *                      the receipt time, for backfilling archives; a referenceTime on a line takes precedence
+     * @param request the HTTP request with one JSON report per line, e.g. {"icaoCode": "LDZA", "data": "..."}
+     * @param response the HTTP response the progress lines are written to
+     * @throws IOException if the request or the response cannot be opened
+     */
+    @PostMapping(value = "/METAR/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamMetarData(@RequestParam(required = false) Instant referenceTime,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        logger.info("Starting streaming ingest of METAR reports");
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream out = response.getOutputStream();
+        
+        Reader reader = new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8);
+        MetarIngestProgress summary = metarStreamIngestService.ingest(reader, referenceTime, progress -> writeProgress(out, progress));
+        writeProgress(out, summary);
+        logger.info("Finished streaming ingest with {} stored, {} rejected and {} failed reports, completed: {}",
+                summary.getTotalStored(), summary.getTotalRejected(), summary.getTotalFailed(), summary.isCompleted());
+    }
+    
+    /**
+     * Write a single progress line and flush it to the client.
+     *
+     * @param out the response output stream
+     * @param progress the progress to write
+     */
+    private void writeProgress(OutputStream out, MetarIngestProgress progress) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(progress));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
     /**
      * Retrieve the latest METAR data for an airport.
+     * Responses carry a strong ETag built from the record id, its parse version and the representation, and Last-Modified
+     * from the observation time, so If-None-Match and If-Modified-Since are answered with NOT_MODIFIED
+     * before anything is serialized. Representations of cached reports are serialized once and then
+     * written from the response cache. The body is JSON, or CBOR or Smile if preferred by the Accept header.
+     * Every request counts as read demand for the airport, see MetarDemandTracker.
      *
      * @param icaoCode the ICAO code of the airport
-     * @param fields optional comma-separated list of fields to include in the response
+     * @param fields optional comma-separated list of fields to include in the response, only their
+     *               columns are read and fields that are not selected are left out of the response
      * @param decoded optional parameter to request decoded METAR data in natural language
-     * @return ResponseEntity with the latest METAR data or NOT_FOUND if no data exists
+     * @param webRequest the current request, used to evaluate the conditional request headers
+     * @return ResponseEntity with the latest METAR data, NOT_FOUND if no data exists, NOT_ACCEPTABLE if
+     *         no supported encoding is accepted, or null if a NOT_MODIFIED response has already been set up
      */
     @GetMapping("/{icaoCode}/METAR")
     public ResponseEntity<?> getLatestMetarData(
             @PathVariable String icaoCode,
             @RequestParam(required = false) String fields,
-            @RequestParam(required = false, defaultValue = "false") boolean decoded) {
+            @RequestParam(required = false, defaultValue = "false") boolean decoded,
+            WebRequest webRequest) {
         logger.info("Retrieving latest METAR data for airport: {}", icaoCode);
+        metarDemandTracker.recordRead(icaoCode);
+        MediaType mediaType = selectMediaType(webRequest.getHeader(HttpHeaders.ACCEPT));
+        if (mediaType == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        }
         try {
+            // If fields parameter is provided, return partial data
+            Set<MetarField> fieldSet = parseFields(fields);
+            if (!decoded && fieldSet != null) {
+                MetarProjection projection = metarService.getLatestMetarData(icaoCode, fieldSet);
+                logger.info("Successfully retrieved METAR data for airport: {} with ID: {}", icaoCode, projection.getId());
+                String eTag = createETag(projection.getId(), projection.getParseVersion(), false, fieldSet)
+                        + encodingSuffix(mediaType);
+                if (webRequest.checkNotModified(eTag,
+                        lastModified(projection.getObservedAt(), projection.getReceivedAt()))) {
+                    logger.debug("METAR data for airport: {} not modified", icaoCode);
+                    return null;
+                }
+                return createResponse(projection.getSource(), eTag, mediaType, () -> projection);
+            }
+            
             MetarData metarData = metarService.getLatestMetarData(icaoCode);
             logger.info("Successfully retrieved METAR data for airport: {} with ID: {}", icaoCode, metarData.getId());
             
-            // If decoded parameter is true, return decoded data
-            if (decoded) {
-                String decodedData = metarService.decodeMetarData(metarData);
-                return new ResponseEntity<>(new MetarDataDecoded(decodedData), HttpStatus.OK);
+            String eTag = createETag(metarData.getId(), metarData.getParseVersion(), decoded, null) + encodingSuffix(mediaType);
+            if (webRequest.checkNotModified(eTag, lastModified(metarData.getObservedAt(), metarData.getReceivedAt()))) {
+                logger.debug("METAR data for airport: {} not modified", icaoCode);
+                return null;
             }
             
-            // If fields parameter is provided, return partial data
-            if (fields != null && !fields.isEmpty()) {
-                MetarDataPartial partialData = createPartialMetarData(metarData, fields);
-                return new ResponseEntity<>(partialData, HttpStatus.OK);
+            // If decoded parameter is true, return decoded data
+            if (decoded) {
+                return createResponse(metarData, eTag, mediaType,
+                        () -> new MetarDataDecoded(metarService.decodeMetarData(metarData)));
             }
             
             // Otherwise return full data
-            return new ResponseEntity<>(metarData, HttpStatus.OK);
+            return createResponse(metarData, eTag, mediaType, () -> metarData);
         } catch (Exception e) {
             logger.info("No METAR data found for airport: {}", icaoCode);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -96,193 +298,554 @@ public class MetarController {
     }
     
     /**
-     * Create a partial METAR data object with only the specified fields.
+     * Long-poll for METAR data of an airport newer than the report the caller has.
+     * If a newer report is stored already it is returned right away, otherwise the request is parked
+     * without holding a thread until a newer report is stored or the wait times out.
+     * Representations and encodings are the same as without sinceId.
      *
-     * @param metarData the full METAR data object
-     * @param fields comma-separated list of fields to include
-     * @return a MetarDataPartial object with only the specified fields
+     * @param icaoCode the ICAO code of the airport
+     * @param sinceId the id of the newest report the caller has, 0 to wait for the first report
+     * @param fields optional comma-separated list of fields to include in the response
+     * @param decoded optional parameter to request decoded METAR data in natural language
+     * @param webRequest the current request, used for the Accept header
+     * @return the newer METAR data, NO_CONTENT if none was stored within metar.long-poll.timeout,
+     *         NOT_ACCEPTABLE if no supported encoding is accepted, or SERVICE_UNAVAILABLE if too many
+     *         requests are waiting
      */
-    private MetarDataPartial createPartialMetarData(MetarData metarData, String fields) {
-        MetarDataPartial partial = new MetarDataPartial();
-        Set<String> fieldSet = new HashSet<>(Arrays.asList(fields.split(",")));
+    @GetMapping(value = "/{icaoCode}/METAR", params = "sinceId")
+    public DeferredResult<ResponseEntity<?>> awaitLatestMetarData(
+            @PathVariable String icaoCode,
+            @RequestParam long sinceId,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false, defaultValue = "false") boolean decoded,
+            WebRequest webRequest) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(longPollTimeout.toMillis(),
+                () -> new ResponseEntity<>(HttpStatus.NO_CONTENT));
+        metarDemandTracker.recordRead(icaoCode);
+        MediaType mediaType = selectMediaType(webRequest.getHeader(HttpHeaders.ACCEPT));
+        if (mediaType == null) {
+            result.setResult(new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE));
+            return result;
+        }
+        Set<MetarField> fieldSet = parseFields(fields);
         
-        if (fieldSet.contains("id")) {
-            partial.setId(metarData.getId());
+        // Register before looking at the latest report, so a report stored in between is not missed
+        MetarStreamHub.Waiter waiter = metarStreamHub.awaitNewer(icaoCode, sinceId,
+                metarData -> completeLatestMetarData(result, metarData, fieldSet, decoded, mediaType));
+        if (waiter == null) {
+            logger.warn("Refusing METAR long-poll for airport: {}, too many waiting requests", icaoCode);
+            result.setResult(new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE));
+            return result;
+        }
+        result.onCompletion(() -> metarStreamHub.cancel(waiter));
+        
+        MetarData latest;
+        try {
+            latest = metarService.getLatestMetarData(icaoCode);
+        } catch (MetarDataNotFoundException e) {
+            latest = null;
         }
-        if (fieldSet.contains("icaoCode")) {
-            partial.setIcaoCode(metarData.getIcaoCode());
+        if (latest != null && latest.getId() > sinceId && metarStreamHub.cancel(waiter)) {
+            completeLatestMetarData(result, latest, fieldSet, decoded, mediaType);
+        } else {
+            logger.debug("Waiting for METAR data for airport: {} newer than ID: {}", icaoCode, sinceId);
         }
-        if (fieldSet.contains("rawData")) {
-            partial.setRawData(metarData.getRawData());
+        return result;
+    }
+    
+    /**
+     * Complete a long-poll with a representation of the latest METAR data.
+     */
+    private void completeLatestMetarData(DeferredResult<ResponseEntity<?>> result, MetarData metarData,
+                                         Set<MetarField> fieldSet, boolean decoded, MediaType mediaType) {
+        try {
+            ResponseEntity<byte[]> response;
+            if (!decoded && fieldSet != null) {
+                String eTag = createETag(metarData.getId(), metarData.getParseVersion(), false, fieldSet)
+                        + encodingSuffix(mediaType);
+                response = createResponse(metarData, eTag, mediaType, () -> MetarProjection.of(metarData, fieldSet));
+            } else if (decoded) {
+                String eTag = createETag(metarData.getId(), metarData.getParseVersion(), true, null) + encodingSuffix(mediaType);
+                response = createResponse(metarData, eTag, mediaType,
+                        () -> new MetarDataDecoded(metarService.decodeMetarData(metarData)));
+            } else {
+                String eTag = createETag(metarData.getId(), metarData.getParseVersion(), false, null) + encodingSuffix(mediaType);
+                response = createResponse(metarData, eTag, mediaType, () -> metarData);
+            }
+            result.setResult(response);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize METAR data with ID: {}", metarData.getId(), e);
+            result.setErrorResult(e);
         }
-        if (fieldSet.contains("observationTime")) {
-            partial.setObservationTime(metarData.getObservationTime());
+    }
+    
+    /**
+     * Retrieve the latest METAR data for many airports in one request.
+     * Airports without data are listed as missing instead of failing the whole request.
+     *
+     * @param icaoCodes the ICAO codes of the airports, comma-separated or as repeated parameters
+     * @param fields optional comma-separated list of fields to include for every airport
+     * @return ResponseEntity with the latest METAR data per airport in request order and the missing airports,
+     *         or BAD_REQUEST if no or more than MAX_BULK_ICAO_CODES airports are requested
+     */
+    @GetMapping("/METAR")
+    public ResponseEntity<MetarDataBulkResponse<?>> getLatestMetarDataBulk(
+            @RequestParam(name = "icao", required = false) List<String> icaoCodes,
+            @RequestParam(required = false) String fields) {
+        Set<String> requested = parseIcaoCodes(icaoCodes);
+        if (requested.isEmpty() || requested.size() > MAX_BULK_ICAO_CODES) {
+            logger.info("Refusing bulk METAR request for {} airports", requested.size());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        if (fieldSet.contains("windDirection")) {
-            partial.setWindDirection(metarData.getWindDirection());
+        
+        logger.info("Retrieving latest METAR data for {} airports", requested.size());
+        Set<MetarField> fieldSet = parseFields(fields);
+        MetarDataBulkResponse<?> response = fieldSet != null
+                ? createBulkResponse(requested, metarService.getLatestMetarData(requested, fieldSet))
+                : createBulkResponse(requested, metarService.getLatestMetarData(requested));
+        logger.info("Retrieved latest METAR data for {} airports, {} missing",
+                response.getReports().size(), response.getMissing().size());
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+    
+    /**
+     * Stream newly stored METAR data for a set of airports as Server-Sent Events.
+     * Every report is sent as a metar event with the report id as event id, as soon as it is stored.
+     *
+     * @param icaoCodes the ICAO codes of the airports, comma-separated or as repeated parameters
+     * @return the event stream, BAD_REQUEST if no or more than MAX_BULK_ICAO_CODES airports are requested,
+     *         or SERVICE_UNAVAILABLE if the maximum number of stream connections is open
+     */
+    @GetMapping(value = "/METAR/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLatestMetarData(
+            @RequestParam(name = "icao", required = false) List<String> icaoCodes) {
+        Set<String> requested = parseIcaoCodes(icaoCodes);
+        if (requested.isEmpty() || requested.size() > MAX_BULK_ICAO_CODES) {
+            logger.info("Refusing METAR stream request for {} airports", requested.size());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        SseEmitter emitter = metarStreamHub.subscribe(requested);
+        if (emitter == null) {
+            logger.warn("Refusing METAR stream request, {} connections open", metarStreamHub.getConnectionCount());
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        logger.info("Streaming METAR data for {} airports", requested.size());
+        return ResponseEntity.ok(emitter);
+    }
+    
+    /**
+     * Retrieve one page of the METAR data history for an airport, newest report first.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param from optional earliest observation time to include, e.g. 2025-09-01T00:00:00Z
+     * @param to optional observation time to stop before
+     * @param limit the maximum number of reports on the page, 1 to MAX_HISTORY_LIMIT
+     * @param cursor optional cursor of the page, taken from nextCursor of the previous page
+     * @param fields optional comma-separated list of fields to include for every report
+     * @return ResponseEntity with the page and the cursor of the next page, or BAD_REQUEST if the
+     *         limit is out of range or the cursor is invalid
+     */
+    @GetMapping("/{icaoCode}/METAR/history")
+    public ResponseEntity<MetarHistoryPage<?>> getMetarDataHistory(
+            @PathVariable String icaoCode,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false, defaultValue = "100") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String fields) {
+        if (limit < 1 || limit > MAX_HISTORY_LIMIT) {
+            logger.info("Refusing METAR history request for airport: {} with limit {}", icaoCode, limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        logger.info("Retrieving METAR history for airport: {}", icaoCode);
+        try {
+            Set<MetarField> fieldSet = parseFields(fields);
+            MetarHistoryPage<?> page = fieldSet != null
+                    ? metarService.getMetarDataHistory(icaoCode, from, to, limit, cursor, fieldSet)
+                    : metarService.getMetarDataHistory(icaoCode, from, to, limit, cursor);
+            logger.info("Retrieved {} METAR history entries for airport: {}", page.getReports().size(), icaoCode);
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            logger.info("Invalid METAR history cursor for airport: {}: {}", icaoCode, e.getMessage());
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        if (fieldSet.contains("windSpeed")) {
-            partial.setWindSpeed(metarData.getWindSpeed());
+    }
+    
+    /**
+     * Export the METAR data history for an airport, oldest report first.
+     * Rows are streamed from a database cursor straight to the response, so the export starts right
+     * away and memory use does not depend on its size. The export runs on its own virtual thread and may
+     * take up to metar.export.timeout, independent of the default async request timeout. At most
+     * metar.export.max-concurrent exports run at a time, well below the size of the connection pool.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param format the output format, ndjson (default) or csv
+     * @param from optional earliest observation time to include
+     * @param to optional observation time to stop before
+     * @param gzip whether to gzip the response, sent with Content-Encoding gzip
+     * @return ResponseEntity streaming the export, BAD_REQUEST for an unknown format, or SERVICE_UNAVAILABLE
+     *         if the maximum number of exports is running
+     */
+    @GetMapping("/{icaoCode}/METAR/export")
+    public ResponseEntity<ResponseBodyEmitter> exportMetarData(
+            @PathVariable String icaoCode,
+            @RequestParam(required = false, defaultValue = "ndjson") String format,
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false, defaultValue = "false") boolean gzip) {
+        MetarExportService.Format exportFormat;
+        MediaType contentType;
+        if ("ndjson".equalsIgnoreCase(format)) {
+            exportFormat = MetarExportService.Format.NDJSON;
+            contentType = MediaType.APPLICATION_NDJSON;
+        } else if ("csv".equalsIgnoreCase(format)) {
+            exportFormat = MetarExportService.Format.CSV;
+            contentType = new MediaType("text", "csv", StandardCharsets.UTF_8);
+        } else {
+            logger.info("Refusing METAR export for airport: {} in unknown format: {}", icaoCode, format);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
-        if (fieldSet.contains("visibility")) {
-            partial.setVisibility(metarData.getVisibility());
+        
+        if (!exportPermits.tryAcquire()) {
+            logger.warn("Refusing METAR export for airport: {}, too many exports running", icaoCode);
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
         }
-        if (fieldSet.contains("weatherConditions")) {
-            partial.setWeatherConditions(metarData.getWeatherConditions());
+        
+        logger.info("Exporting METAR data for airport: {} as {}", icaoCode, exportFormat);
+        ResponseBodyEmitter body = new ResponseBodyEmitter(exportTimeout.toMillis());
+        Thread.ofVirtual().name("metar-export-" + icaoCode).start(() -> {
+            try (OutputStream out = new ResponseBodyEmitterOutputStream(body, 8192)) {
+                OutputStream target = gzip ? new GZIPOutputStream(out, 8192, true) : out;
+                long rows = metarExportService.export(icaoCode, from, to, exportFormat, target);
+                if (gzip) {
+                    ((GZIPOutputStream) target).finish();
+                }
+                out.flush();
+                logger.info("Exported {} METAR data entries for airport: {}", rows, icaoCode);
+                body.complete();
+            } catch (IOException | RuntimeException e) {
+                // Typically the client went away or the export timed out
+                logger.info("METAR export for airport: {} ended early: {}", icaoCode, e.getMessage());
+                body.completeWithError(e);
+            } finally {
+                exportPermits.release();
+            }
+        });
+        
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(icaoCode + "-metar." + exportFormat.name().toLowerCase()).build().toString());
+        if (gzip) {
+            ok.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return ok.body(body);
+    }
+    
+    /**
+     * Create the response with the encoded body of a representation of the latest METAR data.
+     * The body is serialized once per report, representation and encoding and then written from the response cache.
+     *
+     * @param source the MetarData instance the representation is made from, or null if it is not cacheable
+     * @param eTag the ETag of the representation and encoding, used as its cache key
+     * @param mediaType the encoding, one of the keys of objectMappers
+     * @param representation supplies the object to serialize on a cache miss
+     * @return ResponseEntity with the serialized body and its Content-Length
+     * @throws JsonProcessingException if the representation cannot be serialized
+     */
+    private ResponseEntity<byte[]> createResponse(MetarData source, String eTag, MediaType mediaType,
+                                                  Supplier<Object> representation) throws JsonProcessingException {
+        byte[] body = source != null ? metarResponseCache.get(source, eTag) : null;
+        if (body == null) {
+            body = objectMappers.get(mediaType).writeValueAsBytes(representation.get());
+            if (source != null) {
+                metarResponseCache.put(source, eTag, body);
+            }
         }
-        if (fieldSet.contains("temperature")) {
-            partial.setTemperature(metarData.getTemperature());
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT)
+                .contentType(mediaType)
+                .contentLength(body.length)
+                .body(body);
+    }
+    
+    /**
+     * Collect requested ICAO codes, skipping blanks and duplicates and keeping the request order.
+     */
+    private static Set<String> parseIcaoCodes(List<String> icaoCodes) {
+        Set<String> requested = new LinkedHashSet<>();
+        if (icaoCodes != null) {
+            for (String icaoCode : icaoCodes) {
+                if (!icaoCode.isBlank()) {
+                    requested.add(icaoCode.trim());
+                }
+            }
         }
-        if (fieldSet.contains("dewPoint")) {
-            partial.setDewPoint(metarData.getDewPoint());
+        return requested;
+    }
+    
+    /**
+     * Select the encoding of the latest METAR data from the Accept header.
+     *
+     * @param accept the Accept header, or null
+     * @return the most preferred supported media type, JSON if there is no preference, or null if
+     *         none is acceptable
+     */
+    private MediaType selectMediaType(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
         }
-        if (fieldSet.contains("altimeter")) {
-            partial.setAltimeter(metarData.getAltimeter());
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType acceptedType : accepted) {
+            if (acceptedType.getQualityValue() == 0) {
+                continue;
+            }
+            for (MediaType supported : objectMappers.keySet()) {
+                if (acceptedType.isCompatibleWith(supported)) {
+                    return supported;
+                }
+            }
         }
-        
-        return partial;
+        return null;
     }
     
     /**
-     * DTO class for partial METAR data.
+     * Get the ETag suffix of an encoding, none for JSON so existing ETags stay valid.
      */
-    public static class MetarDataPartial {
-        private Long id;
-        private String icaoCode;
-        private String rawData;
-        private String observationTime;
-        private String windDirection;
-        private String windSpeed;
-        private String visibility;
-        private String weatherConditions;
-        private String temperature;
-        private String dewPoint;
-        private String altimeter;
-        
-        // Getters and setters
-        public Long getId() {
-            return id;
+    private static String encodingSuffix(MediaType mediaType) {
+        if (MediaType.APPLICATION_CBOR.equals(mediaType)) {
+            return "-cbor";
         }
-        
-        public void setId(Long id) {
-            this.id = id;
+        if (BinaryFormatsConfig.APPLICATION_SMILE.equals(mediaType)) {
+            return "-smile";
         }
-        
-        public String getIcaoCode() {
-            return icaoCode;
+        return "";
+    }
+    
+    /**
+     * Create the strong ETag of a METAR representation: the record id for the full data, with a
+     * "-d" suffix for the decoded text, or "-f" and a bit mask of the selected fields for partial data.
+     * Re-parsed records add "v" and their parse version to the id, so the rewritten content gets a new ETag.
+     *
+     * @param id the id of the METAR data record
+     * @param parseVersion the parse version of the record, 0 if it was never re-parsed
+     * @param decoded whether the decoded representation is requested
+     * @param fieldSet the selected fields, or null for all fields
+     * @return the unquoted ETag value
+     */
+    static String createETag(Long id, int parseVersion, boolean decoded, Set<MetarField> fieldSet) {
+        String version = parseVersion > 0 ? id + "v" + parseVersion : String.valueOf(id);
+        if (decoded) {
+            return version + "-d";
         }
-        
-        public void setIcaoCode(String icaoCode) {
-            this.icaoCode = icaoCode;
+        if (fieldSet == null) {
+            return version;
         }
-        
-        public String getRawData() {
-            return rawData;
+        int mask = 0;
+        for (MetarField field : fieldSet) {
+            mask |= 1 << field.ordinal();
         }
-        
-        public void setRawData(String rawData) {
-            this.rawData = rawData;
+        return version + "-f" + Integer.toHexString(mask);
+    }
+    
+    /**
+     * Get the Last-Modified time of a METAR report, the observation time or else the receipt time.
+     *
+     * @param observedAt the observation time of the report
+     * @param receivedAt the receipt time of the report
+     * @return the time in epoch milliseconds, or -1 if unknown
+     */
+    private static long lastModified(Instant observedAt, Instant receivedAt) {
+        Instant time = observedAt != null ? observedAt : receivedAt;
+        return time != null ? time.toEpochMilli() : -1;
+    }
+    
+    /**
+     * Parse the fields parameter.
+     *
+     * @param fields the comma-separated field names, or null
+     * @return the selected fields, or null if no fields parameter was given
+     */
+    private static Set<MetarField> parseFields(String fields) {
+        return fields != null && !fields.isEmpty() ? MetarField.parse(fields) : null;
+    }
+    
+    /**
+     * Create the bulk response with the reports in request order and the airports without data.
+     */
+    private static <T> MetarDataBulkResponse<T> createBulkResponse(Set<String> requested, Map<String, T> latest) {
+        MetarDataBulkResponse<T> response = new MetarDataBulkResponse<>();
+        for (String icaoCode : requested) {
+            T report = latest.get(icaoCode);
+            if (report != null) {
+                response.getReports().put(icaoCode, report);
+            } else {
+                response.getMissing().add(icaoCode);
+            }
         }
+        return response;
+    }
+    
+    /**
+     * DTO class for decoded METAR data.
+     */
+    public static class MetarDataDecoded {
+        private String decodedData;
         
-        public String getObservationTime() {
-            return observationTime;
-        }
+        public MetarDataDecoded() {}
         
-        public void setObservationTime(String observationTime) {
-            this.observationTime = observationTime;
+        public MetarDataDecoded(String decodedData) {
+            this.decodedData = decodedData;
         }
         
-        public String getWindDirection() {
-            return windDirection;
+        public String getDecodedData() {
+            return decodedData;
         }
         
-        public void setWindDirection(String windDirection) {
-            this.windDirection = windDirection;
+        public void setDecodedData(String decodedData) {
+            this.decodedData = decodedData;
         }
+    }
+    
+    /**
+     * DTO class for the latest METAR data of many airports.
+     */
+    public static class MetarDataBulkResponse<T> {
+        private Map<String, T> reports = new LinkedHashMap<>();
+        private List<String> missing = new ArrayList<>();
         
-        public String getWindSpeed() {
-            return windSpeed;
+        public Map<String, T> getReports() {
+            return reports;
         }
         
-        public void setWindSpeed(String windSpeed) {
-            this.windSpeed = windSpeed;
+        public void setReports(Map<String, T> reports) {
+            this.reports = reports;
         }
         
-        public String getVisibility() {
-            return visibility;
+        public List<String> getMissing() {
+            return missing;
         }
         
-        public void setVisibility(String visibility) {
-            this.visibility = visibility;
+        public void setMissing(List<String> missing) {
+            this.missing = missing;
         }
+    }
+    
+    /**
+     * DTO class for the response to an asynchronously queued METAR report.
+     */
+    public static class MetarIngestTicket {
+        private String ticket;
+        private String icaoCode;
         
-        public String getWeatherConditions() {
-            return weatherConditions;
-        }
+        public MetarIngestTicket() {}
         
-        public void setWeatherConditions(String weatherConditions) {
-            this.weatherConditions = weatherConditions;
+        public MetarIngestTicket(String ticket, String icaoCode) {
+            this.ticket = ticket;
+            this.icaoCode = icaoCode;
         }
         
-        public String getTemperature() {
-            return temperature;
+        public String getTicket() {
+            return ticket;
         }
         
-        public void setTemperature(String temperature) {
-            this.temperature = temperature;
+        public void setTicket(String ticket) {
+            this.ticket = ticket;
         }
         
-        public String getDewPoint() {
-            return dewPoint;
+        public String getIcaoCode() {
+            return icaoCode;
         }
         
-        public void setDewPoint(String dewPoint) {
-            this.dewPoint = dewPoint;
+        public void setIcaoCode(String icaoCode) {
+            this.icaoCode = icaoCode;
         }
+    }
+    
+    /**
+     * DTO class for METAR data request body.
+     */
+    public static class MetarDataRequest {
+        @NotBlank(message = "METAR data cannot be blank")
+        private String data;
         
-        public String getAltimeter() {
-            return altimeter;
+        public String getData() {
+            return data;
         }
         
-        public void setAltimeter(String altimeter) {
-            this.altimeter = altimeter;
+        public void setData(String data) {
+            this.data = data;
         }
     }
     
     /**
-     * DTO class for decoded METAR data.
+     * DTO class for a single report in a batch METAR request.
      */
-    public static class MetarDataDecoded {
-        private String decodedData;
+    public static class MetarBatchItem {
+        @NotBlank(message = "ICAO code cannot be blank")
+        private String icaoCode;
         
-        public MetarDataDecoded() {}
+        @NotBlank(message = "METAR data cannot be blank")
+        private String data;
         
-        public MetarDataDecoded(String decodedData) {
-            this.decodedData = decodedData;
+        private Instant referenceTime;
+        
+        public String getIcaoCode() {
+            return icaoCode;
         }
         
-        public String getDecodedData() {
-            return decodedData;
+        public void setIcaoCode(String icaoCode) {
+            this.icaoCode = icaoCode;
         }
         
-        public void setDecodedData(String decodedData) {
-            this.decodedData = decodedData;
+        public String getData() {
+            return data;
+        }
+        
+        public void setData(String data) {
+            this.data = data;
+        }
+        
+        public Instant getReferenceTime() {
+            return referenceTime;
+        }
+        
+        public void setReferenceTime(Instant referenceTime) {
+            this.referenceTime = referenceTime;
         }
     }
     
     /**
-     * DTO class for METAR data request body.
+     * DTO class for batch METAR request body.
      */
-    public static class MetarDataRequest {
-        @NotBlank(message = "METAR data cannot be blank")
-        private String data;
+    public static class MetarBatchRequest {
+        @NotEmpty(message = "Batch must contain at least one report")
+        private List<@Valid MetarBatchItem> reports;
         
-        public String getData() {
-            return data;
+        private Instant referenceTime;
+        
+        public List<MetarBatchItem> getReports() {
+            return reports;
         }
         
-        public void setData(String data) {
-            this.data = data;
+        public void setReports(List<MetarBatchItem> reports) {
+            this.reports = reports;
+        }
+        
+        public Instant getReferenceTime() {
+            return referenceTime;
+        }
+        
+        public void setReferenceTime(Instant referenceTime) {
+            this.referenceTime = referenceTime;
         }
     }
 }
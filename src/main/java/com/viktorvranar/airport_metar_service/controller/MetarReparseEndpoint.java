@@ -0,0 +1,44 @@
+package com.viktorvranar.airport_metar_service.controller;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import com.viktorvranar.airport_metar_service.service.MetarReparseJob;
+import com.viktorvranar.airport_metar_service.service.MetarReparseProgress;
+
+/**
+ * Actuator endpoint for the METAR re-parse job, exposed at /actuator/metarreparse.
+ * GET reports progress, POST starts the job (resuming from the checkpoint unless restart is true)
+ * and DELETE asks a running job to stop after its current chunk.
+ */
+@Component
+@Endpoint(id = "metarreparse")
+public class MetarReparseEndpoint {
+
+    private final MetarReparseJob metarReparseJob;
+
+    public MetarReparseEndpoint(MetarReparseJob metarReparseJob) {
+        this.metarReparseJob = metarReparseJob;
+    }
+
+    @ReadOperation
+    public MetarReparseProgress progress() {
+        return metarReparseJob.getProgress();
+    }
+
+    @WriteOperation
+    public MetarReparseProgress start(@Nullable Boolean restart) {
+        metarReparseJob.start(Boolean.TRUE.equals(restart));
+        return metarReparseJob.getProgress();
+    }
+
+    @DeleteOperation
+    public MetarReparseProgress stop() {
+        metarReparseJob.stop();
+        return metarReparseJob.getProgress();
+    }
+}
@@ -0,0 +1,72 @@
+package com.viktorvranar.airport_metar_service.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * OutputStream that sends what is written to a ResponseBodyEmitter as raw bytes, one chunk per flush
+ * or full buffer. Writing after the emitter completed, e.g. because it timed out, fails with an IOException
+ * like writing to a closed connection does.
+ */
+class ResponseBodyEmitterOutputStream extends OutputStream {
+
+    private final ResponseBodyEmitter emitter;
+    private final byte[] buffer;
+    private int count;
+
+    ResponseBodyEmitterOutputStream(ResponseBodyEmitter emitter, int bufferSize) {
+        this.emitter = emitter;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            sendBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > buffer.length - count) {
+            sendBuffer();
+        }
+        if (len >= buffer.length) {
+            send(Arrays.copyOfRange(b, off, off + len));
+            return;
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        sendBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sendBuffer();
+    }
+
+    private void sendBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        byte[] chunk = Arrays.copyOf(buffer, count);
+        count = 0;
+        send(chunk);
+    }
+
+    private void send(byte[] chunk) throws IOException {
+        try {
+            emitter.send(chunk);
+        } catch (IllegalStateException e) {
+            throw new IOException("Response already completed", e);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.viktorvranar.airport_metar_service.controller;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -15,11 +19,16 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.service.SubscriptionBulkStatus;
+import com.viktorvranar.airport_metar_service.service.SubscriptionPage;
 import com.viktorvranar.airport_metar_service.service.SubscriptionService;
+import com.viktorvranar.airport_metar_service.service.SubscriptionSort;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
 
 /**
  * REST controller for managing airport subscriptions.
@@ -29,6 +38,26 @@ import jakarta.validation.constraints.Pattern;
 @RequestMapping("/subscriptions")
 public class SubscriptionController {
     
+    /**
+     * Maximum number of ICAO codes in one bulk request.
+     */
+    static final int MAX_BULK_ICAO_CODES = 1000;
+    
+    /**
+     * Valid ICAO codes, exactly 4 uppercase letters or digits.
+     */
+    public static final String ICAO_CODE_REGEX = "^[A-Z0-9]{4}$";
+    
+    /**
+     * The maximum number of subscriptions on one page.
+     */
+    static final int MAX_PAGE_LIMIT = 1000;
+    
+    /**
+     * The number of subscriptions on a page when a cursor is given without a limit.
+     */
+    static final int DEFAULT_PAGE_LIMIT = 100;
+    
     private final SubscriptionService subscriptionService;
     
     public SubscriptionController(SubscriptionService subscriptionService) {
@@ -43,25 +72,39 @@ public class SubscriptionController {
      */
     @PostMapping
     public ResponseEntity<Subscription> subscribe(@Valid @RequestBody SubscriptionRequest request) {
-        if (subscriptionService.existsByIcaoCode(request.getIcaoCode())) {
+        Subscription subscription = subscriptionService.createSubscription(request.getIcaoCode());
+        if (subscription == null) {
             return new ResponseEntity<>(HttpStatus.CONFLICT);
         }
-        
-        Subscription subscription = subscriptionService.createSubscription(request.getIcaoCode());
         return new ResponseEntity<>(subscription, HttpStatus.CREATED);
     }
     
     /**
-     * Get all subscriptions with optional filtering.
+     * Get all subscriptions with optional filtering, sorting and pagination.
+     * Without limit and cursor the response is the list of all matching subscriptions, with either of
+     * them it is one page of them together with the cursor of the next page.
      *
      * @param active Optional filter for active status (true/false)
      * @param icaoCode Optional filter for ICAO code pattern (case-insensitive, use % for wildcards)
-     * @return ResponseEntity with a list of subscriptions matching the filters
+     * @param icaoCodePrefix Optional filter for the start of the ICAO code (case-insensitive)
+     * @param sort Optional sort order: id (default), icaoCode, -id or -icaoCode for descending order
+     * @param limit Optional maximum number of subscriptions on the page, 1 to MAX_PAGE_LIMIT
+     * @param cursor Optional cursor of the page, taken from nextCursor of the previous page
+     * @return ResponseEntity with a list or a page of subscriptions matching the filters, or BAD_REQUEST
+     *         if the sort order, limit or cursor is invalid
      */
     @GetMapping
-    public ResponseEntity<List<Subscription>> getAllSubscriptions(
+    public ResponseEntity<?> getAllSubscriptions(
             @RequestParam(required = false) Boolean active,
-            @RequestParam(required = false) String icaoCode) {
+            @RequestParam(required = false) String icaoCode,
+            @RequestParam(required = false) String icaoCodePrefix,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        
+        if (icaoCodePrefix != null || sort != null || limit != null || cursor != null) {
+            return getSubscriptionPage(active, icaoCode, icaoCodePrefix, sort, limit, cursor);
+        }
         
         List<Subscription> subscriptions;
         
@@ -81,6 +124,25 @@ public class SubscriptionController {
         
         return new ResponseEntity<>(subscriptions, HttpStatus.OK);
     }
+    
+    private ResponseEntity<?> getSubscriptionPage(Boolean active, String icaoCode, String icaoCodePrefix,
+                                                  String sort, Integer limit, String cursor) {
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_LIMIT)) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        try {
+            SubscriptionSort order = sort != null ? SubscriptionSort.fromParameter(sort) : SubscriptionSort.ID;
+            boolean paged = limit != null || cursor != null;
+            int pageLimit = limit != null ? limit : (paged ? DEFAULT_PAGE_LIMIT : Integer.MAX_VALUE);
+            SubscriptionPage page = subscriptionService.findSubscriptions(active, icaoCode, icaoCodePrefix, order, cursor, pageLimit);
+            if (!paged) {
+                return new ResponseEntity<>(page.getSubscriptions(), HttpStatus.OK);
+            }
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
        
     /**
      * Unsubscribe from an airport by ICAO code.
@@ -90,11 +152,9 @@ public class SubscriptionController {
      */
     @DeleteMapping("/{icaoCode}")
     public ResponseEntity<Void> unsubscribe(@PathVariable String icaoCode) {
-        if (!subscriptionService.existsByIcaoCode(icaoCode)) {
+        if (!subscriptionService.deleteSubscription(icaoCode)) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        
-        subscriptionService.deleteSubscription(icaoCode);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
     
@@ -121,13 +181,79 @@ public class SubscriptionController {
         }
     }
     
+    /**
+     * Subscribe to many airports at once, in one transaction.
+     *
+     * @param request the request containing the ICAO codes
+     * @return ResponseEntity with the outcome per ICAO code: CREATED, EXISTS or INVALID
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkSubscriptionResponse> subscribeAll(@Valid @RequestBody BulkSubscriptionRequest request) {
+        Map<String, SubscriptionBulkStatus> results = new LinkedHashMap<>();
+        Set<String> valid = validateIcaoCodes(request.getIcaoCodes(), results);
+        if (!valid.isEmpty()) {
+            results.putAll(subscriptionService.createSubscriptions(valid));
+        }
+        return new ResponseEntity<>(new BulkSubscriptionResponse(request.getIcaoCodes(), results), HttpStatus.OK);
+    }
+    
+    /**
+     * Unsubscribe from many airports at once, in one transaction.
+     *
+     * @param request the request containing the ICAO codes
+     * @return ResponseEntity with the outcome per ICAO code: DELETED, NOT_FOUND or INVALID
+     */
+    @PostMapping("/bulk/delete")
+    public ResponseEntity<BulkSubscriptionResponse> unsubscribeAll(@Valid @RequestBody BulkSubscriptionRequest request) {
+        Map<String, SubscriptionBulkStatus> results = new LinkedHashMap<>();
+        Set<String> valid = validateIcaoCodes(request.getIcaoCodes(), results);
+        if (!valid.isEmpty()) {
+            results.putAll(subscriptionService.deleteSubscriptions(valid));
+        }
+        return new ResponseEntity<>(new BulkSubscriptionResponse(request.getIcaoCodes(), results), HttpStatus.OK);
+    }
+    
+    /**
+     * Activate or deactivate many airport subscriptions at once, in one transaction.
+     *
+     * @param request the request containing the ICAO codes and the new active status
+     * @return ResponseEntity with the outcome per ICAO code: UPDATED, NOT_FOUND or INVALID
+     */
+    @PutMapping("/bulk")
+    public ResponseEntity<BulkSubscriptionResponse> updateSubscriptionStatuses(
+            @Valid @RequestBody BulkSubscriptionStatusRequest request) {
+        boolean active = parseBoolean(request.getActive());
+        Map<String, SubscriptionBulkStatus> results = new LinkedHashMap<>();
+        Set<String> valid = validateIcaoCodes(request.getIcaoCodes(), results);
+        if (!valid.isEmpty()) {
+            results.putAll(subscriptionService.updateSubscriptionStatuses(valid, active));
+        }
+        return new ResponseEntity<>(new BulkSubscriptionResponse(request.getIcaoCodes(), results), HttpStatus.OK);
+    }
+    
+    /**
+     * Split the ICAO codes of a bulk request into valid codes to process, without duplicates,
+     * and invalid codes, which are recorded as INVALID right away.
+     */
+    private static Set<String> validateIcaoCodes(List<String> icaoCodes, Map<String, SubscriptionBulkStatus> results) {
+        Set<String> valid = new LinkedHashSet<>();
+        for (String icaoCode : icaoCodes) {
+            if (icaoCode != null && icaoCode.matches(ICAO_CODE_REGEX)) {
+                valid.add(icaoCode);
+            } else {
+                results.put(String.valueOf(icaoCode), SubscriptionBulkStatus.INVALID);
+            }
+        }
+        return valid;
+    }
+    
     // DTO classes for request bodies
     /**
      * DTO class for subscription request body.
      */
     public static class SubscriptionRequest {
         @NotBlank(message = "ICAO code cannot be blank")
-        @Pattern(regexp = "^[A-Z0-9]{4}$", message = "ICAO code must be exactly 4 alphanumeric characters")
+        @Pattern(regexp = ICAO_CODE_REGEX, message = "ICAO code must be exactly 4 alphanumeric characters")
         private String icaoCode;
         
         public String getIcaoCode() {
@@ -154,6 +280,57 @@ public class SubscriptionController {
         }
     }
     
+    /**
+     * DTO class for bulk subscription request body.
+     */
+    public static class BulkSubscriptionRequest {
+        @NotEmpty(message = "At least one ICAO code is required")
+        @Size(max = MAX_BULK_ICAO_CODES, message = "At most " + MAX_BULK_ICAO_CODES + " ICAO codes per request")
+        private List<String> icaoCodes;
+        
+        public List<String> getIcaoCodes() {
+            return icaoCodes;
+        }
+        
+        public void setIcaoCodes(List<String> icaoCodes) {
+            this.icaoCodes = icaoCodes;
+        }
+    }
+    
+    /**
+     * DTO class for bulk subscription status request body.
+     */
+    public static class BulkSubscriptionStatusRequest extends BulkSubscriptionRequest {
+        private String active;
+        
+        public String getActive() {
+            return active;
+        }
+        
+        public void setActive(String active) {
+            this.active = active;
+        }
+    }
+    
+    /**
+     * DTO class for bulk subscription response body, the outcome per ICAO code in request order.
+     */
+    public static class BulkSubscriptionResponse {
+        private final Map<String, SubscriptionBulkStatus> results;
+        
+        public BulkSubscriptionResponse(List<String> icaoCodes, Map<String, SubscriptionBulkStatus> results) {
+            this.results = new LinkedHashMap<>();
+            for (String icaoCode : icaoCodes) {
+                String key = String.valueOf(icaoCode);
+                this.results.put(key, results.get(key));
+            }
+        }
+        
+        public Map<String, SubscriptionBulkStatus> getResults() {
+            return results;
+        }
+    }
+    
     /**
      * Parse a string to boolean, handling "0"/"1" and "false"/"true" values.
      *
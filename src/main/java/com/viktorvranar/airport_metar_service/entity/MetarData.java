@@ -1,28 +1,48 @@
 package com.viktorvranar.airport_metar_service.entity;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import jakarta.annotation.Generated;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.UniqueConstraint;
+
+import org.hibernate.annotations.ColumnDefault;
 
 /**
  * Entity class representing METAR (Meteorological Terminal Aviation Routine Weather Report) data.
  * This class maps to the 'metar' table in the database.
  */
 @Entity
-@Table(name = "metar")
+@Table(name = "metar", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_metar_icao_code_raw_hash", columnNames = {"icao_code", "raw_hash"})
+}, indexes = {
+    @Index(name = "idx_metar_icao_code_id", columnList = "icao_code, id"),
+    @Index(name = "idx_metar_icao_code_observed_at_id", columnList = "icao_code, observed_at, id"),
+    @Index(name = "idx_metar_observed_at", columnList = "observed_at"),
+    @Index(name = "idx_metar_wind_speed_kt", columnList = "wind_speed_kt"),
+    @Index(name = "idx_metar_visibility_m", columnList = "visibility_m")
+})
 public class MetarData {
 
     /**
      * The unique identifier for the METAR data record.
+     * Taken from a pooled sequence so that Hibernate can batch inserts.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "metar_seq")
+    @SequenceGenerator(name = "metar_seq", sequenceName = "metar_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -37,6 +57,38 @@ public class MetarData {
     @Column(name = "raw_data", length = 1000)
     private String rawData;
     
+    /**
+     * The SHA-256 hash of the raw METAR data string, used to detect repeated reports.
+     */
+    @JsonIgnore
+    @Column(name = "raw_hash", length = 64)
+    private String rawHash;
+    
+    /**
+     * The number of times the parsed fields were rewritten from the raw data by the re-parse job,
+     * part of the ETag so that clients do not keep a stale representation.
+     */
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(name = "parse_version", nullable = false)
+    private int parseVersion;
+    
+    /**
+     * Whether this report was a repeat of an already stored report and was not stored again.
+     * Only set on the result of a save, never persisted.
+     */
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    private boolean deduplicated;
+    
+    /**
+     * The natural language decoding of this report, computed on first use and kept with the
+     * instance, e.g. in the latest METAR cache. Never persisted.
+     */
+    @Transient
+    @JsonIgnore
+    private String decodedData;
+    
     /**
      * The timestamp of the METAR observation.
      */
@@ -85,6 +137,48 @@ public class MetarData {
     @Column(name = "altimeter")
     private String altimeter;
     
+    /**
+     * The full timestamp of the METAR observation, resolved from the day/time group and the receipt time.
+     */
+    @Column(name = "observed_at")
+    private Instant observedAt;
+    
+    /**
+     * The time the METAR report was received by the service.
+     */
+    @Column(name = "received_at")
+    private Instant receivedAt;
+    
+    /**
+     * The wind speed in knots.
+     */
+    @Column(name = "wind_speed_kt")
+    private Integer windSpeedKt;
+    
+    /**
+     * The visibility in meters.
+     */
+    @Column(name = "visibility_m")
+    private Integer visibilityM;
+    
+    /**
+     * The temperature in Celsius.
+     */
+    @Column(name = "temperature_c")
+    private Integer temperatureC;
+    
+    /**
+     * The dew point in Celsius.
+     */
+    @Column(name = "dew_point_c")
+    private Integer dewPointC;
+    
+    /**
+     * The altimeter setting (QNH) in hPa.
+     */
+    @Column(name = "qnh_hpa")
+    private Integer qnhHpa;
+    
     /**
      * Get the unique identifier for the METAR data record.
      *
@@ -282,4 +376,202 @@ public class MetarData {
     public void setAltimeter(String altimeter) {
         this.altimeter = altimeter;
     }
+    
+    /**
+     * Get the full timestamp of the METAR observation.
+     *
+     * @return the observedAt
+     */
+    public Instant getObservedAt() {
+        return observedAt;
+    }
+    
+    /**
+     * Set the full timestamp of the METAR observation.
+     *
+     * @param observedAt the observedAt to set
+     */
+    public void setObservedAt(Instant observedAt) {
+        this.observedAt = observedAt;
+    }
+    
+    /**
+     * Get the time the METAR report was received by the service.
+     *
+     * @return the receivedAt
+     */
+    public Instant getReceivedAt() {
+        return receivedAt;
+    }
+    
+    /**
+     * Set the time the METAR report was received by the service.
+     *
+     * @param receivedAt the receivedAt to set
+     */
+    public void setReceivedAt(Instant receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+    
+    /**
+     * Get the wind speed in knots.
+     *
+     * @return the windSpeedKt
+     */
+    public Integer getWindSpeedKt() {
+        return windSpeedKt;
+    }
+    
+    /**
+     * Set the wind speed in knots.
+     *
+     * @param windSpeedKt the windSpeedKt to set
+     */
+    public void setWindSpeedKt(Integer windSpeedKt) {
+        this.windSpeedKt = windSpeedKt;
+    }
+    
+    /**
+     * Get the visibility in meters.
+     *
+     * @return the visibilityM
+     */
+    public Integer getVisibilityM() {
+        return visibilityM;
+    }
+    
+    /**
+     * Set the visibility in meters.
+     *
+     * @param visibilityM the visibilityM to set
+     */
+    public void setVisibilityM(Integer visibilityM) {
+        this.visibilityM = visibilityM;
+    }
+    
+    /**
+     * Get the temperature in Celsius.
+     *
+     * @return the temperatureC
+     */
+    public Integer getTemperatureC() {
+        return temperatureC;
+    }
+    
+    /**
+     * Set the temperature in Celsius.
+     *
+     * @param temperatureC the temperatureC to set
+     */
+    public void setTemperatureC(Integer temperatureC) {
+        this.temperatureC = temperatureC;
+    }
+    
+    /**
+     * Get the dew point in Celsius.
+     *
+     * @return the dewPointC
+     */
+    public Integer getDewPointC() {
+        return dewPointC;
+    }
+    
+    /**
+     * Set the dew point in Celsius.
+     *
+     * @param dewPointC the dewPointC to set
+     */
+    public void setDewPointC(Integer dewPointC) {
+        this.dewPointC = dewPointC;
+    }
+    
+    /**
+     * Get the altimeter setting (QNH) in hPa.
+     *
+     * @return the qnhHpa
+     */
+    public Integer getQnhHpa() {
+        return qnhHpa;
+    }
+    
+    /**
+     * Set the altimeter setting (QNH) in hPa.
+     *
+     * @param qnhHpa the qnhHpa to set
+     */
+    public void setQnhHpa(Integer qnhHpa) {
+        this.qnhHpa = qnhHpa;
+    }
+    
+    /**
+     * Get the SHA-256 hash of the raw METAR data string.
+     *
+     * @return the rawHash
+     */
+    public String getRawHash() {
+        return rawHash;
+    }
+    
+    /**
+     * Set the SHA-256 hash of the raw METAR data string.
+     *
+     * @param rawHash the rawHash to set
+     */
+    public void setRawHash(String rawHash) {
+        this.rawHash = rawHash;
+    }
+    
+    /**
+     * Get the number of times the parsed fields were rewritten from the raw data.
+     *
+     * @return the parse version, 0 for reports never re-parsed
+     */
+    public int getParseVersion() {
+        return parseVersion;
+    }
+    
+    /**
+     * Set the number of times the parsed fields were rewritten from the raw data.
+     *
+     * @param parseVersion the parseVersion to set
+     */
+    public void setParseVersion(int parseVersion) {
+        this.parseVersion = parseVersion;
+    }
+    
+    /**
+     * Check whether this report was a repeat of an already stored report.
+     *
+     * @return true if the report was deduplicated instead of stored
+     */
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+    
+    /**
+     * Set whether this report was a repeat of an already stored report.
+     *
+     * @param deduplicated true if the report was deduplicated instead of stored
+     */
+    public void setDeduplicated(boolean deduplicated) {
+        this.deduplicated = deduplicated;
+    }
+    
+    /**
+     * Get the memoized natural language decoding of this report.
+     *
+     * @return the decoded text, or null if not decoded yet
+     */
+    public String getDecodedData() {
+        return decodedData;
+    }
+    
+    /**
+     * Set the memoized natural language decoding of this report.
+     *
+     * @param decodedData the decoded text, or null to decode again on next use
+     */
+    public void setDecodedData(String decodedData) {
+        this.decodedData = decodedData;
+    }
 }
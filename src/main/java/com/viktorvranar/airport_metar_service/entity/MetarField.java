@@ -0,0 +1,100 @@
+package com.viktorvranar.airport_metar_service.entity;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The METAR data fields that can be selected with the fields parameter, with their JSON name and column.
+ * The constant order is the ETag bit mask order, new fields must be appended so existing ETags stay valid.
+ */
+public enum MetarField {
+
+    ID("id", "id", Long.class, MetarData::getId),
+    ICAO_CODE("icaoCode", "icao_code", String.class, MetarData::getIcaoCode),
+    RAW_DATA("rawData", "raw_data", String.class, MetarData::getRawData),
+    OBSERVATION_TIME("observationTime", "observation_time", String.class, MetarData::getObservationTime),
+    WIND_DIRECTION("windDirection", "wind_direction", String.class, MetarData::getWindDirection),
+    WIND_SPEED("windSpeed", "wind_speed", String.class, MetarData::getWindSpeed),
+    VISIBILITY("visibility", "visibility", String.class, MetarData::getVisibility),
+    WEATHER_CONDITIONS("weatherConditions", "weather_conditions", String.class, MetarData::getWeatherConditions),
+    TEMPERATURE("temperature", "temperature", String.class, MetarData::getTemperature),
+    DEW_POINT("dewPoint", "dew_point", String.class, MetarData::getDewPoint),
+    ALTIMETER("altimeter", "altimeter", String.class, MetarData::getAltimeter),
+    OBSERVED_AT("observedAt", "observed_at", Instant.class, MetarData::getObservedAt),
+    WIND_SPEED_KT("windSpeedKt", "wind_speed_kt", Integer.class, MetarData::getWindSpeedKt),
+    VISIBILITY_M("visibilityM", "visibility_m", Integer.class, MetarData::getVisibilityM),
+    TEMPERATURE_C("temperatureC", "temperature_c", Integer.class, MetarData::getTemperatureC),
+    DEW_POINT_C("dewPointC", "dew_point_c", Integer.class, MetarData::getDewPointC),
+    QNH_HPA("qnhHpa", "qnh_hpa", Integer.class, MetarData::getQnhHpa),
+    RECEIVED_AT("receivedAt", "received_at", Instant.class, MetarData::getReceivedAt);
+
+    private final String jsonName;
+    private final String column;
+    private final Class<?> type;
+    private final Function<MetarData, Object> getter;
+
+    MetarField(String jsonName, String column, Class<?> type, Function<MetarData, Object> getter) {
+        this.jsonName = jsonName;
+        this.column = column;
+        this.type = type;
+        this.getter = getter;
+    }
+
+    /**
+     * Parse a comma-separated list of JSON field names, unknown names are ignored.
+     *
+     * @param fields the field names, e.g. "windSpeed,temperature"
+     * @return the selected fields in constant order
+     */
+    public static Set<MetarField> parse(String fields) {
+        Set<MetarField> selected = EnumSet.noneOf(MetarField.class);
+        for (String name : fields.split(",")) {
+            for (MetarField field : values()) {
+                if (field.jsonName.equals(name.trim())) {
+                    selected.add(field);
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    public String getJsonName() {
+        return jsonName;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Get the value of this field from a loaded entity.
+     *
+     * @param metarData the METAR data entity
+     * @return the field value, or null if not set
+     */
+    public Object get(MetarData metarData) {
+        return getter.apply(metarData);
+    }
+
+    /**
+     * Read the value of this field from a result set column.
+     *
+     * @param rs the result set positioned on a row
+     * @param index the index of the column holding this field
+     * @return the field value, or null if the column is SQL NULL
+     * @throws SQLException if the column cannot be read
+     */
+    public Object read(ResultSet rs, int index) throws SQLException {
+        if (type == Instant.class) {
+            Timestamp timestamp = rs.getTimestamp(index);
+            return timestamp != null ? timestamp.toInstant() : null;
+        }
+        return rs.getObject(index, type);
+    }
+}
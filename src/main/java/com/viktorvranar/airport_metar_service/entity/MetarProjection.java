@@ -0,0 +1,100 @@
+package com.viktorvranar.airport_metar_service.entity;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * A METAR report reduced to a selection of its fields.
+ * Only the selected fields are serialized, fields that were not selected do not appear in the JSON at all.
+ * The id, ICAO code and times are always kept for validators and cursors, but only serialized when selected.
+ */
+public class MetarProjection {
+
+    private final Long id;
+    private final String icaoCode;
+    private final Instant observedAt;
+    private final Instant receivedAt;
+    private final int parseVersion;
+    private final Map<String, Object> fields;
+    private final MetarData source;
+
+    public MetarProjection(Long id, String icaoCode, Instant observedAt, Instant receivedAt, Map<String, Object> fields) {
+        this(id, icaoCode, observedAt, receivedAt, 0, fields, null);
+    }
+
+    public MetarProjection(Long id, String icaoCode, Instant observedAt, Instant receivedAt, int parseVersion,
+                           Map<String, Object> fields) {
+        this(id, icaoCode, observedAt, receivedAt, parseVersion, fields, null);
+    }
+
+    private MetarProjection(Long id, String icaoCode, Instant observedAt, Instant receivedAt, int parseVersion,
+                            Map<String, Object> fields, MetarData source) {
+        this.id = id;
+        this.icaoCode = icaoCode;
+        this.observedAt = observedAt;
+        this.receivedAt = receivedAt;
+        this.parseVersion = parseVersion;
+        this.fields = Collections.unmodifiableMap(fields);
+        this.source = source;
+    }
+
+    /**
+     * Project a loaded entity, e.g. one served from the latest METAR cache.
+     *
+     * @param metarData the METAR data entity
+     * @param selected the fields to keep
+     * @return the projection of the entity
+     */
+    public static MetarProjection of(MetarData metarData, Set<MetarField> selected) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (MetarField field : selected) {
+            fields.put(field.getJsonName(), field.get(metarData));
+        }
+        return new MetarProjection(metarData.getId(), metarData.getIcaoCode(), metarData.getObservedAt(),
+                metarData.getReceivedAt(), metarData.getParseVersion(), fields, metarData);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getIcaoCode() {
+        return icaoCode;
+    }
+
+    public Instant getObservedAt() {
+        return observedAt;
+    }
+
+    public Instant getReceivedAt() {
+        return receivedAt;
+    }
+
+    public int getParseVersion() {
+        return parseVersion;
+    }
+
+    /**
+     * Get the entity this projection was made from.
+     *
+     * @return the loaded entity, or null if the projection was read from the database
+     */
+    public MetarData getSource() {
+        return source;
+    }
+
+    /**
+     * Get the selected fields by JSON name, this is the serialized form of the projection.
+     *
+     * @return the selected fields in MetarField order
+     */
+    @JsonValue
+    public Map<String, Object> getFields() {
+        return fields;
+    }
+}
@@ -0,0 +1,129 @@
+package com.viktorvranar.airport_metar_service.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Entity class representing the checkpoint of a METAR re-parse job.
+ * This class maps to the 'metar_reparse_checkpoint' table in the database.
+ */
+@Entity
+@Table(name = "metar_reparse_checkpoint")
+public class MetarReparseCheckpoint {
+
+    /**
+     * The name of the job this checkpoint belongs to.
+     */
+    @Id
+    @Column(name = "job_name", length = 64)
+    private String jobName;
+
+    /**
+     * The id of the last METAR row re-parsed, the job resumes after it.
+     */
+    @Column(name = "last_id", nullable = false)
+    private long lastId;
+
+    /**
+     * The number of rows re-parsed since the job was (re)started from the beginning.
+     */
+    @Column(name = "rows_processed", nullable = false)
+    private long rowsProcessed;
+
+    /**
+     * The time the checkpoint was last written.
+     */
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    /**
+     * Default constructor.
+     */
+    public MetarReparseCheckpoint() {}
+
+    /**
+     * Constructor with job name, starting from the beginning of the table.
+     *
+     * @param jobName the name of the job
+     */
+    public MetarReparseCheckpoint(String jobName) {
+        this.jobName = jobName;
+    }
+
+    // Getters and Setters
+    /**
+     * Get the name of the job.
+     *
+     * @return the job name
+     */
+    public String getJobName() {
+        return jobName;
+    }
+
+    /**
+     * Set the name of the job.
+     *
+     * @param jobName the job name to set
+     */
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    /**
+     * Get the id of the last METAR row re-parsed.
+     *
+     * @return the last id
+     */
+    public long getLastId() {
+        return lastId;
+    }
+
+    /**
+     * Set the id of the last METAR row re-parsed.
+     *
+     * @param lastId the last id to set
+     */
+    public void setLastId(long lastId) {
+        this.lastId = lastId;
+    }
+
+    /**
+     * Get the number of rows re-parsed.
+     *
+     * @return the rows processed
+     */
+    public long getRowsProcessed() {
+        return rowsProcessed;
+    }
+
+    /**
+     * Set the number of rows re-parsed.
+     *
+     * @param rowsProcessed the rows processed to set
+     */
+    public void setRowsProcessed(long rowsProcessed) {
+        this.rowsProcessed = rowsProcessed;
+    }
+
+    /**
+     * Get the time the checkpoint was last written.
+     *
+     * @return the updated at time
+     */
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Set the time the checkpoint was last written.
+     *
+     * @param updatedAt the updated at time to set
+     */
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
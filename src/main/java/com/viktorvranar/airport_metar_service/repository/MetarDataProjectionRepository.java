@@ -0,0 +1,49 @@
+package com.viktorvranar.airport_metar_service.repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import com.viktorvranar.airport_metar_service.entity.MetarField;
+import com.viktorvranar.airport_metar_service.entity.MetarProjection;
+
+/**
+ * Repository fragment for reading METAR data reduced to a selection of fields.
+ * Only the columns of the selected fields, plus id, ICAO code and the observation and receipt times,
+ * are read from the database, so e.g. the raw data is not loaded unless it is selected.
+ */
+public interface MetarDataProjectionRepository {
+
+    /**
+     * Find the selected fields of the latest METAR data entry of an airport.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param fields the fields to read
+     * @return an Optional containing the projection of the latest entry, or empty if not found
+     */
+    Optional<MetarProjection> findLatestProjection(String icaoCode, Set<MetarField> fields);
+
+    /**
+     * Find the selected fields of the latest METAR data entry of each of the given airports in one query.
+     *
+     * @param icaoCodes the ICAO codes of the airports
+     * @param fields the fields to read
+     * @return the projection of the latest entry per airport that has data
+     */
+    List<MetarProjection> findLatestProjectionForEachIcaoCodeIn(String[] icaoCodes, Set<MetarField> fields);
+
+    /**
+     * Find the selected fields of a page of the METAR history of an airport, newest first in (observedAt, id) order.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param from the earliest observation time to include
+     * @param beforeObservedAt the observation time of the last report of the previous page
+     * @param beforeId the id of the last report of the previous page
+     * @param limit the maximum number of entries to return
+     * @param fields the fields to read
+     * @return the projections of the entries of the page
+     */
+    List<MetarProjection> findHistoryPageProjection(String icaoCode, Instant from, Instant beforeObservedAt,
+                                                    long beforeId, int limit, Set<MetarField> fields);
+}
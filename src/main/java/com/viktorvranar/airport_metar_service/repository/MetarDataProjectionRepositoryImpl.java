@@ -0,0 +1,94 @@
+package com.viktorvranar.airport_metar_service.repository;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.viktorvranar.airport_metar_service.entity.MetarField;
+import com.viktorvranar.airport_metar_service.entity.MetarProjection;
+
+/**
+ * JDBC implementation of the projection fragment of MetarDataRepository.
+ * The select list is built from the selected fields, the queries have the same shape and use the
+ * same indexes as their entity counterparts in MetarDataRepository.
+ */
+public class MetarDataProjectionRepositoryImpl implements MetarDataProjectionRepository {
+
+    /**
+     * Columns read for every projection, the selected fields follow from index BASE_COLUMNS + 1 on.
+     */
+    private static final String BASE_COLUMNS_SQL = "m.id, m.icao_code, m.observed_at, m.received_at, m.parse_version";
+    private static final int BASE_COLUMNS = 5;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MetarDataProjectionRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<MetarProjection> findLatestProjection(String icaoCode, Set<MetarField> fields) {
+        String sql = "SELECT " + selectList(fields) + " FROM metar m WHERE m.icao_code = ? ORDER BY m.id DESC LIMIT 1";
+        List<MetarProjection> rows = jdbcTemplate.query(sql, rowMapper(fields), icaoCode);
+        return rows.stream().findFirst();
+    }
+
+    @Override
+    public List<MetarProjection> findLatestProjectionForEachIcaoCodeIn(String[] icaoCodes, Set<MetarField> fields) {
+        String sql = "SELECT " + selectList(fields) + " FROM unnest(CAST(? AS varchar[])) AS c(icao_code) "
+                + "CROSS JOIN LATERAL (SELECT * FROM metar WHERE metar.icao_code = c.icao_code ORDER BY metar.id DESC LIMIT 1) m";
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            Array array = con.createArrayOf("varchar", icaoCodes);
+            ps.setArray(1, array);
+            return ps;
+        }, rowMapper(fields));
+    }
+
+    @Override
+    public List<MetarProjection> findHistoryPageProjection(String icaoCode, Instant from, Instant beforeObservedAt,
+                                                           long beforeId, int limit, Set<MetarField> fields) {
+        String sql = "SELECT " + selectList(fields) + " FROM metar m WHERE m.icao_code = ? AND m.observed_at >= ? "
+                + "AND (m.observed_at, m.id) < (?, ?) ORDER BY m.observed_at DESC, m.id DESC LIMIT ?";
+        return jdbcTemplate.query(sql, rowMapper(fields), icaoCode, Timestamp.from(from),
+                Timestamp.from(beforeObservedAt), beforeId, limit);
+    }
+
+    private static String selectList(Set<MetarField> fields) {
+        StringBuilder columns = new StringBuilder(BASE_COLUMNS_SQL);
+        for (MetarField field : fields) {
+            columns.append(", m.").append(field.getColumn());
+        }
+        return columns.toString();
+    }
+
+    private static RowMapper<MetarProjection> rowMapper(Set<MetarField> fields) {
+        return (rs, rowNum) -> mapRow(rs, fields);
+    }
+
+    private static MetarProjection mapRow(ResultSet rs, Set<MetarField> fields) throws SQLException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        int index = BASE_COLUMNS + 1;
+        for (MetarField field : fields) {
+            values.put(field.getJsonName(), field.read(rs, index++));
+        }
+        return new MetarProjection(
+                (Long) MetarField.ID.read(rs, 1),
+                rs.getString(2),
+                (Instant) MetarField.OBSERVED_AT.read(rs, 3),
+                (Instant) MetarField.RECEIVED_AT.read(rs, 4),
+                rs.getInt(5),
+                values);
+    }
+}
@@ -1,5 +1,7 @@
 package com.viktorvranar.airport_metar_service.repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,8 +13,9 @@ import com.viktorvranar.airport_metar_service.entity.MetarData;
 /**
  * Repository interface for managing METAR data entities.
  * Provides CRUD operations and custom query methods for METAR data.
+ * Queries reading only a selection of fields are in the MetarDataProjectionRepository fragment.
  */
-public interface MetarDataRepository extends JpaRepository<MetarData, Long> {
+public interface MetarDataRepository extends JpaRepository<MetarData, Long>, MetarDataProjectionRepository {
     
     /**
      * Find the first METAR data entry for an airport ordered by ID in descending order.
@@ -40,4 +43,65 @@ public interface MetarDataRepository extends JpaRepository<MetarData, Long> {
     // Modified to order by ID instead of observationTime
     @Query("SELECT m FROM MetarData m WHERE m.icaoCode = ?1 ORDER BY m.id DESC")
     MetarData findLatestByIcaoCode(String icaoCode);
-}
\ No newline at end of file
+
+    /**
+     * Find a METAR data entry for an airport by the hash of its raw data.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param rawHash the SHA-256 hash of the raw METAR data
+     * @return an Optional containing the METAR data if found, or empty if not found
+     */
+    Optional<MetarData> findFirstByIcaoCodeAndRawHash(String icaoCode, String rawHash);
+
+    /**
+     * Find which of the given ICAO code and raw data hash pairs are already stored.
+     * The arrays are zipped into pairs, and every pair is a single probe of the unique (icao_code, raw_hash) index.
+     *
+     * @param icaoCodes the ICAO codes of the pairs
+     * @param rawHashes the SHA-256 hashes of the raw METAR data of the pairs, in the same order
+     * @return a list of [icaoCode, rawHash] pairs that are stored
+     */
+    @Query(value = "SELECT m.icao_code, m.raw_hash FROM unnest(CAST(?1 AS varchar[]), CAST(?2 AS varchar[])) AS k(icao_code, raw_hash) "
+            + "JOIN metar m ON m.icao_code = k.icao_code AND m.raw_hash = k.raw_hash",
+            nativeQuery = true)
+    List<Object[]> findIcaoCodeAndRawHashByPairs(String[] icaoCodes, String[] rawHashes);
+
+    /**
+     * Find the observation times of the reports of the given airports observed since the given time.
+     * Reads only the (icao_code, observed_at, id) index range of each airport.
+     *
+     * @param icaoCodes the ICAO codes of the airports
+     * @param since the earliest observation time to include
+     * @return a list of [icaoCode, observedAt] pairs
+     */
+    @Query("SELECT m.icaoCode, m.observedAt FROM MetarData m WHERE m.icaoCode IN ?1 AND m.observedAt >= ?2")
+    List<Object[]> findIcaoCodeAndObservedAtByIcaoCodeInObservedSince(Collection<String> icaoCodes, Instant since);
+
+    /**
+     * Find the latest METAR data entry of each of the given airports in one query.
+     * Every airport is a single probe of the (icao_code, id) index, airports without data are left out.
+     *
+     * @param icaoCodes the ICAO codes of the airports
+     * @return the latest METAR data entry per airport that has data
+     */
+    @Query(value = "SELECT m.* FROM unnest(CAST(?1 AS varchar[])) AS c(icao_code) "
+            + "CROSS JOIN LATERAL (SELECT * FROM metar WHERE metar.icao_code = c.icao_code ORDER BY metar.id DESC LIMIT 1) m",
+            nativeQuery = true)
+    List<MetarData> findLatestForEachIcaoCodeIn(String[] icaoCodes);
+
+    /**
+     * Find a page of the METAR history of an airport, newest first in (observedAt, id) order.
+     * The row value comparison is a range condition on the (icao_code, observed_at, id) index,
+     * so every page costs the same no matter how deep it is.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param from the earliest observation time to include
+     * @param beforeObservedAt the observation time of the last report of the previous page
+     * @param beforeId the id of the last report of the previous page
+     * @param limit the maximum number of entries to return
+     * @return the METAR data entries of the page
+     */
+    @Query(value = "SELECT * FROM metar WHERE icao_code = ?1 AND observed_at >= ?2 AND (observed_at, id) < (?3, ?4) "
+            + "ORDER BY observed_at DESC, id DESC LIMIT ?5", nativeQuery = true)
+    List<MetarData> findHistoryPage(String icaoCode, Instant from, Instant beforeObservedAt, long beforeId, int limit);
+}
@@ -0,0 +1,13 @@
+package com.viktorvranar.airport_metar_service.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.viktorvranar.airport_metar_service.entity.MetarReparseCheckpoint;
+
+/**
+ * Repository interface for managing METAR re-parse job checkpoints, keyed by job name.
+ */
+@Repository
+public interface MetarReparseCheckpointRepository extends JpaRepository<MetarReparseCheckpoint, String> {
+}
@@ -14,7 +14,7 @@ import com.viktorvranar.airport_metar_service.entity.Subscription;
  * Provides CRUD operations and custom query methods for subscriptions.
  */
 @Repository
-public interface SubscriptionRepository extends JpaRepository<Subscription, Long> {
+public interface SubscriptionRepository extends JpaRepository<Subscription, Long>, SubscriptionWriteRepository {
 
     /**
      * Find a subscription by ICAO code.
@@ -0,0 +1,65 @@
+package com.viktorvranar.airport_metar_service.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+
+/**
+ * Repository fragment for atomic subscription writes.
+ * Every method is a single SQL statement, over one or all given ICAO codes, and returns the rows it
+ * changed, so callers learn the outcome without reading the table first and concurrent writes of the
+ * same ICAO code cannot race between a check and the write.
+ */
+public interface SubscriptionWriteRepository {
+
+    /**
+     * Insert an active subscription for an ICAO code unless it is subscribed already.
+     *
+     * @param icaoCode the ICAO code
+     * @return the inserted subscription, or empty if the ICAO code was subscribed already
+     */
+    Optional<Subscription> insert(String icaoCode);
+
+    /**
+     * Delete the subscription of an ICAO code.
+     *
+     * @param icaoCode the ICAO code
+     * @return the deleted subscription, or empty if the ICAO code was not subscribed
+     */
+    Optional<Subscription> deleteByIcaoCode(String icaoCode);
+
+    /**
+     * Set the active status of the subscription of an ICAO code.
+     *
+     * @param icaoCode the ICAO code
+     * @param active the new active status
+     * @return the updated subscription, or empty if the ICAO code is not subscribed
+     */
+    Optional<Subscription> updateActiveByIcaoCode(String icaoCode, boolean active);
+
+    /**
+     * Insert active subscriptions for all ICAO codes that are not subscribed yet.
+     *
+     * @param icaoCodes the ICAO codes, without duplicates
+     * @return the inserted subscriptions; ICAO codes that were subscribed already are left out
+     */
+    List<Subscription> insertAll(String[] icaoCodes);
+
+    /**
+     * Delete the subscriptions of the given ICAO codes.
+     *
+     * @param icaoCodes the ICAO codes
+     * @return the deleted subscriptions
+     */
+    List<Subscription> deleteAllByIcaoCodeIn(String[] icaoCodes);
+
+    /**
+     * Set the active status of the subscriptions of the given ICAO codes.
+     *
+     * @param icaoCodes the ICAO codes
+     * @param active the new active status
+     * @return the updated subscriptions
+     */
+    List<Subscription> updateActiveByIcaoCodeIn(String[] icaoCodes, boolean active);
+}
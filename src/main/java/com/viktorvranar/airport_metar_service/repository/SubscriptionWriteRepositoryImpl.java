@@ -0,0 +1,90 @@
+package com.viktorvranar.airport_metar_service.repository;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+
+/**
+ * JDBC implementation of the atomic write fragment of SubscriptionRepository.
+ * Bulk methods bind the ICAO codes as one array parameter, and RETURNING reports the changed rows.
+ */
+public class SubscriptionWriteRepositoryImpl implements SubscriptionWriteRepository {
+
+    private static final String RETURNING = " RETURNING id, icao_code, active";
+
+    private static final RowMapper<Subscription> ROW_MAPPER = (rs, rowNum) -> {
+        Subscription subscription = new Subscription(rs.getString("icao_code"));
+        subscription.setId(rs.getLong("id"));
+        subscription.setActive(rs.getBoolean("active"));
+        return subscription;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SubscriptionWriteRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<Subscription> insert(String icaoCode) {
+        return single(jdbcTemplate.query(
+                "INSERT INTO subscriptions (icao_code, active) VALUES (?, true) ON CONFLICT (icao_code) DO NOTHING" + RETURNING,
+                ROW_MAPPER, icaoCode));
+    }
+
+    @Override
+    public Optional<Subscription> deleteByIcaoCode(String icaoCode) {
+        return single(jdbcTemplate.query("DELETE FROM subscriptions WHERE icao_code = ?" + RETURNING, ROW_MAPPER, icaoCode));
+    }
+
+    @Override
+    public Optional<Subscription> updateActiveByIcaoCode(String icaoCode, boolean active) {
+        return single(jdbcTemplate.query("UPDATE subscriptions SET active = ? WHERE icao_code = ?" + RETURNING,
+                ROW_MAPPER, active, icaoCode));
+    }
+
+    @Override
+    public List<Subscription> insertAll(String[] icaoCodes) {
+        String sql = "INSERT INTO subscriptions (icao_code, active) SELECT c.icao_code, true "
+                + "FROM unnest(CAST(? AS varchar[])) WITH ORDINALITY AS c(icao_code, n) ORDER BY c.n "
+                + "ON CONFLICT (icao_code) DO NOTHING" + RETURNING;
+        return query(sql, icaoCodes, null);
+    }
+
+    @Override
+    public List<Subscription> deleteAllByIcaoCodeIn(String[] icaoCodes) {
+        return query("DELETE FROM subscriptions WHERE icao_code = ANY(?)" + RETURNING, icaoCodes, null);
+    }
+
+    @Override
+    public List<Subscription> updateActiveByIcaoCodeIn(String[] icaoCodes, boolean active) {
+        return query("UPDATE subscriptions SET active = ? WHERE icao_code = ANY(?)" + RETURNING, icaoCodes, active);
+    }
+
+    /**
+     * Run a statement with an optional leading active parameter followed by the ICAO code array.
+     */
+    private List<Subscription> query(String sql, String[] icaoCodes, Boolean active) {
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            int index = 1;
+            if (active != null) {
+                ps.setBoolean(index++, active);
+            }
+            ps.setArray(index, con.createArrayOf("varchar", icaoCodes));
+            return ps;
+        }, ROW_MAPPER);
+    }
+
+    /**
+     * The icao_code column is unique, so a statement on one ICAO code changes at most one row.
+     */
+    private static Optional<Subscription> single(List<Subscription> rows) {
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+}
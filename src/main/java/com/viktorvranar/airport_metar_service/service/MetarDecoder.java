@@ -0,0 +1,306 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+
+/**
+ * Decoder of parsed METAR data into natural language.
+ * Weather condition tokens are decoded in a single pass: each token is looked up once, either as a
+ * whole token, as a cloud layer, or as a weather group whose two-letter codes are resolved through a
+ * table indexed by the letters, and tokens that are none of these are kept as they are. Decoded text
+ * is never decoded again, so no substitution can rewrite the output of another one.
+ */
+public final class MetarDecoder {
+
+    private static final String[][] WHOLE_TOKENS = {
+        {"NSW", "no significant weather"},
+        {"NCD", "nil cloud detected"},
+        {"NSC", "no significant cloud"},
+        {"SKC", "sky clear"},
+        {"CLR", "clear"},
+        {"CAVOK", "ceiling and visibility OK"}
+    };
+
+    private static final String[][] CLOUD_COVER = {
+        {"FEW", "few clouds at "},
+        {"SCT", "scattered clouds at "},
+        {"BKN", "broken clouds at "},
+        {"OVC", "overcast at "},
+        {"VV", "vertical visibility "}
+    };
+
+    private static final String[][] CLOUD_TYPES = {
+        {"CB", " cumulonimbus"},
+        {"TCU", " towering cumulus"}
+    };
+
+    /**
+     * Weather descriptors and phenomena by two-letter code, indexed by codeIndex.
+     */
+    private static final String[] DESCRIPTORS = new String[26 * 26];
+    private static final String[] PHENOMENA = new String[26 * 26];
+
+    static {
+        String[][] descriptors = {
+            {"MI", "shallow"}, {"BC", "patches of"}, {"PR", "partial"}, {"DR", "low drifting"},
+            {"BL", "blowing"}, {"SH", "showers of"}, {"TS", "thunderstorm with"}, {"FZ", "freezing"}
+        };
+        String[][] phenomena = {
+            {"DZ", "drizzle"}, {"RA", "rain"}, {"SN", "snow"}, {"SG", "snow grains"}, {"IC", "ice crystals"},
+            {"PL", "ice pellets"}, {"GR", "hail"}, {"GS", "small hail"}, {"UP", "unknown precipitation"},
+            {"BR", "mist"}, {"FG", "fog"}, {"FU", "smoke"}, {"VA", "volcanic ash"}, {"DU", "dust"},
+            {"SA", "sand"}, {"HZ", "haze"}, {"PY", "spray"}, {"PO", "dust whirls"}, {"SQ", "squalls"},
+            {"FC", "funnel cloud"}, {"SS", "sandstorm"}, {"DS", "duststorm"}
+        };
+        for (String[] entry : descriptors) {
+            DESCRIPTORS[codeIndex(entry[0], 0)] = entry[1];
+        }
+        for (String[] entry : phenomena) {
+            PHENOMENA[codeIndex(entry[0], 0)] = entry[1];
+        }
+    }
+
+    private MetarDecoder() {}
+
+    /**
+     * Decode METAR data into natural language.
+     *
+     * @param metarData the parsed MetarData entity
+     * @return a string representation of the METAR data in natural language
+     */
+    public static String decode(MetarData metarData) {
+        StringBuilder decoded = new StringBuilder(256);
+
+        // Add airport information
+        decoded.append("Weather report for airport ").append(metarData.getIcaoCode()).append(". ");
+
+        // Add observation time
+        if (isPresent(metarData.getObservationTime())) {
+            decoded.append("Observation time: ").append(metarData.getObservationTime()).append(". ");
+        }
+
+        // Add wind information
+        if (isPresent(metarData.getWindDirection()) && isPresent(metarData.getWindSpeed())) {
+            decoded.append("Wind: from ").append(metarData.getWindDirection())
+                   .append(" degrees at ").append(metarData.getWindSpeed()).append(" knots. ");
+        }
+
+        // Add visibility
+        if (isPresent(metarData.getVisibility())) {
+            decoded.append("Visibility: ").append(metarData.getVisibility()).append(" meters. ");
+        }
+
+        // Add weather conditions
+        if (isPresent(metarData.getWeatherConditions())) {
+            decoded.append("Weather conditions: ");
+            appendWeatherConditions(decoded, metarData.getWeatherConditions());
+            decoded.append(". ");
+        }
+
+        // Add temperature and dew point
+        if (isPresent(metarData.getTemperature())) {
+            decoded.append("Temperature: ");
+            appendCelsius(decoded, metarData.getTemperature());
+            decoded.append(" degrees Celsius. ");
+        }
+        if (isPresent(metarData.getDewPoint())) {
+            decoded.append("Dew point: ");
+            appendCelsius(decoded, metarData.getDewPoint());
+            decoded.append(" degrees Celsius. ");
+        }
+
+        // Add altimeter
+        if (isPresent(metarData.getAltimeter())) {
+            decoded.append("Altimeter: ").append(metarData.getAltimeter()).append(". ");
+        }
+
+        // Drop the trailing space
+        decoded.setLength(decoded.length() - 1);
+        return decoded.toString();
+    }
+
+    /**
+     * Decode weather conditions abbreviations into natural language.
+     *
+     * @param conditions the weather conditions string, tokens separated by whitespace
+     * @return decoded weather conditions, tokens separated by a single space
+     */
+    public static String decodeWeatherConditions(String conditions) {
+        StringBuilder decoded = new StringBuilder(conditions.length() * 3);
+        appendWeatherConditions(decoded, conditions);
+        return decoded.toString();
+    }
+
+    private static void appendWeatherConditions(StringBuilder out, String conditions) {
+        int length = conditions.length();
+        int pos = 0;
+        boolean first = true;
+        while (pos < length) {
+            while (pos < length && Character.isWhitespace(conditions.charAt(pos))) {
+                pos++;
+            }
+            int end = pos;
+            while (end < length && !Character.isWhitespace(conditions.charAt(end))) {
+                end++;
+            }
+            if (end > pos) {
+                if (!first) {
+                    out.append(' ');
+                }
+                appendToken(out, conditions, pos, end);
+                first = false;
+            }
+            pos = end;
+        }
+    }
+
+    private static void appendToken(StringBuilder out, String s, int start, int end) {
+        int length = end - start;
+        for (String[] entry : WHOLE_TOKENS) {
+            if (entry[0].length() == length && s.startsWith(entry[0], start)) {
+                out.append(entry[1]);
+                return;
+            }
+        }
+        if (appendCloudLayer(out, s, start, end) || appendWeatherGroup(out, s, start, end)) {
+            return;
+        }
+        out.append(s, start, end);
+    }
+
+    /**
+     * Decode a cloud layer such as FEW040, BKN012CB or VV001, heights are kept in hundreds of feet.
+     */
+    private static boolean appendCloudLayer(StringBuilder out, String s, int start, int end) {
+        for (String[] cover : CLOUD_COVER) {
+            int height = start + cover[0].length();
+            if (height + 3 > end || !s.startsWith(cover[0], start) || !isDigits(s, height, height + 3)) {
+                continue;
+            }
+            String type = "";
+            if (height + 3 < end) {
+                type = null;
+                for (String[] cloudType : CLOUD_TYPES) {
+                    if (cloudType[0].length() == end - height - 3 && s.startsWith(cloudType[0], height + 3)) {
+                        type = cloudType[1];
+                    }
+                }
+                if (type == null) {
+                    return false;
+                }
+            }
+            out.append(cover[1]).append(s, height, height + 3).append(type);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Decode a present weather group: optional intensity or proximity, descriptors, then phenomena,
+     * such as -SN, +TSRA, FZFG or VCSH. Groups with an unknown code are left alone.
+     */
+    private static boolean appendWeatherGroup(StringBuilder out, String s, int start, int end) {
+        int pos = start;
+        String intensity = null;
+        boolean vicinity = false;
+        if (s.charAt(pos) == '-') {
+            intensity = "light ";
+            pos++;
+        } else if (s.charAt(pos) == '+') {
+            intensity = "heavy ";
+            pos++;
+        } else if (s.startsWith("VC", pos)) {
+            vicinity = true;
+            pos += 2;
+        }
+        if (pos == end || (end - pos) % 2 != 0) {
+            return false;
+        }
+
+        // Check the whole group before writing anything
+        int descriptorsEnd = pos;
+        while (descriptorsEnd < end && DESCRIPTORS[codeIndex(s, descriptorsEnd)] != null) {
+            descriptorsEnd += 2;
+        }
+        for (int i = descriptorsEnd; i < end; i += 2) {
+            if (PHENOMENA[codeIndex(s, i)] == null) {
+                return false;
+            }
+        }
+
+        if (intensity != null) {
+            out.append(intensity);
+        }
+        if (descriptorsEnd == end) {
+            // Descriptor on its own, e.g. TS or VCSH
+            appendDescriptorsAlone(out, s, pos, end);
+        } else {
+            for (int i = pos; i < descriptorsEnd; i += 2) {
+                out.append(DESCRIPTORS[codeIndex(s, i)]).append(' ');
+            }
+            for (int i = descriptorsEnd; i < end; i += 2) {
+                if (i > descriptorsEnd) {
+                    out.append(" and ");
+                }
+                out.append(PHENOMENA[codeIndex(s, i)]);
+            }
+        }
+        if (vicinity) {
+            out.append(" in the vicinity");
+        }
+        return true;
+    }
+
+    private static void appendDescriptorsAlone(StringBuilder out, String s, int start, int end) {
+        for (int i = start; i < end; i += 2) {
+            if (i > start) {
+                out.append(' ');
+            }
+            String descriptor = DESCRIPTORS[codeIndex(s, i)];
+            if (s.startsWith("TS", i)) {
+                out.append("thunderstorm");
+            } else if (s.startsWith("SH", i)) {
+                out.append("showers");
+            } else {
+                out.append(descriptor);
+            }
+        }
+    }
+
+    /**
+     * Get the table index of the two-letter code at the given position, or 0 for anything but two
+     * upper case letters. Index 0 is AA, which is not a code, so its table entries stay null.
+     */
+    private static int codeIndex(String s, int pos) {
+        if (pos + 2 > s.length()) {
+            return 0;
+        }
+        char first = s.charAt(pos);
+        char second = s.charAt(pos + 1);
+        if (first < 'A' || first > 'Z' || second < 'A' || second > 'Z') {
+            return 0;
+        }
+        return (first - 'A') * 26 + (second - 'A');
+    }
+
+    private static void appendCelsius(StringBuilder out, String value) {
+        if (value.startsWith("M")) {
+            out.append('-').append(value, 1, value.length());
+        } else {
+            out.append(value);
+        }
+    }
+
+    private static boolean isDigits(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPresent(String value) {
+        return value != null && !value.isEmpty();
+    }
+}
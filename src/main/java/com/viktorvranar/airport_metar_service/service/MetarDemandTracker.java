@@ -0,0 +1,101 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Read demand for the latest METAR of each airport, as an exponentially decaying read rate.
+ * Every read adds one to the airport's count, and the count halves every half-life, so a steady
+ * rate of r reads per hour settles at a count of r * half-life / ln 2. Recording is a single
+ * atomic map update, and at most max-airports airports are tracked; when full, decayed airports are
+ * pruned at most once a minute, and reads of further airports are ignored until there is room.
+ */
+@Service
+public class MetarDemandTracker {
+
+    /**
+     * Counts below this are pruned, less than one read within the last few half-lives.
+     */
+    private static final double MIN_COUNT = 0.01;
+
+    private final Duration halfLife;
+    private final int maxAirports;
+    private final Map<String, Rate> rates = new ConcurrentHashMap<>();
+    private volatile long lastPruneMillis;
+
+    public MetarDemandTracker(@Value("${metar.fetch.adaptive.demand-half-life:PT1H}") Duration halfLife,
+                              @Value("${metar.fetch.adaptive.demand-max-airports:10000}") int maxAirports) {
+        this.halfLife = halfLife;
+        this.maxAirports = maxAirports;
+    }
+
+    /**
+     * Record a read of the latest METAR of an airport.
+     *
+     * @param icaoCode the ICAO code of the airport
+     */
+    public void recordRead(String icaoCode) {
+        recordRead(icaoCode, Instant.now());
+    }
+
+    void recordRead(String icaoCode, Instant now) {
+        long millis = now.toEpochMilli();
+        if (rates.size() >= maxAirports && !rates.containsKey(icaoCode)) {
+            if (millis - lastPruneMillis < 60_000) {
+                return;
+            }
+            prune(now);
+            if (rates.size() >= maxAirports) {
+                return;
+            }
+        }
+        rates.compute(icaoCode, (key, rate) -> new Rate(rate != null ? rate.countAt(millis, halfLife) + 1 : 1, millis));
+    }
+
+    /**
+     * Get the current read rate of an airport.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param now the current time
+     * @return the estimated reads per hour, 0 for airports without reads
+     */
+    public double readsPerHour(String icaoCode, Instant now) {
+        Rate rate = rates.get(icaoCode);
+        if (rate == null) {
+            return 0;
+        }
+        double halfLifeHours = halfLife.toMillis() / 3_600_000.0;
+        return rate.countAt(now.toEpochMilli(), halfLife) * Math.log(2) / halfLifeHours;
+    }
+
+    /**
+     * Forget the airports whose demand has decayed away.
+     *
+     * @param now the current time
+     */
+    public void prune(Instant now) {
+        long millis = now.toEpochMilli();
+        lastPruneMillis = millis;
+        rates.entrySet().removeIf(entry -> entry.getValue().countAt(millis, halfLife) < MIN_COUNT);
+    }
+
+    private static final class Rate {
+        private final double count;
+        private final long atMillis;
+
+        private Rate(double count, long atMillis) {
+            this.count = count;
+            this.atMillis = atMillis;
+        }
+
+        private double countAt(long millis, Duration halfLife) {
+            long elapsed = Math.max(0, millis - atMillis);
+            return count * Math.pow(0.5, (double) elapsed / halfLife.toMillis());
+        }
+    }
+}
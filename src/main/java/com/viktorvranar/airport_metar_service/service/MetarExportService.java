@@ -0,0 +1,274 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Service class for exporting the full METAR history of an airport.
+ * Rows are read through a forward-only database cursor, fetch-size rows at a time, and written to
+ * the output as they arrive, so memory use does not depend on the number of exported rows.
+ */
+@Service
+public class MetarExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetarExportService.class);
+
+    /**
+     * Supported export formats.
+     */
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * Exported columns and their names in the output, matching the JSON names of MetarData.
+     */
+    private static final String[][] COLUMNS = {
+        {"id", "id"},
+        {"icao_code", "icaoCode"},
+        {"raw_data", "rawData"},
+        {"observation_time", "observationTime"},
+        {"wind_direction", "windDirection"},
+        {"wind_speed", "windSpeed"},
+        {"visibility", "visibility"},
+        {"weather_conditions", "weatherConditions"},
+        {"temperature", "temperature"},
+        {"dew_point", "dewPoint"},
+        {"altimeter", "altimeter"},
+        {"observed_at", "observedAt"},
+        {"received_at", "receivedAt"},
+        {"wind_speed_kt", "windSpeedKt"},
+        {"visibility_m", "visibilityM"},
+        {"temperature_c", "temperatureC"},
+        {"dew_point_c", "dewPointC"},
+        {"qnh_hpa", "qnhHpa"}
+    };
+
+    private static final int ID = 0;
+    private static final int OBSERVED_AT = 11;
+    private static final int RECEIVED_AT = 12;
+    private static final int FIRST_INTEGER = 13;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public MetarExportService(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${metar.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+        // PostgreSQL only streams with a cursor inside a transaction
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Write the METAR history of an airport to the output, oldest report first.
+     * The output is flushed after every fetched block of rows, so the client receives data right away.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param from the earliest observation time to include, or null for no lower bound
+     * @param to the observation time to stop before, or null for no upper bound
+     * @param format the output format
+     * @param out the output the rows are written to, not closed
+     * @return the number of exported rows
+     * @throws IOException if writing the output fails
+     */
+    public long export(String icaoCode, Instant from, Instant to, Format format, OutputStream out) throws IOException {
+        logger.debug("Exporting METAR data for airport: {} from {} to {} as {}", icaoCode, from, to, format);
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(COLUMNS[i][0]);
+        }
+        sql.append(" FROM metar WHERE icao_code = ?");
+        List<Object> args = new ArrayList<>(3);
+        args.add(icaoCode);
+        if (from != null) {
+            sql.append(" AND observed_at >= ?");
+            args.add(Timestamp.from(from));
+        }
+        if (to != null) {
+            sql.append(" AND observed_at < ?");
+            args.add(Timestamp.from(to));
+        }
+        sql.append(" ORDER BY id");
+
+        RowWriter writer = format == Format.CSV ? new CsvRowWriter(out) : new NdjsonRowWriter(out);
+        try {
+            long rows = readOnlyTransaction.execute(status -> {
+                long[] count = {0};
+                jdbcTemplate.query(con -> {
+                    PreparedStatement ps = con.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    ps.setFetchSize(fetchSize);
+                    for (int i = 0; i < args.size(); i++) {
+                        ps.setObject(i + 1, args.get(i));
+                    }
+                    return ps;
+                }, rs -> {
+                    try {
+                        writer.write(rs);
+                        if (++count[0] % fetchSize == 0) {
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                return count[0];
+            });
+            writer.flush();
+            logger.debug("Exported {} METAR data entries for airport: {}", rows, icaoCode);
+            return rows;
+        } catch (UncheckedIOException e) {
+            // Typically the client went away, the cursor and transaction are already closed
+            throw e.getCause();
+        }
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * One JSON object per line, written with a streaming generator instead of building entities.
+     */
+    private class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(OutputStream out) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Rows are separated by the newline written after each of them
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField(COLUMNS[ID][1], rs.getLong(COLUMNS[ID][0]));
+            for (int i = ID + 1; i < COLUMNS.length; i++) {
+                String name = COLUMNS[i][1];
+                if (i == OBSERVED_AT || i == RECEIVED_AT) {
+                    Timestamp timestamp = rs.getTimestamp(COLUMNS[i][0]);
+                    writeStringOrNull(name, timestamp != null ? timestamp.toInstant().toString() : null);
+                } else if (i >= FIRST_INTEGER) {
+                    Integer value = rs.getObject(COLUMNS[i][0], Integer.class);
+                    if (value != null) {
+                        generator.writeNumberField(name, value);
+                    } else {
+                        generator.writeNullField(name);
+                    }
+                } else {
+                    writeStringOrNull(name, rs.getString(COLUMNS[i][0]));
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        private void writeStringOrNull(String name, String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(name, value);
+            } else {
+                generator.writeNullField(name);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header line, empty cells for missing values.
+     */
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(COLUMNS[i][1]);
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value;
+                if (i == ID) {
+                    value = Long.toString(rs.getLong(COLUMNS[i][0]));
+                } else if (i == OBSERVED_AT || i == RECEIVED_AT) {
+                    Timestamp timestamp = rs.getTimestamp(COLUMNS[i][0]);
+                    value = timestamp != null ? timestamp.toInstant().toString() : null;
+                } else if (i >= FIRST_INTEGER) {
+                    Integer number = rs.getObject(COLUMNS[i][0], Integer.class);
+                    value = number != null ? number.toString() : null;
+                } else {
+                    value = rs.getString(COLUMNS[i][0]);
+                }
+                if (value != null) {
+                    writeCell(value);
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeCell(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+}
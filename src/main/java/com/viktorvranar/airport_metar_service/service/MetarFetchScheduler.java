@@ -0,0 +1,310 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.repository.MetarDataRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Adaptive per-station fetch scheduling, enabled with metar.fetch.mode=adaptive.
+ * Every active station has its own next fetch time in a priority queue, and every tick fetches only
+ * the stations that are due. The publication pattern of a station (StationCadence) is learned from the
+ * observation times of its stored reports, loaded once when the station is scheduled and then updated
+ * with every fetched report, and the station is fetched publication-delay after its next routine
+ * observation. If the report is not there yet, the fetch is retried after retry-interval, doubling
+ * up to max-interval. Stations without a known pattern are fetched every metar.fetch.interval.
+ * Read demand from MetarDemandTracker shortens the longest gap between two fetches of a station from
+ * max-interval down to min-interval, so frequently read stations also pick up reports issued off
+ * schedule, like SPECIs, quickly. The delay between observation and fetch of new reports is recorded
+ * in the metar.fetch.report.delay metric.
+ */
+@Service
+@ConditionalOnExpression("${metar.fetch.enabled:false} and '${metar.fetch.mode:fixed}' == 'adaptive'")
+public class MetarFetchScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetarFetchScheduler.class);
+
+    /**
+     * The maximum number of ICAO codes per observation time query.
+     */
+    private static final int LEARN_CHUNK_SIZE = 1000;
+
+    private final MetarFetchService metarFetchService;
+    private final SubscriptionService subscriptionService;
+    private final MetarDataRepository metarDataRepository;
+    private final MetarDemandTracker metarDemandTracker;
+    private final Duration defaultInterval;
+    private final Duration publicationDelay;
+    private final Duration retryInterval;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final Duration learningWindow;
+    private final double demandWeight;
+    private final Timer reportDelay;
+
+    private final Map<String, Station> stations = new HashMap<>();
+    private final PriorityQueue<Station> queue = new PriorityQueue<>(Comparator.comparing((Station station) -> station.nextFetchAt));
+
+    public MetarFetchScheduler(MetarFetchService metarFetchService,
+                               SubscriptionService subscriptionService,
+                               MetarDataRepository metarDataRepository,
+                               MetarDemandTracker metarDemandTracker,
+                               MeterRegistry meterRegistry,
+                               @Value("${metar.fetch.interval:PT30M}") Duration defaultInterval,
+                               @Value("${metar.fetch.adaptive.publication-delay:PT5M}") Duration publicationDelay,
+                               @Value("${metar.fetch.adaptive.retry-interval:PT2M}") Duration retryInterval,
+                               @Value("${metar.fetch.adaptive.min-interval:PT1M}") Duration minInterval,
+                               @Value("${metar.fetch.adaptive.max-interval:PT1H}") Duration maxInterval,
+                               @Value("${metar.fetch.adaptive.learning-window:P1D}") Duration learningWindow,
+                               @Value("${metar.fetch.adaptive.demand-weight:0.1}") double demandWeight) {
+        this.metarFetchService = metarFetchService;
+        this.subscriptionService = subscriptionService;
+        this.metarDataRepository = metarDataRepository;
+        this.metarDemandTracker = metarDemandTracker;
+        this.defaultInterval = defaultInterval;
+        this.publicationDelay = publicationDelay;
+        this.retryInterval = retryInterval;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.learningWindow = learningWindow;
+        this.demandWeight = demandWeight;
+        this.reportDelay = Timer.builder("metar.fetch.report.delay")
+                .description("Time from observation to fetch of new METAR reports")
+                .register(meterRegistry);
+        Gauge.builder("metar.fetch.scheduled.stations", this, MetarFetchScheduler::getStationCount)
+                .description("Stations with an adaptive fetch schedule")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Scheduled entry point, fetches the stations that are due.
+     */
+    @Scheduled(initialDelayString = "${metar.fetch.initial-delay:PT10S}", fixedDelayString = "${metar.fetch.adaptive.tick:PT15S}")
+    public void tick() {
+        fetchDue(Instant.now());
+    }
+
+    /**
+     * Fetch the stations due at the given time and schedule their next fetch.
+     *
+     * @param now the current time
+     * @return the outcome of the fetch, or null if no station was due
+     */
+    MetarFetchService.FetchCycleResult fetchDue(Instant now) {
+        List<String> due = takeDue(now);
+        metarDemandTracker.prune(now);
+        if (due.isEmpty()) {
+            return null;
+        }
+        logger.info("Fetching METAR data for {} due stations", due.size());
+        MetarFetchService.FetchCycleResult result;
+        try {
+            result = metarFetchService.fetchStations(due);
+        } catch (RuntimeException e) {
+            // Keep the stations scheduled, the failed fetch counts as a miss
+            logger.error("Error fetching METAR data for {} due stations", due.size(), e);
+            reschedule(due, List.of(), now);
+            return null;
+        }
+        reschedule(due, result.getReports(), now);
+        return result;
+    }
+
+    /**
+     * Get the number of scheduled stations.
+     *
+     * @return the number of active stations with a fetch schedule
+     */
+    public synchronized int getStationCount() {
+        return stations.size();
+    }
+
+    /**
+     * Get the next fetch time of a station.
+     *
+     * @param icaoCode the ICAO code of the station
+     * @return the next fetch time, or null if the station is not scheduled
+     */
+    public synchronized Instant getNextFetchAt(String icaoCode) {
+        Station station = stations.get(icaoCode);
+        return station != null ? station.nextFetchAt : null;
+    }
+
+    /**
+     * Bring the schedule in line with the active subscriptions and take the stations that are due.
+     */
+    private synchronized List<String> takeDue(Instant now) {
+        Set<String> active = new HashSet<>();
+        List<Station> added = new ArrayList<>();
+        for (Subscription subscription : subscriptionService.getActiveSubscriptions()) {
+            String icaoCode = subscription.getIcaoCode();
+            active.add(icaoCode);
+            if (!stations.containsKey(icaoCode)) {
+                Station station = new Station(icaoCode);
+                stations.put(icaoCode, station);
+                added.add(station);
+            }
+        }
+        if (stations.size() > active.size()) {
+            stations.values().removeIf(station -> {
+                if (active.contains(station.icaoCode)) {
+                    return false;
+                }
+                queue.remove(station);
+                return true;
+            });
+        }
+        if (!added.isEmpty()) {
+            learn(added, now);
+            for (Station station : added) {
+                // Fetch right away unless the latest report is stored already and the next one is not due yet
+                Instant lastObservedAt = station.cadence.getLastObservedAt();
+                Instant expected = lastObservedAt != null ? station.cadence.nextIssueAfter(lastObservedAt) : null;
+                station.nextFetchAt = expected != null && expected.plus(publicationDelay).isAfter(now)
+                        ? nextFetchAt(station, now) : now;
+                queue.add(station);
+            }
+            logger.info("Scheduled {} new stations for adaptive METAR fetching", added.size());
+        }
+
+        List<String> due = new ArrayList<>();
+        while (!queue.isEmpty() && !queue.peek().nextFetchAt.isAfter(now)) {
+            due.add(queue.poll().icaoCode);
+        }
+        return due;
+    }
+
+    /**
+     * Load the observation times of the learning window of new stations.
+     */
+    private void learn(List<Station> added, Instant now) {
+        Map<String, Station> byIcaoCode = new HashMap<>();
+        for (Station station : added) {
+            byIcaoCode.put(station.icaoCode, station);
+        }
+        List<String> icaoCodes = new ArrayList<>(byIcaoCode.keySet());
+        for (int from = 0; from < icaoCodes.size(); from += LEARN_CHUNK_SIZE) {
+            List<String> chunk = icaoCodes.subList(from, Math.min(from + LEARN_CHUNK_SIZE, icaoCodes.size()));
+            for (Object[] row : metarDataRepository.findIcaoCodeAndObservedAtByIcaoCodeInObservedSince(chunk,
+                    now.minus(learningWindow))) {
+                Station station = byIcaoCode.get((String) row[0]);
+                if (station != null && row[1] != null) {
+                    station.cadence.observe((Instant) row[1]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Learn from the fetched reports and put the fetched stations back in the queue.
+     */
+    private synchronized void reschedule(List<String> fetched, List<MetarData> reports, Instant now) {
+        Map<String, MetarData> reportByIcaoCode = new HashMap<>();
+        for (MetarData report : reports) {
+            reportByIcaoCode.put(report.getIcaoCode(), report);
+        }
+        for (String icaoCode : fetched) {
+            Station station = stations.get(icaoCode);
+            if (station == null) {
+                // Unsubscribed while it was fetched
+                continue;
+            }
+            MetarData report = reportByIcaoCode.get(icaoCode);
+            Instant lastObservedAt = station.cadence.getLastObservedAt();
+            if (report != null && report.getObservedAt() != null
+                    && (lastObservedAt == null || report.getObservedAt().isAfter(lastObservedAt))) {
+                station.cadence.observe(report.getObservedAt());
+                station.misses = 0;
+                reportDelay.record(Duration.between(report.getObservedAt(), now));
+            } else {
+                station.misses++;
+            }
+            station.lastFetchAt = now;
+            station.nextFetchAt = nextFetchAt(station, now);
+            queue.add(station);
+        }
+    }
+
+    /**
+     * Decide when to fetch a station next.
+     *
+     * @param station the station
+     * @param now the current time
+     * @return the next fetch time, at least min-interval from now
+     */
+    Instant nextFetchAt(Station station, Instant now) {
+        Instant next;
+        Duration period = station.cadence.getPeriod();
+        if (period == null) {
+            next = (station.lastFetchAt != null ? station.lastFetchAt : now).plus(defaultInterval);
+        } else {
+            Instant due = station.cadence.nextIssueAfter(station.cadence.getLastObservedAt()).plus(publicationDelay);
+            // A report that has not shown up half a period after it was due was skipped, wait for the next one
+            while (due.plus(period.dividedBy(2)).isBefore(now)) {
+                due = due.plus(period);
+            }
+            if (due.isAfter(now)) {
+                next = due;
+            } else {
+                // Due but not published yet, retry with a doubling interval until the next report is due
+                Duration retry = retryInterval.multipliedBy(1L << Math.min(Math.max(station.misses - 1, 0), 10));
+                next = min(now.plus(min(retry, maxInterval)), due.plus(period));
+            }
+        }
+
+        double readsPerHour = metarDemandTracker.readsPerHour(station.icaoCode, now);
+        Duration demandInterval = Duration.ofMillis((long) (maxInterval.toMillis() / (1 + readsPerHour * demandWeight)));
+        Instant last = station.lastFetchAt != null ? station.lastFetchAt : now;
+        next = min(next, last.plus(max(demandInterval, minInterval)));
+        return max(next, now.plus(minInterval));
+    }
+
+    private static Instant min(Instant a, Instant b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static Instant max(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    private static Duration max(Duration a, Duration b) {
+        return a.compareTo(b) >= 0 ? a : b;
+    }
+
+    static final class Station {
+        private final String icaoCode;
+        private final StationCadence cadence = new StationCadence();
+        private Instant lastFetchAt;
+        private Instant nextFetchAt;
+        private int misses;
+
+        Station(String icaoCode) {
+            this.icaoCode = icaoCode;
+        }
+    }
+}
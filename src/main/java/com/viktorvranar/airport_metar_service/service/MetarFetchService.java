@@ -0,0 +1,360 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Service class for fetching METAR data for subscribed airports from the NOAA station files.
+ * Replaces the fetch_metar_data.sh cron job: all active stations are fetched concurrently on
+ * virtual threads and the reports are stored through MetarService without an HTTP round trip.
+ * Station files are requested with If-None-Match/If-Modified-Since, so unchanged files are
+ * answered with 304 Not Modified and cost no body transfer. Active subscriptions are read from
+ * the subscription cache, not from the database.
+ * In the default fixed mode every active station is fetched each interval. In adaptive mode the
+ * fixed cycle is off and MetarFetchScheduler fetches each station when its next report is due.
+ * Station requests are counted in the metar.fetch.requests metric, tagged with result updated,
+ * not-modified or failed.
+ */
+@Service
+@ConditionalOnProperty(name = "metar.fetch.enabled", havingValue = "true")
+public class MetarFetchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetarFetchService.class);
+
+    private final SubscriptionService subscriptionService;
+    private final MetarService metarService;
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final int maxConcurrency;
+    private final Duration timeout;
+    private final boolean adaptive;
+    private final Counter updatedRequests;
+    private final Counter notModifiedRequests;
+    private final Counter failedRequests;
+
+    /**
+     * Validators of the last stored station file per ICAO code, sent back on the next request.
+     */
+    private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+    public MetarFetchService(SubscriptionService subscriptionService,
+                             MetarService metarService,
+                             @Value("${metar.fetch.base-url:https://tgftp.nws.noaa.gov/data/observations/metar/stations}") String baseUrl,
+                             @Value("${metar.fetch.max-concurrency:32}") int maxConcurrency,
+                             @Value("${metar.fetch.timeout:PT30S}") Duration timeout,
+                             @Value("${metar.fetch.mode:fixed}") String mode,
+                             MeterRegistry meterRegistry) {
+        this.subscriptionService = subscriptionService;
+        this.metarService = metarService;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.maxConcurrency = maxConcurrency;
+        this.timeout = timeout;
+        this.adaptive = "adaptive".equalsIgnoreCase(mode);
+        this.updatedRequests = requestCounter(meterRegistry, "updated");
+        this.notModifiedRequests = requestCounter(meterRegistry, "not-modified");
+        this.failedRequests = requestCounter(meterRegistry, "failed");
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Scheduled entry point, runs a fetch cycle with a fixed delay between cycles unless fetches are adaptive.
+     */
+    @Scheduled(initialDelayString = "${metar.fetch.initial-delay:PT10S}", fixedDelayString = "${metar.fetch.interval:PT30M}")
+    public void scheduledFetch() {
+        if (adaptive) {
+            return;
+        }
+        fetchActiveSubscriptions();
+    }
+
+    /**
+     * Fetch the current METAR for every active subscription and store all new reports.
+     *
+     * @return the outcome of the fetch cycle
+     */
+    public FetchCycleResult fetchActiveSubscriptions() {
+        List<Subscription> subscriptions = subscriptionService.getActiveSubscriptions();
+        List<String> icaoCodes = new ArrayList<>(subscriptions.size());
+        for (Subscription subscription : subscriptions) {
+            icaoCodes.add(subscription.getIcaoCode());
+        }
+        logger.info("Starting METAR fetch cycle for {} active subscriptions", icaoCodes.size());
+        return fetchStations(icaoCodes);
+    }
+
+    /**
+     * Fetch the current METAR of the given stations and store all new reports.
+     *
+     * @param icaoCodes the ICAO codes of the stations
+     * @return the outcome of the fetch cycle, with the new reports
+     */
+    public FetchCycleResult fetchStations(Collection<String> icaoCodes) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<Future<StationResult>> futures = new ArrayList<>(icaoCodes.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String icaoCode : icaoCodes) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return fetchStation(icaoCode);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+
+        List<StationResult> updated = new ArrayList<>();
+        int notModified = 0;
+        int failed = 0;
+        for (Future<StationResult> future : futures) {
+            if (future.state() != Future.State.SUCCESS) {
+                failed++;
+                continue;
+            }
+            StationResult result = future.resultNow();
+            switch (result.status) {
+                case UPDATED -> updated.add(result);
+                case NOT_MODIFIED -> notModified++;
+                case FAILED -> failed++;
+            }
+        }
+        updatedRequests.increment(updated.size());
+        notModifiedRequests.increment(notModified);
+        failedRequests.increment(failed);
+
+        List<MetarData> reports = new ArrayList<>(updated.size());
+        int stored = 0;
+        if (!updated.isEmpty()) {
+            List<MetarData> metarDataList = new ArrayList<>(updated.size());
+            for (StationResult result : updated) {
+                metarDataList.add(metarService.createMetarData(result.icaoCode, result.rawData));
+            }
+            // Only remember validators once the reports are stored, so a failed save is retried
+            try {
+                stored = metarService.saveMetarDataBatch(metarDataList).size();
+                reports.addAll(metarDataList);
+                for (StationResult result : updated) {
+                    validators.put(result.icaoCode, result.validators);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to store batch of {} fetched METAR reports, storing one by one: {}", updated.size(), e.getMessage());
+                for (StationResult result : updated) {
+                    try {
+                        MetarData metarData = metarService.saveMetarData(result.icaoCode, result.rawData);
+                        if (!metarData.isDeduplicated()) {
+                            stored++;
+                        }
+                        reports.add(metarData);
+                        validators.put(result.icaoCode, result.validators);
+                    } catch (RuntimeException single) {
+                        failed++;
+                        logger.error("Failed to store fetched METAR data for airport: {}", result.icaoCode, single);
+                    }
+                }
+            }
+        }
+
+        FetchCycleResult cycleResult = new FetchCycleResult(stored, notModified, failed, reports);
+        logger.info("METAR fetch cycle complete. Stored: {}, Not modified: {}, Failures: {}",
+                cycleResult.getStored(), cycleResult.getNotModified(), cycleResult.getFailed());
+        return cycleResult;
+    }
+
+    /**
+     * Forget the validators of deleted subscriptions, so a later subscription fetches the full station file.
+     *
+     * @param event the committed subscription change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        if (event.getType() == SubscriptionChangedEvent.Type.DELETED) {
+            for (Subscription subscription : event.getSubscriptions()) {
+                validators.remove(subscription.getIcaoCode());
+            }
+        }
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("metar.fetch.requests")
+                .description("Station file requests to the METAR source")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Fetch the station file for a single airport.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @return the fetch result, never null
+     */
+    private StationResult fetchStation(String icaoCode) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/" + icaoCode + ".TXT"))
+                .timeout(timeout)
+                .GET();
+        Validators previous = validators.get(icaoCode);
+        if (previous != null) {
+            if (previous.etag != null) {
+                request.header("If-None-Match", previous.etag);
+            }
+            if (previous.lastModified != null) {
+                request.header("If-Modified-Since", previous.lastModified);
+            }
+        }
+
+        try {
+            HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 304) {
+                logger.debug("METAR data for {} not modified", icaoCode);
+                return StationResult.notModified(icaoCode);
+            }
+            if (response.statusCode() != 200) {
+                logger.warn("Failed to fetch METAR data for {}. HTTP status: {}", icaoCode, response.statusCode());
+                return StationResult.failed(icaoCode);
+            }
+
+            String metarLine = extractMetarLine(response.body());
+            if (metarLine == null) {
+                logger.warn("Could not extract METAR data for {}", icaoCode);
+                return StationResult.failed(icaoCode);
+            }
+            Validators current = new Validators(
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
+            return StationResult.updated(icaoCode, metarLine, current);
+        } catch (IOException e) {
+            logger.warn("Failed to fetch METAR data for {}: {}", icaoCode, e.getMessage());
+            return StationResult.failed(icaoCode);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return StationResult.failed(icaoCode);
+        }
+    }
+
+    /**
+     * Extract the METAR line from a NOAA station file.
+     * The first line of the file is the issue date, the second line is the report.
+     *
+     * @param body the station file content
+     * @return the METAR line, or null if the file has no report
+     */
+    static String extractMetarLine(String body) {
+        String[] lines = body.split("\\R", 3);
+        if (lines.length < 2 || lines[1].isBlank()) {
+            return null;
+        }
+        return lines[1].trim();
+    }
+
+    /**
+     * Outcome of a complete fetch cycle.
+     */
+    public static class FetchCycleResult {
+        private final int stored;
+        private final int notModified;
+        private final int failed;
+        private final List<MetarData> reports;
+
+        public FetchCycleResult(int stored, int notModified, int failed) {
+            this(stored, notModified, failed, List.of());
+        }
+
+        public FetchCycleResult(int stored, int notModified, int failed, List<MetarData> reports) {
+            this.stored = stored;
+            this.notModified = notModified;
+            this.failed = failed;
+            this.reports = reports;
+        }
+
+        public int getStored() {
+            return stored;
+        }
+
+        public int getNotModified() {
+            return notModified;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * Get the reports of the stations whose station file changed.
+         *
+         * @return the parsed reports, including repeats that were not stored again
+         */
+        public List<MetarData> getReports() {
+            return reports;
+        }
+    }
+
+    private enum FetchStatus {
+        UPDATED, NOT_MODIFIED, FAILED
+    }
+
+    private static class Validators {
+        private final String etag;
+        private final String lastModified;
+
+        private Validators(String etag, String lastModified) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static class StationResult {
+        private final String icaoCode;
+        private final FetchStatus status;
+        private final String rawData;
+        private final Validators validators;
+
+        private StationResult(String icaoCode, FetchStatus status, String rawData, Validators validators) {
+            this.icaoCode = icaoCode;
+            this.status = status;
+            this.rawData = rawData;
+            this.validators = validators;
+        }
+
+        static StationResult updated(String icaoCode, String rawData, Validators validators) {
+            return new StationResult(icaoCode, FetchStatus.UPDATED, rawData, validators);
+        }
+
+        static StationResult notModified(String icaoCode) {
+            return new StationResult(icaoCode, FetchStatus.NOT_MODIFIED, null, null);
+        }
+
+        static StationResult failed(String icaoCode) {
+            return new StationResult(icaoCode, FetchStatus.FAILED, null, null);
+        }
+    }
+}
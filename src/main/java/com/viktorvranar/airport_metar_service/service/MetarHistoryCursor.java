@@ -0,0 +1,66 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor into the METAR history of an airport.
+ * Points at the last report of a page, the next page starts with the report stored before it
+ * in (observedAt, id) order. Clients only see the URL-safe Base64 form.
+ */
+public final class MetarHistoryCursor {
+
+    private final String icaoCode;
+    private final Instant observedAt;
+    private final long id;
+
+    public MetarHistoryCursor(String icaoCode, Instant observedAt, long id) {
+        this.icaoCode = icaoCode;
+        this.observedAt = observedAt;
+        this.id = id;
+    }
+
+    /**
+     * Encode the cursor for a client.
+     *
+     * @return the opaque cursor string
+     */
+    public String encode() {
+        String value = icaoCode + "|" + observedAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor received from a client.
+     *
+     * @param cursor the opaque cursor string
+     * @return the decoded cursor
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public static MetarHistoryCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = value.split("\\|", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Malformed history cursor");
+            }
+            return new MetarHistoryCursor(parts[0], Instant.parse(parts[1]), Long.parseLong(parts[2]));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed history cursor", e);
+        }
+    }
+
+    public String getIcaoCode() {
+        return icaoCode;
+    }
+
+    public Instant getObservedAt() {
+        return observedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
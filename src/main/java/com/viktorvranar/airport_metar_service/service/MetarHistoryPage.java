@@ -0,0 +1,32 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.util.List;
+
+/**
+ * One page of the METAR history of an airport, newest report first.
+ *
+ * @param <T> the type of the reports, MetarData or MetarProjection for a selection of fields
+ */
+public class MetarHistoryPage<T> {
+
+    private final List<T> reports;
+    private final String nextCursor;
+
+    public MetarHistoryPage(List<T> reports, String nextCursor) {
+        this.reports = reports;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getReports() {
+        return reports;
+    }
+
+    /**
+     * Get the cursor of the next page.
+     *
+     * @return the opaque cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
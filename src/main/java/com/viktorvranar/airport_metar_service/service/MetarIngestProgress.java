@@ -0,0 +1,68 @@
+package com.viktorvranar.airport_metar_service.service;
+
+/**
+ * Progress of a streaming METAR ingest, reported after every flushed chunk and once at the end.
+ * Failed counts are valid reports of chunks that could not be saved. Completed is only set on the
+ * final summary, and only if the input was read to its end.
+ */
+public class MetarIngestProgress {
+
+    private final long chunk;
+    private final long linesRead;
+    private final int chunkStored;
+    private final int chunkRejected;
+    private final int chunkFailed;
+    private final long totalStored;
+    private final long totalRejected;
+    private final long totalFailed;
+    private final boolean completed;
+
+    public MetarIngestProgress(long chunk, long linesRead, int chunkStored, int chunkRejected, int chunkFailed,
+                               long totalStored, long totalRejected, long totalFailed, boolean completed) {
+        this.chunk = chunk;
+        this.linesRead = linesRead;
+        this.chunkStored = chunkStored;
+        this.chunkRejected = chunkRejected;
+        this.chunkFailed = chunkFailed;
+        this.totalStored = totalStored;
+        this.totalRejected = totalRejected;
+        this.totalFailed = totalFailed;
+        this.completed = completed;
+    }
+
+    public long getChunk() {
+        return chunk;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public int getChunkStored() {
+        return chunkStored;
+    }
+
+    public int getChunkRejected() {
+        return chunkRejected;
+    }
+
+    public int getChunkFailed() {
+        return chunkFailed;
+    }
+
+    public long getTotalStored() {
+        return totalStored;
+    }
+
+    public long getTotalRejected() {
+        return totalRejected;
+    }
+
+    public long getTotalFailed() {
+        return totalFailed;
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+}
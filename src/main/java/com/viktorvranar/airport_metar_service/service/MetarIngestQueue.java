@@ -0,0 +1,228 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+
+/**
+ * Write-behind queue for asynchronous METAR ingest.
+ * When enabled, reports are parsed on the request thread and put on a bounded queue, and a single
+ * writer thread stores them in group-committed batches of up to batch-size reports, waiting at most
+ * linger for a batch to fill up. On shutdown new reports are refused and the queue is drained
+ * before the database goes away, so no accepted report is lost.
+ */
+@Service
+public class MetarIngestQueue implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetarIngestQueue.class);
+
+    /**
+     * Stop after the web server has stopped accepting requests, and before the datasource is closed.
+     */
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final MetarService metarService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration linger;
+    private final Duration shutdownTimeout;
+    private final BlockingQueue<PendingReport> queue;
+
+    /**
+     * Guards the running flag against concurrent enqueues, so nothing is added after the final drain.
+     */
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private Thread writer;
+
+    public MetarIngestQueue(MetarService metarService,
+                            @Value("${metar.ingest.async.enabled:false}") boolean enabled,
+                            @Value("${metar.ingest.async.queue-capacity:10000}") int queueCapacity,
+                            @Value("${metar.ingest.async.batch-size:200}") int batchSize,
+                            @Value("${metar.ingest.async.linger:PT0.05S}") Duration linger,
+                            @Value("${metar.ingest.async.shutdown-timeout:PT30S}") Duration shutdownTimeout) {
+        this.metarService = metarService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.linger = linger;
+        this.shutdownTimeout = shutdownTimeout;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Check if asynchronous ingest is enabled.
+     *
+     * @return true if POSTed reports should be enqueued instead of stored directly
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Parse a report and put it on the queue.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param rawData the raw METAR data string
+     * @return the ticket identifying the accepted report, or null if the queue is full or shutting down
+     */
+    public String enqueue(String icaoCode, String rawData) {
+        MetarData metarData = metarService.createMetarData(icaoCode, rawData);
+        PendingReport report = new PendingReport(UUID.randomUUID().toString(), metarData);
+
+        runningLock.readLock().lock();
+        try {
+            if (!running || !queue.offer(report)) {
+                logger.debug("Refused METAR data for airport: {}, ingest queue full or stopped", icaoCode);
+                return null;
+            }
+        } finally {
+            runningLock.readLock().unlock();
+        }
+        logger.debug("Enqueued METAR data for airport: {} with ticket: {}", icaoCode, report.ticket);
+        return report.ticket;
+    }
+
+    /**
+     * Get the number of reports waiting to be stored.
+     *
+     * @return the current queue size
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "metar-ingest-writer");
+        writer.start();
+        logger.info("Started asynchronous METAR ingest with batch size {} and linger {}", batchSize, linger);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        logger.info("Stopping asynchronous METAR ingest, draining {} queued reports", queue.size());
+        try {
+            writer.join(shutdownTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.error("Asynchronous METAR ingest did not drain within {}, {} reports left", shutdownTimeout, queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Writer loop, keeps going after stop until the queue is empty.
+     */
+    private void runWriter() {
+        List<PendingReport> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingReport first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+                write(batch);
+            } catch (InterruptedException e) {
+                // Only the shutdown timeout elapsing can leave reports behind, keep draining
+                logger.warn("Asynchronous METAR ingest writer interrupted");
+            } finally {
+                batch.clear();
+            }
+        }
+        logger.info("Asynchronous METAR ingest writer stopped");
+    }
+
+    /**
+     * Add queued reports to the batch until it is full or the linger time has elapsed.
+     */
+    private void fillBatch(List<PendingReport> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + linger.toNanos();
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            PendingReport next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Store a batch in one transaction, falling back to single saves so one bad report
+     * does not lose the rest of the batch.
+     */
+    private void write(List<PendingReport> batch) {
+        List<MetarData> metarDataList = new ArrayList<>(batch.size());
+        for (PendingReport report : batch) {
+            metarDataList.add(report.metarData);
+        }
+        try {
+            metarService.saveMetarDataBatch(metarDataList);
+            logger.debug("Stored batch of {} queued METAR reports", batch.size());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to store batch of {} queued METAR reports, storing one by one: {}", batch.size(), e.getMessage());
+            for (PendingReport report : batch) {
+                try {
+                    metarService.saveMetarData(report.metarData.getIcaoCode(), report.metarData.getRawData());
+                } catch (RuntimeException single) {
+                    logger.error("Failed to store queued METAR data for airport: {} with ticket: {}",
+                            report.metarData.getIcaoCode(), report.ticket, single);
+                }
+            }
+        }
+    }
+
+    private static class PendingReport {
+        private final String ticket;
+        private final MetarData metarData;
+
+        private PendingReport(String ticket, MetarData metarData) {
+            this.ticket = ticket;
+            this.metarData = metarData;
+        }
+    }
+}
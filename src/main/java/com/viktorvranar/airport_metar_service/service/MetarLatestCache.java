@@ -0,0 +1,215 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.repository.MetarDataRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * In-memory index of the latest stored METAR report per ICAO code.
+ * Stored reports are written through after their transaction commits, so readers never see a report
+ * that was rolled back, and a report only replaces the cached one if its id is higher. The cache is
+ * warmed at startup with the subscribed airports that reported within the warm-up window, probing the
+ * latest report of each airport on the (icao_code, id) index, and holds at most
+ * max-airports entries, evicting the least recently read airport when a new one is added beyond that.
+ * Lookups are counted in the metar.latest.cache.requests metric, tagged with result hit or miss.
+ */
+@Service
+public class MetarLatestCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetarLatestCache.class);
+
+    /**
+     * The maximum number of ICAO codes per warm-up query.
+     */
+    private static final int WARM_UP_CHUNK_SIZE = 1000;
+
+    private final MetarDataRepository metarDataRepository;
+    private final SubscriptionService subscriptionService;
+    private final boolean enabled;
+    private final int maxAirports;
+    private final Duration warmUpWindow;
+    private final Map<String, CachedMetar> latestByIcaoCode = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public MetarLatestCache(MetarDataRepository metarDataRepository,
+                            SubscriptionService subscriptionService,
+                            MeterRegistry meterRegistry,
+                            @Value("${metar.latest-cache.enabled:true}") boolean enabled,
+                            @Value("${metar.latest-cache.max-airports:10000}") int maxAirports,
+                            @Value("${metar.latest-cache.warm-up-window:P2D}") Duration warmUpWindow) {
+        this.metarDataRepository = metarDataRepository;
+        this.subscriptionService = subscriptionService;
+        this.enabled = enabled;
+        this.maxAirports = maxAirports;
+        this.warmUpWindow = warmUpWindow;
+        this.hits = Counter.builder("metar.latest.cache.requests")
+                .description("Latest METAR lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("metar.latest.cache.requests")
+                .description("Latest METAR lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("metar.latest.cache.evictions")
+                .description("Airports evicted from the latest METAR cache")
+                .register(meterRegistry);
+        Gauge.builder("metar.latest.cache.size", latestByIcaoCode, Map::size)
+                .description("Airports held in the latest METAR cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Load the latest report of every subscribed airport that reported within the warm-up window.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        Instant since = Instant.now().minus(warmUpWindow);
+        List<String> icaoCodes = new ArrayList<>();
+        for (Subscription subscription : subscriptionService.getActiveSubscriptions()) {
+            icaoCodes.add(subscription.getIcaoCode());
+        }
+        for (int from = 0; from < icaoCodes.size() && latestByIcaoCode.size() < maxAirports; from += WARM_UP_CHUNK_SIZE) {
+            List<String> chunk = icaoCodes.subList(from, Math.min(from + WARM_UP_CHUNK_SIZE, icaoCodes.size()));
+            for (MetarData metarData : metarDataRepository.findLatestForEachIcaoCodeIn(chunk.toArray(new String[0]))) {
+                if (metarData.getObservedAt() != null && !metarData.getObservedAt().isBefore(since)
+                        && latestByIcaoCode.size() < maxAirports) {
+                    update(metarData);
+                }
+            }
+        }
+        logger.info("Warmed latest METAR cache with {} airports observed since {}", latestByIcaoCode.size(), since);
+    }
+
+    /**
+     * Get the cached latest report for an airport.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @return the latest MetarData entity, or null if the airport is not cached
+     */
+    public MetarData get(String icaoCode) {
+        if (!enabled) {
+            return null;
+        }
+        CachedMetar cached = latestByIcaoCode.get(icaoCode);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        cached.lastRead = System.nanoTime();
+        return cached.metarData;
+    }
+
+    /**
+     * Get the cached latest report for an airport without counting it as a read, e.g. to check a new report against it.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @return the latest MetarData entity, or null if the airport is not cached
+     */
+    public MetarData peek(String icaoCode) {
+        if (!enabled) {
+            return null;
+        }
+        CachedMetar cached = latestByIcaoCode.get(icaoCode);
+        return cached != null ? cached.metarData : null;
+    }
+
+    /**
+     * Offer a stored report to the cache. Inside a transaction the cache is updated once it commits.
+     *
+     * @param metarData the stored MetarData entity
+     */
+    public void put(MetarData metarData) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update(metarData);
+                }
+            });
+        } else {
+            update(metarData);
+        }
+    }
+
+    /**
+     * Drop the cached report of an airport if it is the given report, e.g. after the row was changed in place.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param id the id of the changed report
+     */
+    public void evict(String icaoCode, Long id) {
+        latestByIcaoCode.computeIfPresent(icaoCode, (key, cached) -> cached.metarData.getId().equals(id) ? null : cached);
+    }
+
+    /**
+     * Get the number of airports held.
+     *
+     * @return the cache size
+     */
+    public int size() {
+        return latestByIcaoCode.size();
+    }
+
+    private void update(MetarData metarData) {
+        CachedMetar candidate = new CachedMetar(metarData);
+        latestByIcaoCode.merge(metarData.getIcaoCode(), candidate,
+                (cached, newer) -> newer.metarData.getId() > cached.metarData.getId() ? newer : cached);
+        if (latestByIcaoCode.size() > maxAirports) {
+            evictLeastRecentlyRead();
+        }
+    }
+
+    /**
+     * Linear scan, only runs when an airport beyond the bound is added.
+     */
+    private void evictLeastRecentlyRead() {
+        Map.Entry<String, CachedMetar> oldest = null;
+        for (Map.Entry<String, CachedMetar> entry : latestByIcaoCode.entrySet()) {
+            if (oldest == null || entry.getValue().lastRead - oldest.getValue().lastRead < 0) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null && latestByIcaoCode.remove(oldest.getKey(), oldest.getValue())) {
+            evictions.increment();
+        }
+    }
+
+    private static class CachedMetar {
+        private final MetarData metarData;
+        private volatile long lastRead;
+
+        private CachedMetar(MetarData metarData) {
+            this.metarData = metarData;
+            this.lastRead = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+
+/**
+ * Single-pass parser for raw METAR reports.
+ * Walks the raw string once, classifying each whitespace-delimited token with hand-written
+ * character checks instead of regular expressions. Substrings are only created for tokens
+ * whose value is actually stored on the MetarData entity. Alongside the raw text elements,
+ * normalized numeric values are set: wind speed in knots, temperatures in Celsius, QNH in hPa,
+ * visibility in meters and the full observation timestamp.
+ */
+public final class MetarParser {
+
+    private static final String METAR_PREFIX = "METAR ";
+
+    private static final double KNOTS_PER_METER_PER_SECOND = 1.943844;
+    private static final double KNOTS_PER_KILOMETER_PER_HOUR = 0.539957;
+    private static final double HECTOPASCALS_PER_HUNDREDTH_INCH_HG = 0.3386389;
+    private static final double METERS_PER_STATUTE_MILE = 1609.344;
+
+    /**
+     * How far an observation time may lie after the receipt time, to allow for clock skew.
+     */
+    private static final Duration OBSERVATION_CLOCK_SKEW = Duration.ofHours(1);
+
+    private MetarParser() {}
+
+    /**
+     * Parse METAR data and set the individual elements in the MetarData entity.
+     * When several tokens of the same kind are present the last one wins, while
+     * weather condition tokens are accumulated in order, separated by a single space.
+     *
+     * @param metarData the MetarData entity to populate
+     * @param rawData the raw METAR data string
+     */
+    public static void parse(MetarData metarData, String rawData) {
+        parse(metarData, rawData, null);
+    }
+
+    /**
+     * Parse METAR data and set the individual elements in the MetarData entity, resolving the
+     * day/time group of the report to a full timestamp relative to a reference time, normally the
+     * time it was received.
+     *
+     * @param metarData the MetarData entity to populate
+     * @param rawData the raw METAR data string
+     * @param referenceTime the time the report was issued at or shortly before, or null to leave the
+     *                      observation timestamp unset
+     */
+    public static void parse(MetarData metarData, String rawData, Instant referenceTime) {
+        // Any decoding of earlier values is stale now
+        metarData.setDecodedData(null);
+
+        // Skip "METAR" prefix if present
+        int pos = rawData.startsWith(METAR_PREFIX) ? METAR_PREFIX.length() : 0;
+        int length = rawData.length();
+        StringBuilder weatherConditions = null;
+
+        while (pos < length) {
+            // Skip separators between tokens
+            while (pos < length && isWhitespace(rawData.charAt(pos))) {
+                pos++;
+            }
+            if (pos == length) {
+                break;
+            }
+
+            int start = pos;
+            while (pos < length && !isWhitespace(rawData.charAt(pos))) {
+                pos++;
+            }
+            int end = pos;
+
+            // Token kinds are checked in the same order as the original format rules,
+            // the first kind that matches claims the token
+            if (isObservationTime(rawData, start, end)) {
+                metarData.setObservationTime(rawData.substring(start, end));
+                metarData.setObservedAt(referenceTime == null ? null : resolveObservationTime(rawData, start, end, referenceTime));
+            } else if (isWind(rawData, start, end)) {
+                // Direction and speed are only extracted for tokens of at least six characters
+                if (end - start >= 6) {
+                    int speedEnd = digitsEnd(rawData, start, end);
+                    metarData.setWindDirection(rawData.substring(start, start + 3));
+                    metarData.setWindSpeed(rawData.substring(start + 3, speedEnd));
+                    metarData.setWindSpeedKt(toKnots(rawData, start + 3, speedEnd, end));
+                }
+            } else if (isVariableWindDirection(rawData, start, end)) {
+                // Variable wind direction is recognised but not stored
+            } else if (isVisibility(rawData, start, end)) {
+                metarData.setVisibility(rawData.substring(start, end));
+                metarData.setVisibilityM(toMeters(rawData, start, end));
+            } else if (isRunwayVisualRange(rawData, start, end)) {
+                // Runway visual range is recognised but not stored
+            } else if (isWeatherCondition(rawData, start, end)) {
+                if (weatherConditions == null) {
+                    weatherConditions = new StringBuilder(end - start);
+                } else {
+                    weatherConditions.append(' ');
+                }
+                weatherConditions.append(rawData, start, end);
+            } else if (isTemperatureDewPoint(rawData, start, end)) {
+                int slash = indexOf(rawData, '/', start, end);
+                metarData.setTemperature(rawData.substring(start, slash));
+                metarData.setDewPoint(rawData.substring(slash + 1, end));
+                metarData.setTemperatureC(parseSigned(rawData, start, slash));
+                metarData.setDewPointC(parseSigned(rawData, slash + 1, end));
+            } else if (isAltimeter(rawData, start, end)) {
+                metarData.setAltimeter(rawData.substring(start, end));
+                metarData.setQnhHpa(toHectopascals(rawData, start, end));
+            }
+        }
+
+        if (weatherConditions != null) {
+            metarData.setWeatherConditions(weatherConditions.toString());
+        }
+    }
+
+    /**
+     * Observation time, e.g. "301200Z": four to six digits followed by 'Z'.
+     */
+    static boolean isObservationTime(CharSequence s, int start, int end) {
+        int length = end - start;
+        return length >= 5 && length <= 7
+            && s.charAt(end - 1) == 'Z'
+            && allDigits(s, start, end - 1);
+    }
+
+    /**
+     * Wind, e.g. "12008KT": three to five digits followed by KT, MPS or KMH.
+     */
+    static boolean isWind(CharSequence s, int start, int end) {
+        int unitLength;
+        if (endsWith(s, start, end, "KT")) {
+            unitLength = 2;
+        } else if (endsWith(s, start, end, "MPS") || endsWith(s, start, end, "KMH")) {
+            unitLength = 3;
+        } else {
+            return false;
+        }
+        int digits = end - start - unitLength;
+        return digits >= 3 && digits <= 5 && allDigits(s, start, start + digits);
+    }
+
+    /**
+     * Variable wind direction, e.g. "090V150".
+     */
+    static boolean isVariableWindDirection(CharSequence s, int start, int end) {
+        return end - start == 7
+            && allDigits(s, start, start + 3)
+            && s.charAt(start + 3) == 'V'
+            && allDigits(s, start + 4, end);
+    }
+
+    /**
+     * Visibility, e.g. "9999", "10SM", "M" or "P6000".
+     */
+    static boolean isVisibility(CharSequence s, int start, int end) {
+        int length = end - start;
+        if (length == 1) {
+            return s.charAt(start) == 'M';
+        }
+        if (length == 4 && allDigits(s, start, end)) {
+            return true;
+        }
+        if (length == 5 && s.charAt(start) == 'P' && allDigits(s, start + 1, end)) {
+            return true;
+        }
+        return length >= 3 && length <= 5
+            && endsWith(s, start, end, "SM")
+            && allDigits(s, start, end - 2);
+    }
+
+    /**
+     * Runway visual range, e.g. "R04/P2000N" or "R28L/1200U".
+     */
+    static boolean isRunwayVisualRange(CharSequence s, int start, int end) {
+        if (end - start < 5 || s.charAt(start) != 'R' || !allDigits(s, start + 1, start + 3)) {
+            return false;
+        }
+        int pos = start + 3;
+        char designator = s.charAt(pos);
+        if (designator == 'L' || designator == 'R' || designator == 'C') {
+            pos++;
+        }
+        // The slash must be followed by at least one more character
+        return pos < end - 1 && s.charAt(pos) == '/';
+    }
+
+    /**
+     * Weather conditions and cloud groups, e.g. "NSW", "-RA", "+TSRA", "BR" or "SCT040".
+     */
+    static boolean isWeatherCondition(CharSequence s, int start, int end) {
+        int length = end - start;
+        if (length >= 2 && length <= 4 && allWordChars(s, start, end)) {
+            return true;
+        }
+        char first = s.charAt(start);
+        if ((first == '-' || first == '+') && length >= 3 && length <= 5) {
+            return allWordChars(s, start + 1, end);
+        }
+        if (length == 5) {
+            return startsWith(s, start, "VV") && allDigits(s, start + 2, end);
+        }
+        if (length == 6) {
+            return (startsWith(s, start, "FEW") || startsWith(s, start, "SCT")
+                    || startsWith(s, start, "BKN") || startsWith(s, start, "OVC"))
+                && allDigits(s, start + 3, end);
+        }
+        return false;
+    }
+
+    /**
+     * Temperature and dew point, e.g. "15/10" or "M01/M05".
+     */
+    static boolean isTemperatureDewPoint(CharSequence s, int start, int end) {
+        int pos = signedTwoDigitEnd(s, start, end);
+        if (pos < 0 || pos >= end || s.charAt(pos) != '/') {
+            return false;
+        }
+        return signedTwoDigitEnd(s, pos + 1, end) == end;
+    }
+
+    /**
+     * Altimeter/QNH, e.g. "Q1013" or "A2992".
+     */
+    static boolean isAltimeter(CharSequence s, int start, int end) {
+        if (end - start != 5) {
+            return false;
+        }
+        char first = s.charAt(start);
+        return (first == 'Q' || first == 'A') && allDigits(s, start + 1, end);
+    }
+
+    /**
+     * Convert the speed digits of a wind group to knots.
+     *
+     * @return the speed in knots, or null if the group has no speed digits
+     */
+    static Integer toKnots(CharSequence s, int speedStart, int speedEnd, int end) {
+        if (speedStart == speedEnd) {
+            return null;
+        }
+        int speed = parseDigits(s, speedStart, speedEnd);
+        if (endsWith(s, speedEnd, end, "MPS")) {
+            return (int) Math.round(speed * KNOTS_PER_METER_PER_SECOND);
+        }
+        if (endsWith(s, speedEnd, end, "KMH")) {
+            return (int) Math.round(speed * KNOTS_PER_KILOMETER_PER_HOUR);
+        }
+        return speed;
+    }
+
+    /**
+     * Convert a visibility group to meters. "P6000" counts as 6000, "M" has no value.
+     *
+     * @return the visibility in meters, or null if the group has no numeric value
+     */
+    static Integer toMeters(CharSequence s, int start, int end) {
+        if (end - start == 1) {
+            return null;
+        }
+        if (endsWith(s, start, end, "SM")) {
+            return (int) Math.round(parseDigits(s, start, end - 2) * METERS_PER_STATUTE_MILE);
+        }
+        return parseDigits(s, s.charAt(start) == 'P' ? start + 1 : start, end);
+    }
+
+    /**
+     * Convert an altimeter group to hPa, "A" groups are in hundredths of inches of mercury.
+     */
+    static Integer toHectopascals(CharSequence s, int start, int end) {
+        int value = parseDigits(s, start + 1, end);
+        if (s.charAt(start) == 'A') {
+            return (int) Math.round(value * HECTOPASCALS_PER_HUNDREDTH_INCH_HG);
+        }
+        return value;
+    }
+
+    /**
+     * Parse a temperature with an optional 'M' prefix for negative values.
+     */
+    static Integer parseSigned(CharSequence s, int start, int end) {
+        if (s.charAt(start) == 'M') {
+            return -parseDigits(s, start + 1, end);
+        }
+        return parseDigits(s, start, end);
+    }
+
+    /**
+     * Resolve the day/time group of a report ("DDHHMMZ", or "HHMMZ" for the current day) to the
+     * latest matching instant that is not after the reference time, allowing for clock skew.
+     *
+     * @return the observation timestamp, or null if the group is not a valid day and time
+     */
+    static Instant resolveObservationTime(CharSequence s, int start, int end, Instant referenceTime) {
+        int digits = end - start - 1;
+        if (digits != 4 && digits != 6) {
+            return null;
+        }
+        int timeStart = end - 5;
+        int hour = parseDigits(s, timeStart, timeStart + 2);
+        int minute = parseDigits(s, timeStart + 2, timeStart + 4);
+        if (hour > 23 || minute > 59) {
+            return null;
+        }
+        LocalDateTime latest = LocalDateTime.ofInstant(referenceTime.plus(OBSERVATION_CLOCK_SKEW), ZoneOffset.UTC);
+
+        if (digits == 4) {
+            LocalDateTime candidate = latest.toLocalDate().atTime(hour, minute);
+            if (candidate.isAfter(latest)) {
+                candidate = candidate.minusDays(1);
+            }
+            return candidate.toInstant(ZoneOffset.UTC);
+        }
+
+        int day = parseDigits(s, start, start + 2);
+        // The report month is the latest month that has this day and does not end up in the future
+        YearMonth month = YearMonth.from(latest);
+        for (int i = 0; i < 3; i++, month = month.minusMonths(1)) {
+            if (day < 1 || day > month.lengthOfMonth()) {
+                continue;
+            }
+            LocalDateTime candidate = LocalDate.of(month.getYear(), month.getMonth(), day).atTime(hour, minute);
+            if (!candidate.isAfter(latest)) {
+                return candidate.toInstant(ZoneOffset.UTC);
+            }
+        }
+        return null;
+    }
+
+    private static int parseDigits(CharSequence s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Consume an optional 'M' followed by one or two digits.
+     *
+     * @return the index after the consumed characters, or -1 if there is no match
+     */
+    private static int signedTwoDigitEnd(CharSequence s, int start, int end) {
+        int pos = start;
+        if (pos < end && s.charAt(pos) == 'M') {
+            pos++;
+        }
+        int digitsStart = pos;
+        while (pos < end && pos - digitsStart < 2 && isDigit(s.charAt(pos))) {
+            pos++;
+        }
+        return pos == digitsStart ? -1 : pos;
+    }
+
+    private static int digitsEnd(CharSequence s, int start, int end) {
+        int pos = start;
+        while (pos < end && isDigit(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int indexOf(CharSequence s, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence s, int start, String prefix) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (s.charAt(start + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean endsWith(CharSequence s, int start, int end, String suffix) {
+        int offset = end - suffix.length();
+        return offset >= start && startsWith(s, offset, suffix);
+    }
+
+    private static boolean allDigits(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean allWordChars(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isWordChar(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,288 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.MetarReparseCheckpoint;
+import com.viktorvranar.airport_metar_service.repository.MetarReparseCheckpointRepository;
+import com.viktorvranar.airport_metar_service.service.MetarReparseProgress.State;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Admin job that re-parses the stored raw METAR data, so existing rows pick up parser fixes and new fields.
+ * The metar table is walked by id with keyset pagination, each chunk is parsed on a fork-join pool and
+ * written back as a JDBC batch update in one transaction together with the checkpoint, so a stopped or
+ * failed job resumes after the last written chunk. The job throttles itself to max-rows-per-second.
+ * Day/time groups are resolved against the receipt time of a row. Legacy rows stored before received_at
+ * existed are resolved against legacy-reference-time instead, e.g. the end of the month they were collected
+ * in; without it they keep no observation timestamp and are counted as unresolved in the progress.
+ */
+@Service
+public class MetarReparseJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetarReparseJob.class);
+
+    static final String JOB_NAME = "metar-reparse";
+
+    static final String SELECT_CHUNK_SQL =
+            "SELECT id, icao_code, raw_data, received_at FROM metar WHERE id > ? ORDER BY id LIMIT ?";
+
+    static final String UPDATE_SQL =
+            "UPDATE metar SET observation_time = ?, wind_direction = ?, wind_speed = ?, visibility = ?, "
+            + "weather_conditions = ?, temperature = ?, dew_point = ?, altimeter = ?, observed_at = ?, "
+            + "wind_speed_kt = ?, visibility_m = ?, temperature_c = ?, dew_point_c = ?, qnh_hpa = ?, "
+            + "parse_version = parse_version + 1 WHERE id = ?";
+
+    /**
+     * Maps a row to a MetarData entity with only the stored inputs set, so every parsed field starts out empty.
+     */
+    private static final RowMapper<MetarData> ROW_MAPPER = (rs, rowNum) -> {
+        MetarData metarData = new MetarData();
+        metarData.setId(rs.getLong("id"));
+        metarData.setIcaoCode(rs.getString("icao_code"));
+        metarData.setRawData(rs.getString("raw_data"));
+        metarData.setReceivedAt(toInstant(rs, "received_at"));
+        return metarData;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MetarReparseCheckpointRepository checkpointRepository;
+    private final MetarLatestCache metarLatestCache;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int maxRowsPerSecond;
+    private final Instant legacyReferenceTime;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+    private volatile State state = State.IDLE;
+    private volatile long lastId;
+    private volatile long rowsProcessed;
+    private volatile long rowsThisRun;
+    private volatile long rowsUnresolved;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private Thread worker;
+
+    public MetarReparseJob(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           MetarReparseCheckpointRepository checkpointRepository,
+                           MetarLatestCache metarLatestCache,
+                           @Value("${metar.reparse.chunk-size:1000}") int chunkSize,
+                           @Value("${metar.reparse.parallelism:0}") int parallelism,
+                           @Value("${metar.reparse.max-rows-per-second:5000}") int maxRowsPerSecond,
+                           @Value("${metar.reparse.legacy-reference-time:}") String legacyReferenceTime) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.checkpointRepository = checkpointRepository;
+        this.metarLatestCache = metarLatestCache;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.legacyReferenceTime = legacyReferenceTime.isBlank() ? null : Instant.parse(legacyReferenceTime);
+    }
+
+    /**
+     * Start the job in the background.
+     *
+     * @param restart true to start from the first row, false to resume after the last checkpoint
+     * @return true if the job was started, false if it is already running
+     */
+    public synchronized boolean start(boolean restart) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested = false;
+        state = State.RUNNING;
+        worker = new Thread(() -> run(restart), "metar-reparse");
+        worker.start();
+        return true;
+    }
+
+    /**
+     * Ask a running job to stop after the chunk it is working on, the checkpoint keeps its position.
+     */
+    public void stop() {
+        if (running.get()) {
+            stopRequested = true;
+            state = State.STOPPING;
+        }
+    }
+
+    /**
+     * Get the current progress of the job.
+     *
+     * @return a snapshot of the job progress
+     */
+    public MetarReparseProgress getProgress() {
+        Instant started = startedAt;
+        double rowsPerSecond = 0;
+        if (started != null) {
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            long millis = Math.max(1, end.toEpochMilli() - started.toEpochMilli());
+            rowsPerSecond = rowsThisRun * 1000d / millis;
+        }
+        return new MetarReparseProgress(state, lastId, rowsProcessed, rowsThisRun, rowsUnresolved, rowsPerSecond,
+                started, finishedAt, error);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stop();
+        Thread current = worker;
+        if (current != null) {
+            current.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    /**
+     * Run the job on the calling thread until the table is exhausted, a stop is requested or a chunk fails.
+     *
+     * @param restart true to start from the first row, false to resume after the last checkpoint
+     */
+    void run(boolean restart) {
+        running.set(true);
+        state = State.RUNNING;
+        startedAt = Instant.now();
+        finishedAt = null;
+        error = null;
+        rowsThisRun = 0;
+        rowsUnresolved = 0;
+
+        MetarReparseCheckpoint checkpoint = restart ? null : checkpointRepository.findById(JOB_NAME).orElse(null);
+        if (checkpoint == null) {
+            checkpoint = new MetarReparseCheckpoint(JOB_NAME);
+        }
+        lastId = checkpoint.getLastId();
+        rowsProcessed = checkpoint.getRowsProcessed();
+        logger.info("Starting METAR re-parse after id {} with chunk size {}, parallelism {} and at most {} rows/s",
+                lastId, chunkSize, parallelism, maxRowsPerSecond);
+
+        long runStart = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            while (!stopRequested) {
+                List<MetarData> chunk = jdbcTemplate.query(SELECT_CHUNK_SQL, ROW_MAPPER, lastId, chunkSize);
+                if (!chunk.isEmpty()) {
+                    pool.submit(() -> chunk.parallelStream().forEach(this::reparse)).join();
+                    write(checkpoint, chunk);
+                }
+                if (chunk.size() < chunkSize) {
+                    state = State.COMPLETED;
+                    break;
+                }
+                throttle(runStart);
+            }
+            if (state != State.COMPLETED) {
+                state = State.STOPPED;
+            }
+            logger.info("METAR re-parse {} after id {}, {} rows re-parsed in this run, {} without an observation timestamp",
+                    state, lastId, rowsThisRun, rowsUnresolved);
+        } catch (RuntimeException e) {
+            state = State.FAILED;
+            error = e.getMessage();
+            logger.error("METAR re-parse failed after id {}, it can be resumed from there", lastId, e);
+        } finally {
+            pool.shutdown();
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Write the re-parsed chunk and move the checkpoint past it in one transaction.
+     */
+    private void write(MetarReparseCheckpoint checkpoint, List<MetarData> chunk) {
+        long chunkLastId = chunk.get(chunk.size() - 1).getId();
+        checkpoint.setLastId(chunkLastId);
+        checkpoint.setRowsProcessed(rowsProcessed + chunk.size());
+        checkpoint.setUpdatedAt(Instant.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, chunk, chunk.size(), MetarReparseJob::setUpdateParameters);
+            checkpointRepository.save(checkpoint);
+        });
+        // Cached reports were changed in place, the next read loads them again
+        for (MetarData metarData : chunk) {
+            metarLatestCache.evict(metarData.getIcaoCode(), metarData.getId());
+        }
+        long unresolved = 0;
+        for (MetarData metarData : chunk) {
+            if (metarData.getObservationTime() != null && metarData.getObservedAt() == null) {
+                unresolved++;
+            }
+        }
+        lastId = chunkLastId;
+        rowsUnresolved += unresolved;
+        rowsProcessed += chunk.size();
+        rowsThisRun += chunk.size();
+    }
+
+    /**
+     * Sleep until the rows of this run are within the rate limit, waking up early on a stop request.
+     */
+    private void throttle(long runStart) {
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+        long due = runStart + (long) (rowsThisRun * 1_000_000_000d / maxRowsPerSecond);
+        long ahead;
+        while (!stopRequested && (ahead = due - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(ahead, TimeUnit.MILLISECONDS.toNanos(100)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopRequested = true;
+            }
+        }
+    }
+
+    private void reparse(MetarData metarData) {
+        if (metarData.getRawData() != null) {
+            Instant referenceTime = metarData.getReceivedAt() != null ? metarData.getReceivedAt() : legacyReferenceTime;
+            MetarParser.parse(metarData, metarData.getRawData(), referenceTime);
+        }
+    }
+
+    private static void setUpdateParameters(PreparedStatement ps, MetarData metarData) throws SQLException {
+        ps.setString(1, metarData.getObservationTime());
+        ps.setString(2, metarData.getWindDirection());
+        ps.setString(3, metarData.getWindSpeed());
+        ps.setString(4, metarData.getVisibility());
+        ps.setString(5, metarData.getWeatherConditions());
+        ps.setString(6, metarData.getTemperature());
+        ps.setString(7, metarData.getDewPoint());
+        ps.setString(8, metarData.getAltimeter());
+        ps.setTimestamp(9, metarData.getObservedAt() != null ? Timestamp.from(metarData.getObservedAt()) : null);
+        ps.setObject(10, metarData.getWindSpeedKt(), Types.INTEGER);
+        ps.setObject(11, metarData.getVisibilityM(), Types.INTEGER);
+        ps.setObject(12, metarData.getTemperatureC(), Types.INTEGER);
+        ps.setObject(13, metarData.getDewPointC(), Types.INTEGER);
+        ps.setObject(14, metarData.getQnhHpa(), Types.INTEGER);
+        ps.setLong(15, metarData.getId());
+    }
+
+    private static Instant toInstant(ResultSet rs, String column) throws SQLException {
+        Timestamp timestamp = rs.getTimestamp(column);
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
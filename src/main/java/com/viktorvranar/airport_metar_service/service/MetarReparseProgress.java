@@ -0,0 +1,81 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.time.Instant;
+
+/**
+ * Progress of the METAR re-parse job, as reported by the metarreparse actuator endpoint.
+ */
+public class MetarReparseProgress {
+
+    /**
+     * State of the re-parse job.
+     */
+    public enum State {
+        IDLE, RUNNING, STOPPING, STOPPED, COMPLETED, FAILED
+    }
+
+    private final State state;
+    private final long lastId;
+    private final long rowsProcessed;
+    private final long rowsThisRun;
+    private final long rowsUnresolved;
+    private final double rowsPerSecond;
+    private final Instant startedAt;
+    private final Instant finishedAt;
+    private final String error;
+
+    public MetarReparseProgress(State state, long lastId, long rowsProcessed, long rowsThisRun, long rowsUnresolved,
+                                double rowsPerSecond, Instant startedAt, Instant finishedAt, String error) {
+        this.state = state;
+        this.lastId = lastId;
+        this.rowsProcessed = rowsProcessed;
+        this.rowsThisRun = rowsThisRun;
+        this.rowsUnresolved = rowsUnresolved;
+        this.rowsPerSecond = rowsPerSecond;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getLastId() {
+        return lastId;
+    }
+
+    public long getRowsProcessed() {
+        return rowsProcessed;
+    }
+
+    public long getRowsThisRun() {
+        return rowsThisRun;
+    }
+
+    /**
+     * Get the number of rows of this run with a day/time group that could not be resolved to an observation
+     * timestamp, legacy rows without a receipt time when no legacy reference time is configured.
+     *
+     * @return the number of rows left without observedAt
+     */
+    public long getRowsUnresolved() {
+        return rowsUnresolved;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
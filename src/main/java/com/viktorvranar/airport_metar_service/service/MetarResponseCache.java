@@ -0,0 +1,140 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Cache of serialized latest METAR responses per ICAO code and representation.
+ * Bodies are kept for the MetarData instance they were serialized from, which is the instance held by
+ * the latest METAR cache. Storing a new report or changing the stored one in place replaces that instance,
+ * so the next read finds the bodies stale and serializes again; nothing has to be invalidated explicitly.
+ * Holds at most max-airports airports with up to MAX_REPRESENTATIONS_PER_AIRPORT bodies each, evicting
+ * the least recently read airport when a new one is added beyond that.
+ * Lookups are counted in the metar.response.cache.requests metric, tagged with result hit or miss.
+ */
+@Service
+public class MetarResponseCache {
+
+    /**
+     * Bound on the bodies per airport, the number of possible fields selections is large.
+     */
+    static final int MAX_REPRESENTATIONS_PER_AIRPORT = 16;
+
+    private final boolean enabled;
+    private final int maxAirports;
+    private final Map<String, CachedBodies> bodiesByIcaoCode = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public MetarResponseCache(MeterRegistry meterRegistry,
+                              @Value("${metar.response-cache.enabled:true}") boolean enabled,
+                              @Value("${metar.response-cache.max-airports:200}") int maxAirports) {
+        this.enabled = enabled;
+        this.maxAirports = maxAirports;
+        this.hits = Counter.builder("metar.response.cache.requests")
+                .description("Serialized latest METAR response lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("metar.response.cache.requests")
+                .description("Serialized latest METAR response lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("metar.response.cache.evictions")
+                .description("Airports evicted from the serialized latest METAR response cache")
+                .register(meterRegistry);
+        Gauge.builder("metar.response.cache.size", bodiesByIcaoCode, Map::size)
+                .description("Airports held in the serialized latest METAR response cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Get the serialized body of a representation of a report.
+     *
+     * @param source the MetarData instance the body is for
+     * @param representation the representation key, e.g. the ETag
+     * @return the UTF-8 JSON body, or null if not cached for this instance
+     */
+    public byte[] get(MetarData source, String representation) {
+        if (!enabled) {
+            return null;
+        }
+        CachedBodies cached = bodiesByIcaoCode.get(source.getIcaoCode());
+        byte[] body = cached != null && cached.source == source ? cached.bodies.get(representation) : null;
+        if (body == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        cached.lastRead = System.nanoTime();
+        return body;
+    }
+
+    /**
+     * Keep the serialized body of a representation of a report.
+     * Bodies of an older report of the same airport are dropped, a body for an older report than the
+     * cached one is ignored.
+     *
+     * @param source the MetarData instance the body was serialized from
+     * @param representation the representation key, e.g. the ETag
+     * @param body the UTF-8 JSON body, must not be modified afterwards
+     */
+    public void put(MetarData source, String representation, byte[] body) {
+        if (!enabled) {
+            return;
+        }
+        CachedBodies cached = bodiesByIcaoCode.compute(source.getIcaoCode(), (key, current) ->
+                current == null || (current.source != source && current.source.getId() <= source.getId())
+                        ? new CachedBodies(source) : current);
+        if (cached.source == source && cached.bodies.size() < MAX_REPRESENTATIONS_PER_AIRPORT) {
+            cached.bodies.putIfAbsent(representation, body);
+        }
+        if (bodiesByIcaoCode.size() > maxAirports) {
+            evictLeastRecentlyRead();
+        }
+    }
+
+    /**
+     * Get the number of airports held.
+     *
+     * @return the cache size
+     */
+    public int size() {
+        return bodiesByIcaoCode.size();
+    }
+
+    /**
+     * Linear scan, only runs when an airport beyond the bound is added.
+     */
+    private void evictLeastRecentlyRead() {
+        Map.Entry<String, CachedBodies> oldest = null;
+        for (Map.Entry<String, CachedBodies> entry : bodiesByIcaoCode.entrySet()) {
+            if (oldest == null || entry.getValue().lastRead - oldest.getValue().lastRead < 0) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null && bodiesByIcaoCode.remove(oldest.getKey(), oldest.getValue())) {
+            evictions.increment();
+        }
+    }
+
+    private static class CachedBodies {
+        private final MetarData source;
+        private final Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+        private volatile long lastRead;
+
+        private CachedBodies(MetarData source) {
+            this.source = source;
+            this.lastRead = System.nanoTime();
+        }
+    }
+}
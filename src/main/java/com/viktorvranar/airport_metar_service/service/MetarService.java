@@ -1,16 +1,31 @@
 package com.viktorvranar.airport_metar_service.service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.MetarField;
+import com.viktorvranar.airport_metar_service.entity.MetarProjection;
 import com.viktorvranar.airport_metar_service.exception.MetarDataNotFoundException;
 import com.viktorvranar.airport_metar_service.repository.MetarDataRepository;
     
@@ -23,106 +38,235 @@ public class MetarService {
     
     private static final Logger logger = LoggerFactory.getLogger(MetarService.class);
     
+    /**
+     * Upper bound of history queries without a to time, later than any observation.
+     */
+    private static final Instant END_OF_HISTORY = Instant.parse("9999-12-31T00:00:00Z");
+    
     private final MetarDataRepository metarDataRepository;
+    private final MetarLatestCache metarLatestCache;
+    private final MetarStreamHub metarStreamHub;
+    private final TransactionTemplate transactionTemplate;
     
-    public MetarService(MetarDataRepository metarDataRepository) {
+    /**
+     * Hash of the last report stored per ICAO code, the database constraint is the source of truth.
+     */
+    private final Map<String, String> lastRawHashByIcaoCode = new ConcurrentHashMap<>();
+    
+    public MetarService(MetarDataRepository metarDataRepository, MetarLatestCache metarLatestCache,
+                        MetarStreamHub metarStreamHub, PlatformTransactionManager transactionManager) {
         this.metarDataRepository = metarDataRepository;
+        this.metarLatestCache = metarLatestCache;
+        this.metarStreamHub = metarStreamHub;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
     
     /**
      * Save METAR data for an airport.
+     * An exact repeat of an already stored report for the same airport is not stored again,
+     * in that case the stored report is returned with the deduplicated flag set.
      *
      * @param icaoCode the ICAO code of the airport
      * @param rawData the raw METAR data string
-     * @return the saved MetarData entity
+     * @return the saved MetarData entity, or the already stored one if the report is a repeat
      */
     public MetarData saveMetarData(String icaoCode, String rawData) {
         logger.debug("Saving METAR data for airport: {}", icaoCode);
+        MetarData metarData = createMetarData(icaoCode, rawData);
+
+        // Cheap check against the latest cached report of this airport, answered without a database round trip
+        MetarData latest = metarLatestCache.peek(icaoCode);
+        if (latest != null && metarData.getRawHash().equals(latest.getRawHash())) {
+            return markDeduplicated(asRepeatOf(metarData, latest));
+        }
+        // The airport is not cached, look the stored report up only if the hash matches the last one stored here
+        if (metarData.getRawHash().equals(lastRawHashByIcaoCode.get(icaoCode))) {
+            Optional<MetarData> existing = metarDataRepository.findFirstByIcaoCodeAndRawHash(icaoCode, metarData.getRawHash());
+            if (existing.isPresent()) {
+                return markDeduplicated(existing.get());
+            }
+        }
+
+        return storeMetarData(metarData);
+    }
+
+    /**
+     * Save a batch of METAR reports in a single transaction.
+     * Inserts are sent to the database as JDBC batches (see hibernate.jdbc.batch_size).
+     * Reports that repeat an already stored report, or an earlier report in the same batch,
+     * are skipped. If a concurrent writer stores one of the reports after the repeat check, the
+     * unique (icao_code, raw_hash) constraint rolls the batch back and its reports are saved one by
+     * one instead, skipping the ones stored in the meantime.
+     *
+     * @param metarDataList the unsaved MetarData entities, typically built with {@link #createMetarData}
+     * @return the saved MetarData entities in request order, without the skipped repeats
+     */
+    public List<MetarData> saveMetarDataBatch(List<MetarData> metarDataList) {
+        logger.debug("Saving batch of {} METAR data entries", metarDataList.size());
+        if (metarDataList.isEmpty()) {
+            return List.of();
+        }
+        String[] icaoCodes = new String[metarDataList.size()];
+        String[] hashes = new String[metarDataList.size()];
+        for (int i = 0; i < metarDataList.size(); i++) {
+            icaoCodes[i] = metarDataList.get(i).getIcaoCode();
+            hashes[i] = metarDataList.get(i).getRawHash();
+        }
+        // One query for all repeats of already stored reports
+        Set<String> seen = new HashSet<>();
+        for (Object[] row : metarDataRepository.findIcaoCodeAndRawHashByPairs(icaoCodes, hashes)) {
+            seen.add(row[0] + " " + row[1]);
+        }
+
+        List<MetarData> newData = new ArrayList<>(metarDataList.size());
+        for (MetarData metarData : metarDataList) {
+            if (seen.add(metarData.getIcaoCode() + " " + metarData.getRawHash())) {
+                newData.add(metarData);
+            }
+        }
+        List<MetarData> savedData;
+        try {
+            savedData = transactionTemplate.execute(status -> {
+                List<MetarData> saved = metarDataRepository.saveAllAndFlush(newData);
+                for (MetarData metarData : saved) {
+                    // Applied when the transaction commits
+                    metarLatestCache.put(metarData);
+                    metarStreamHub.publish(metarData);
+                }
+                return saved;
+            });
+        } catch (DataIntegrityViolationException e) {
+            logger.info("Batch of {} METAR data entries collided with a concurrent write, saving them one by one",
+                    newData.size());
+            savedData = new ArrayList<>(newData.size());
+            for (MetarData metarData : newData) {
+                // Drop the id assigned by the rolled back insert
+                metarData.setId(null);
+                MetarData saved = storeMetarData(metarData);
+                if (!saved.isDeduplicated()) {
+                    savedData.add(saved);
+                }
+            }
+        }
+        for (MetarData metarData : savedData) {
+            lastRawHashByIcaoCode.put(metarData.getIcaoCode(), metarData.getRawHash());
+        }
+        logger.debug("Successfully saved batch of {} METAR data entries, {} repeats skipped",
+                savedData.size(), metarDataList.size() - savedData.size());
+        return savedData;
+    }
+
+    /**
+     * Insert a single report, treating a violation of the unique (icao_code, raw_hash) constraint as a repeat.
+     *
+     * @param metarData the unsaved MetarData entity
+     * @return the saved MetarData entity, or the already stored one with the deduplicated flag set
+     */
+    private MetarData storeMetarData(MetarData metarData) {
+        String icaoCode = metarData.getIcaoCode();
+        MetarData savedData;
+        try {
+            savedData = metarDataRepository.save(metarData);
+        } catch (DataIntegrityViolationException e) {
+            // The unique (icao_code, raw_hash) constraint catches repeats the in-memory map has not seen
+            Optional<MetarData> existing = metarDataRepository.findFirstByIcaoCodeAndRawHash(icaoCode, metarData.getRawHash());
+            if (existing.isEmpty()) {
+                throw e;
+            }
+            lastRawHashByIcaoCode.put(icaoCode, metarData.getRawHash());
+            return markDeduplicated(existing.get());
+        }
+        lastRawHashByIcaoCode.put(icaoCode, metarData.getRawHash());
+        metarLatestCache.put(savedData);
+        metarStreamHub.publish(savedData);
+        logger.debug("Successfully saved METAR data for airport: {} with ID: {}", icaoCode, savedData.getId());
+        return savedData;
+    }
+
+    /**
+     * Create a parsed, unsaved MetarData entity for an airport.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param rawData the raw METAR data string
+     * @return the MetarData entity with all parsed elements set, received now
+     */
+    public MetarData createMetarData(String icaoCode, String rawData) {
+        return createMetarData(icaoCode, rawData, null);
+    }
+
+    /**
+     * Create a parsed, unsaved MetarData entity for an airport, resolving its observation time
+     * against a reference time instead of the receipt time, e.g. for reports backfilled from an archive.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param rawData the raw METAR data string
+     * @param referenceTime the time the report was issued at or within three months before, e.g. the end
+     *                      of the archive month, or null to use the receipt time
+     * @return the MetarData entity with all parsed elements set, received now
+     */
+    public MetarData createMetarData(String icaoCode, String rawData, Instant referenceTime) {
         MetarData metarData = new MetarData();
         metarData.setIcaoCode(icaoCode);
         metarData.setRawData(rawData);
-        
+        metarData.setRawHash(hashRawData(rawData));
+        metarData.setReceivedAt(Instant.now());
+
         // Parse and set METAR elements
-        parseAndSetMetarElements(metarData, rawData);
-        
-        MetarData savedData = metarDataRepository.save(metarData);
-        logger.debug("Successfully saved METAR data for airport: {} with ID: {}", icaoCode, savedData.getId());
-        return savedData;
+        if (referenceTime != null) {
+            MetarParser.parse(metarData, rawData, referenceTime);
+        } else {
+            parseAndSetMetarElements(metarData, rawData);
+        }
+        return metarData;
     }
-    
+
+    /**
+     * Compute the hex encoded SHA-256 hash of a raw METAR data string.
+     *
+     * @param rawData the raw METAR data string
+     * @return the 64 character hash
+     */
+    static String hashRawData(String rawData) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(rawData.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Describe a repeat as the stored report it repeats, without touching the shared cached instance.
+     */
+    private static MetarData asRepeatOf(MetarData repeat, MetarData stored) {
+        repeat.setId(stored.getId());
+        repeat.setReceivedAt(stored.getReceivedAt());
+        repeat.setObservedAt(stored.getObservedAt());
+        return repeat;
+    }
+
+    private MetarData markDeduplicated(MetarData existing) {
+        logger.debug("Skipped repeated METAR data for airport: {}, already stored with ID: {}",
+                existing.getIcaoCode(), existing.getId());
+        existing.setDeduplicated(true);
+        return existing;
+    }
+
     /**
      * Parse METAR data and set the individual elements in the MetarData entity.
      *
      * @param metarData the MetarData entity to populate
      * @param rawData the raw METAR data string
      */
-    private void parseAndSetMetarElements(MetarData metarData, String rawData) {
-        // Remove "METAR" prefix if present
-        String data = rawData.startsWith("METAR ") ? rawData.substring(6) : rawData;
-        
-        // Split the data into tokens
-        String[] tokens = data.split("\\s+");
-        
-        // Parse elements based on METAR format
-        for (int i = 0; i < tokens.length; i++) {
-            String token = tokens[i];
-            
-            // Observation time (e.g., "301200Z")
-            if (token.matches("\\d{4,6}Z")) {
-                metarData.setObservationTime(token);
-            }
-            // Wind information (e.g., "12008KT" or "00000KT")
-            else if (token.matches("\\d{3,5}(MPS|KT|KMH)")) {
-                // Extract wind direction (first 3 digits)
-                if (token.length() >= 6) {
-                    metarData.setWindDirection(token.substring(0, 3));
-                    // Extract wind speed (digits before the unit)
-                    String speedPart = token.substring(3);
-                    String unit = speedPart.replaceAll("\\d+", "");
-                    String speed = speedPart.replace(unit, "");
-                    metarData.setWindSpeed(speed);
-                }
-            }
-            // Variable wind direction (e.g., "090V150")
-            else if (token.matches("\\d{3}V\\d{3}")) {
-                // This is variable wind direction, we could store it in windDirection field
-                // or create a separate field for it
-            }
-            // Visibility (e.g., "9999" or "2000")
-            else if (token.matches("\\d{4}|\\d{1,3}SM|M|P\\d{4}")) {
-                metarData.setVisibility(token);
-            }
-            // Runway visual range (e.g., "R04/P2000N")
-            else if (token.matches("R\\d{2}[LRC]?/\\S+")) {
-                // This is runway visual range, we could store it in weatherConditions field
-                // or create a separate field for it
-            }
-            // Weather conditions (e.g., "NSW", "FEW040", "SCT020")
-            else if (token.matches("(NSW|NCD|SKC|CLR|VV\\d{3}|FEW\\d{3}|SCT\\d{3}|BKN\\d{3}|OVC\\d{3}|VV\\d{3}|-\\w{2,4}|\\+\\w{2,4}|\\w{2,4})")) {
-                // For simplicity, we'll store all weather conditions in one field
-                // In a more complex implementation, we might want separate fields
-                String currentConditions = metarData.getWeatherConditions();
-                if (currentConditions == null || currentConditions.isEmpty()) {
-                    metarData.setWeatherConditions(token);
-                } else {
-                    metarData.setWeatherConditions(currentConditions + " " + token);
-                }
-            }
-            // Temperature and dew point (e.g., "15/10" or "M01/M05")
-            else if (token.matches("[M]?\\d{1,2}/[M]?\\d{1,2}")) {
-                String[] tempDew = token.split("/");
-                metarData.setTemperature(tempDew[0]);
-                metarData.setDewPoint(tempDew[1]);
-            }
-            // Altimeter/QNH (e.g., "Q1013" or "A2992")
-            else if (token.matches("[QA]\\d{4}")) {
-                metarData.setAltimeter(token);
-            }
-        }
+    void parseAndSetMetarElements(MetarData metarData, String rawData) {
+        // Single pass over the raw string, see MetarParser for the token rules
+        MetarParser.parse(metarData, rawData, metarData.getReceivedAt());
     }
     
     /**
      * Get the latest METAR data for an airport.
+     * Served from the latest METAR cache, the database is only queried for airports not cached yet.
      *
      * @param icaoCode the ICAO code of the airport
      * @return the latest MetarData entity
@@ -130,9 +274,14 @@ public class MetarService {
      */
     public MetarData getLatestMetarData(String icaoCode) {
         logger.debug("Retrieving latest METAR data for airport: {}", icaoCode);
+        MetarData cached = metarLatestCache.get(icaoCode);
+        if (cached != null) {
+            return cached;
+        }
         Optional<MetarData> metarData = metarDataRepository.findFirstByIcaoCodeOrderByIdDesc(icaoCode);
         if (metarData.isPresent()) {
             logger.debug("Found latest METAR data for airport: {} with ID: {}", icaoCode, metarData.get().getId());
+            metarLatestCache.put(metarData.get());
             return metarData.get();
         } else {
             logger.debug("No METAR data found for airport: {}", icaoCode);
@@ -140,8 +289,88 @@ public class MetarService {
         }
     }
 
+    /**
+     * Get a selection of fields of the latest METAR data for an airport.
+     * A cached report is projected in memory, otherwise only the selected columns are read.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param fields the fields to include
+     * @return the projection of the latest METAR data
+     * @throws MetarDataNotFoundException if no data is found for the airport
+     */
+    public MetarProjection getLatestMetarData(String icaoCode, Set<MetarField> fields) {
+        logger.debug("Retrieving latest METAR data for airport: {} with fields {}", icaoCode, fields);
+        MetarData cached = metarLatestCache.get(icaoCode);
+        if (cached != null) {
+            return MetarProjection.of(cached, fields);
+        }
+        return metarDataRepository.findLatestProjection(icaoCode, fields)
+                .orElseThrow(() -> new MetarDataNotFoundException(icaoCode));
+    }
+
+    /**
+     * Get the latest METAR data for many airports.
+     * Cached airports are served from memory, all others are loaded with a single query.
+     *
+     * @param icaoCodes the ICAO codes of the airports, without duplicates
+     * @return the latest MetarData entity per ICAO code, airports without data are left out
+     */
+    public Map<String, MetarData> getLatestMetarData(Collection<String> icaoCodes) {
+        logger.debug("Retrieving latest METAR data for {} airports", icaoCodes.size());
+        Map<String, MetarData> latest = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String icaoCode : icaoCodes) {
+            MetarData cached = metarLatestCache.get(icaoCode);
+            if (cached != null) {
+                latest.put(icaoCode, cached);
+            } else {
+                uncached.add(icaoCode);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            for (MetarData metarData : metarDataRepository.findLatestForEachIcaoCodeIn(uncached.toArray(new String[0]))) {
+                latest.put(metarData.getIcaoCode(), metarData);
+                metarLatestCache.put(metarData);
+            }
+        }
+        logger.debug("Found latest METAR data for {} of {} airports, {} looked up in the database",
+                latest.size(), icaoCodes.size(), uncached.size());
+        return latest;
+    }
+
+    /**
+     * Get a selection of fields of the latest METAR data for many airports.
+     * Cached airports are projected in memory, all others are loaded with a single query reading only
+     * the selected columns.
+     *
+     * @param icaoCodes the ICAO codes of the airports, without duplicates
+     * @param fields the fields to include
+     * @return the projection of the latest METAR data per ICAO code, airports without data are left out
+     */
+    public Map<String, MetarProjection> getLatestMetarData(Collection<String> icaoCodes, Set<MetarField> fields) {
+        logger.debug("Retrieving latest METAR data for {} airports with fields {}", icaoCodes.size(), fields);
+        Map<String, MetarProjection> latest = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String icaoCode : icaoCodes) {
+            MetarData cached = metarLatestCache.get(icaoCode);
+            if (cached != null) {
+                latest.put(icaoCode, MetarProjection.of(cached, fields));
+            } else {
+                uncached.add(icaoCode);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            for (MetarProjection projection : metarDataRepository.findLatestProjectionForEachIcaoCodeIn(
+                    uncached.toArray(new String[0]), fields)) {
+                latest.put(projection.getIcaoCode(), projection);
+            }
+        }
+        return latest;
+    }
+
     /**
      * Get the METAR data history for an airport.
+     * Loads every stored report of the airport, use the paged variant for anything but small stations.
      *
      * @param icaoCode the ICAO code of the airport
      * @return a list of MetarData entities
@@ -154,88 +383,97 @@ public class MetarService {
     }
     
     /**
-     * Decode METAR data into natural language.
+     * Get one page of the METAR data history for an airport, newest report first.
+     * Reports are ordered by observation time, reports without a resolved observation time are not included.
      *
-     * @param metarData the MetarData entity to decode
-     * @return a string representation of the METAR data in natural language
+     * @param icaoCode the ICAO code of the airport
+     * @param from the earliest observation time to include, or null for no lower bound
+     * @param to the observation time to stop before, or null for no upper bound
+     * @param limit the maximum number of reports on the page
+     * @param cursor the cursor of the page to get, or null for the first page
+     * @return the page with the cursor of the next page, if any
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another airport
      */
-    public String decodeMetarData(MetarData metarData) {
-        StringBuilder decoded = new StringBuilder();
-        
-        // Add airport information
-        decoded.append("Weather report for airport ").append(metarData.getIcaoCode()).append(". ");
-        
-        // Add observation time
-        if (metarData.getObservationTime() != null && !metarData.getObservationTime().isEmpty()) {
-            decoded.append("Observation time: ").append(metarData.getObservationTime()).append(". ");
-        }
-        
-        // Add wind information
-        if (metarData.getWindDirection() != null && !metarData.getWindDirection().isEmpty() &&
-            metarData.getWindSpeed() != null && !metarData.getWindSpeed().isEmpty()) {
-            decoded.append("Wind: from ").append(metarData.getWindDirection())
-                   .append(" degrees at ").append(metarData.getWindSpeed()).append(" knots. ");
-        }
-        
-        // Add visibility
-        if (metarData.getVisibility() != null && !metarData.getVisibility().isEmpty()) {
-            decoded.append("Visibility: ").append(metarData.getVisibility()).append(" meters. ");
-        }
-        
-        // Add weather conditions
-        if (metarData.getWeatherConditions() != null && !metarData.getWeatherConditions().isEmpty()) {
-            decoded.append("Weather conditions: ").append(decodeWeatherConditions(metarData.getWeatherConditions())).append(". ");
-        }
-        
-        // Add temperature and dew point
-        if (metarData.getTemperature() != null && !metarData.getTemperature().isEmpty()) {
-            String temperature = metarData.getTemperature();
-            if (temperature.startsWith("M")) {
-                temperature = "-" + temperature.substring(1);
-            }
-            decoded.append("Temperature: ").append(temperature).append(" degrees Celsius. ");
+    public MetarHistoryPage<MetarData> getMetarDataHistory(String icaoCode, Instant from, Instant to, int limit, String cursor) {
+        logger.debug("Retrieving METAR data history page for airport: {} from {} to {}", icaoCode, from, to);
+        MetarHistoryCursor before = historyPosition(icaoCode, to, cursor);
+
+        // One extra row tells whether there is a next page
+        List<MetarData> rows = metarDataRepository.findHistoryPage(icaoCode, from != null ? from : Instant.EPOCH,
+                before.getObservedAt(), before.getId(), limit + 1);
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            MetarData last = rows.get(limit - 1);
+            nextCursor = new MetarHistoryCursor(icaoCode, last.getObservedAt(), last.getId()).encode();
         }
-        
-        if (metarData.getDewPoint() != null && !metarData.getDewPoint().isEmpty()) {
-            String dewPoint = metarData.getDewPoint();
-            if (dewPoint.startsWith("M")) {
-                dewPoint = "-" + dewPoint.substring(1);
-            }
-            decoded.append("Dew point: ").append(dewPoint).append(" degrees Celsius. ");
+        logger.debug("Found {} METAR data entries for airport: {}", rows.size(), icaoCode);
+        return new MetarHistoryPage<>(rows, nextCursor);
+    }
+
+    /**
+     * Get one page of a selection of fields of the METAR data history for an airport, newest report first.
+     * Pages and cursors are the same as for the full reports, only the selected columns are read.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param from the earliest observation time to include, or null for no lower bound
+     * @param to the observation time to stop before, or null for no upper bound
+     * @param limit the maximum number of reports on the page
+     * @param cursor the cursor of the page to get, or null for the first page
+     * @param fields the fields to include
+     * @return the page with the cursor of the next page, if any
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another airport
+     */
+    public MetarHistoryPage<MetarProjection> getMetarDataHistory(String icaoCode, Instant from, Instant to, int limit,
+                                                                 String cursor, Set<MetarField> fields) {
+        logger.debug("Retrieving METAR data history page for airport: {} from {} to {} with fields {}",
+                icaoCode, from, to, fields);
+        MetarHistoryCursor before = historyPosition(icaoCode, to, cursor);
+
+        List<MetarProjection> rows = metarDataRepository.findHistoryPageProjection(icaoCode,
+                from != null ? from : Instant.EPOCH, before.getObservedAt(), before.getId(), limit + 1, fields);
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            MetarProjection last = rows.get(limit - 1);
+            nextCursor = new MetarHistoryCursor(icaoCode, last.getObservedAt(), last.getId()).encode();
         }
-        
-        // Add altimeter
-        if (metarData.getAltimeter() != null && !metarData.getAltimeter().isEmpty()) {
-            decoded.append("Altimeter: ").append(metarData.getAltimeter()).append(". ");
+        return new MetarHistoryPage<>(rows, nextCursor);
+    }
+
+    /**
+     * Get the position a history page starts after, from the to bound and the cursor, whichever comes first.
+     */
+    private static MetarHistoryCursor historyPosition(String icaoCode, Instant to, String cursor) {
+        Instant beforeObservedAt = to != null ? to : END_OF_HISTORY;
+        long beforeId = Long.MIN_VALUE;
+        if (cursor != null) {
+            MetarHistoryCursor position = MetarHistoryCursor.decode(cursor);
+            if (!position.getIcaoCode().equals(icaoCode)) {
+                throw new IllegalArgumentException("History cursor belongs to another airport");
+            }
+            if (position.getObservedAt().isBefore(beforeObservedAt)) {
+                beforeObservedAt = position.getObservedAt();
+                beforeId = position.getId();
+            }
         }
-        
-        return decoded.toString().trim();
+        return new MetarHistoryCursor(icaoCode, beforeObservedAt, beforeId);
     }
-    
+
     /**
-     * Decode weather conditions abbreviations into natural language.
+     * Decode METAR data into natural language.
+     * The text is decoded once per MetarData instance and kept on it, so repeated decoded reads of a
+     * cached report only cost a field read. Concurrent first reads may both decode, with the same result.
      *
-     * @param conditions the weather conditions string
-     * @return decoded weather conditions
-     */
-    private String decodeWeatherConditions(String conditions) {
-        // Replace common weather condition abbreviations with natural language
-        return conditions
-            .replace("NSW", "no significant weather")
-            .replace("NCD", "nil cloud detected")
-            .replace("SKC", "sky clear")
-            .replace("CLR", "clear")
-            .replace("FEW", "few clouds at ")
-            .replace("SCT", "scattered clouds at ")
-            .replace("BKN", "broken clouds at ")
-            .replace("OVC", "overcast at ")
-            .replace("VV", "vertical visibility ")
-            .replace("R", "runway ")
-            .replace("/", " over ")
-            .replace("KT", " knots")
-            .replace("MPS", " meters per second")
-            .replace("SM", " statute miles")
-            .replace("Q", "QNH ")
-            .replace("A", "altimeter ");
+     * @param metarData the MetarData entity to decode
+     * @return a string representation of the METAR data in natural language
+     */
+    public String decodeMetarData(MetarData metarData) {
+        String decoded = metarData.getDecodedData();
+        if (decoded == null) {
+            decoded = MetarDecoder.decode(metarData);
+            metarData.setDecodedData(decoded);
+        }
+        return decoded;
     }
 }
@@ -0,0 +1,373 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pushes newly stored METAR reports to Server-Sent Events connections, each listening to a set of ICAO codes.
+ * A report is published once its transaction commits and is encoded once into a complete SSE frame,
+ * which is then handed to every connection listening to its airport. Every connection has a bounded
+ * buffer drained by its own sender, so ingest never waits for a client: when the buffer of a slow
+ * client is full, the oldest buffered report is dropped (drop-oldest) or the connection is closed
+ * (disconnect), depending on metar.stream.overflow-policy. Clients reconnect with EventSource and can
+ * catch up with GET /airport/METAR.
+ * Parked long-poll requests wait here as well, and are woken by the first committed report of their
+ * airport that is newer than the one they have.
+ */
+@Service
+public class MetarStreamHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetarStreamHub.class);
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * What to do when the buffer of a connection is full.
+     */
+    public enum OverflowPolicy {
+        DROP_OLDEST, DISCONNECT
+    }
+
+    private final ObjectWriter writer;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int maxConnections;
+    private final int maxWaiters;
+    private final Duration timeout;
+    private final Map<String, Set<Connection>> connectionsByIcaoCode = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final Map<String, Set<Waiter>> waitersByIcaoCode = new ConcurrentHashMap<>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter published;
+    private final Counter dropped;
+    private final Counter overflowDisconnects;
+
+    public MetarStreamHub(ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${metar.stream.buffer-size:32}") int bufferSize,
+                          @Value("${metar.stream.overflow-policy:drop-oldest}") String overflowPolicy,
+                          @Value("${metar.stream.max-connections:10000}") int maxConnections,
+                          @Value("${metar.stream.timeout:PT30M}") Duration timeout,
+                          @Value("${metar.long-poll.max-waiters:10000}") int maxWaiters) {
+        // SSE data must stay on one line
+        this.writer = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase().replace('-', '_'));
+        this.maxConnections = maxConnections;
+        this.timeout = timeout;
+        this.maxWaiters = maxWaiters;
+        this.published = Counter.builder("metar.stream.events")
+                .description("METAR reports published to stream connections")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("metar.stream.dropped")
+                .description("METAR reports dropped for slow stream connections")
+                .register(meterRegistry);
+        this.overflowDisconnects = Counter.builder("metar.stream.overflow.disconnects")
+                .description("Stream connections closed because their buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("metar.stream.connections", connectionCount, AtomicInteger::get)
+                .description("Open METAR stream connections")
+                .register(meterRegistry);
+        Gauge.builder("metar.long-poll.waiters", waiterCount, AtomicInteger::get)
+                .description("Parked long-poll requests for the latest METAR data")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Open a stream connection for a set of airports.
+     *
+     * @param icaoCodes the ICAO codes of the airports to listen to
+     * @return the emitter of the connection, or null if the maximum number of connections is open
+     */
+    public SseEmitter subscribe(Set<String> icaoCodes) {
+        if (connectionCount.incrementAndGet() > maxConnections) {
+            connectionCount.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Connection connection = new Connection(emitter, Set.copyOf(icaoCodes), bufferSize);
+        emitter.onCompletion(() -> unsubscribe(connection));
+        emitter.onTimeout(() -> unsubscribe(connection));
+        emitter.onError(e -> unsubscribe(connection));
+        connections.add(connection);
+        for (String icaoCode : connection.icaoCodes) {
+            register(connectionsByIcaoCode, icaoCode, connection);
+        }
+        logger.debug("Opened METAR stream connection for {} airports", icaoCodes.size());
+        return emitter;
+    }
+
+    /**
+     * Wait for the first report of an airport with an id above sinceId.
+     * The callback runs at most once, on a sender thread, unless the waiter is cancelled first.
+     *
+     * @param icaoCode the ICAO code of the airport
+     * @param sinceId the id of the newest report the caller has
+     * @param callback receives the newer report
+     * @return the waiter, to cancel it, or null if the maximum number of waiters is parked
+     */
+    public Waiter awaitNewer(String icaoCode, long sinceId, Consumer<MetarData> callback) {
+        if (waiterCount.incrementAndGet() > maxWaiters) {
+            waiterCount.decrementAndGet();
+            return null;
+        }
+        Waiter waiter = new Waiter(icaoCode, sinceId, callback);
+        register(waitersByIcaoCode, icaoCode, waiter);
+        return waiter;
+    }
+
+    /**
+     * Stop waiting, e.g. when the request timed out. Cancelling a woken waiter has no effect.
+     *
+     * @param waiter the waiter returned by awaitNewer
+     * @return true if the waiter was still waiting
+     */
+    public boolean cancel(Waiter waiter) {
+        if (!waiter.done.compareAndSet(false, true)) {
+            return false;
+        }
+        waiterCount.decrementAndGet();
+        unregister(waitersByIcaoCode, waiter.icaoCode, waiter);
+        return true;
+    }
+
+    /**
+     * Publish a stored report to the connections listening to its airport and wake the requests waiting for it.
+     * Inside a transaction the report is published once it commits.
+     *
+     * @param metarData the stored MetarData entity
+     */
+    public void publish(MetarData metarData) {
+        String icaoCode = metarData.getIcaoCode();
+        if (!connectionsByIcaoCode.containsKey(icaoCode) && !waitersByIcaoCode.containsKey(icaoCode)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fanOut(metarData);
+                }
+            });
+        } else {
+            fanOut(metarData);
+        }
+    }
+
+    /**
+     * Get the number of open connections.
+     *
+     * @return the connection count
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Send a comment to every connection, so proxies keep idle connections open and closed clients are noticed.
+     */
+    @Scheduled(fixedDelayString = "${metar.stream.heartbeat:PT15S}")
+    public void heartbeat() {
+        for (Connection connection : connections) {
+            // A full buffer has data queued already
+            if (connection.buffer.offer(HEARTBEAT)) {
+                scheduleSend(connection);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Connection connection : connections) {
+            connection.emitter.complete();
+        }
+        senders.shutdownNow();
+    }
+
+    private void fanOut(MetarData metarData) {
+        wake(metarData);
+        Set<Connection> listeners = connectionsByIcaoCode.get(metarData.getIcaoCode());
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
+        byte[] frame;
+        try {
+            frame = encode(metarData);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to encode METAR data with ID: {} for streaming", metarData.getId(), e);
+            return;
+        }
+        published.increment();
+        for (Connection connection : listeners) {
+            offer(connection, frame);
+        }
+    }
+
+    private void wake(MetarData metarData) {
+        Set<Waiter> waiters = waitersByIcaoCode.get(metarData.getIcaoCode());
+        if (waiters == null) {
+            return;
+        }
+        for (Waiter waiter : waiters) {
+            if (metarData.getId() > waiter.sinceId && cancel(waiter)) {
+                // Building the response must not hold up the committing thread
+                senders.execute(() -> waiter.callback.accept(metarData));
+            }
+        }
+    }
+
+    /**
+     * Encode a report into a complete SSE frame, shared by all connections.
+     */
+    byte[] encode(MetarData metarData) throws JsonProcessingException {
+        byte[] json = writer.writeValueAsBytes(metarData);
+        byte[] header = ("id:" + metarData.getId() + "\nevent:metar\ndata:").getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[header.length + json.length + 2];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        System.arraycopy(json, 0, frame, header.length, json.length);
+        frame[frame.length - 2] = '\n';
+        frame[frame.length - 1] = '\n';
+        return frame;
+    }
+
+    private void offer(Connection connection, byte[] frame) {
+        while (!connection.buffer.offer(frame)) {
+            if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                logger.info("Closing slow METAR stream connection, {} reports buffered", connection.buffer.size());
+                overflowDisconnects.increment();
+                unsubscribe(connection);
+                connection.emitter.complete();
+                return;
+            }
+            if (connection.buffer.poll() != null) {
+                dropped.increment();
+            }
+        }
+        scheduleSend(connection);
+    }
+
+    /**
+     * Start a sender for the connection unless one is running, so frames are written in order by one thread at a time.
+     */
+    private void scheduleSend(Connection connection) {
+        if (connection.sending.compareAndSet(false, true)) {
+            try {
+                senders.execute(() -> send(connection));
+            } catch (RuntimeException e) {
+                // Shutting down
+                connection.sending.set(false);
+            }
+        }
+    }
+
+    private void send(Connection connection) {
+        try {
+            do {
+                byte[] frame;
+                while ((frame = connection.buffer.poll()) != null) {
+                    connection.emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(frame, MediaType.TEXT_EVENT_STREAM)));
+                }
+                connection.sending.set(false);
+                // A frame offered after the last poll but before the flag was cleared still needs a sender
+            } while (!connection.buffer.isEmpty() && connection.sending.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("METAR stream connection closed: {}", e.getMessage());
+            unsubscribe(connection);
+            connection.emitter.completeWithError(e);
+        }
+    }
+
+    private void unsubscribe(Connection connection) {
+        if (!connections.remove(connection)) {
+            return;
+        }
+        connectionCount.decrementAndGet();
+        connection.buffer.clear();
+        for (String icaoCode : connection.icaoCodes) {
+            unregister(connectionsByIcaoCode, icaoCode, connection);
+        }
+    }
+
+    /**
+     * Add to the set of an airport, atomically with removing emptied sets.
+     */
+    private static <T> void register(Map<String, Set<T>> index, String icaoCode, T value) {
+        index.compute(icaoCode, (key, values) -> {
+            Set<T> result = values != null ? values : ConcurrentHashMap.newKeySet();
+            result.add(value);
+            return result;
+        });
+    }
+
+    private static <T> void unregister(Map<String, Set<T>> index, String icaoCode, T value) {
+        index.computeIfPresent(icaoCode, (key, values) -> {
+            values.remove(value);
+            return values.isEmpty() ? null : values;
+        });
+    }
+
+    /**
+     * A request waiting for a newer report of an airport.
+     */
+    public static final class Waiter {
+        private final String icaoCode;
+        private final long sinceId;
+        private final Consumer<MetarData> callback;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Waiter(String icaoCode, long sinceId, Consumer<MetarData> callback) {
+            this.icaoCode = icaoCode;
+            this.sinceId = sinceId;
+            this.callback = callback;
+        }
+    }
+
+    private static class Connection {
+        private final SseEmitter emitter;
+        private final Set<String> icaoCodes;
+        private final BlockingQueue<byte[]> buffer;
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Connection(SseEmitter emitter, Set<String> icaoCodes, int bufferSize) {
+            this.emitter = emitter;
+            this.icaoCodes = icaoCodes;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viktorvranar.airport_metar_service.controller.SubscriptionController;
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+
+/**
+ * Service class for bulk loading newline-delimited METAR reports.
+ * Reads one report per line, e.g. {"icaoCode": "LDZA", "data": "METAR LDZA 121200Z..."},
+ * optionally with a "referenceTime" the day/time group is resolved against, and stores them
+ * in bounded chunks, so memory use does not depend on the size of the input.
+ */
+@Service
+public class MetarStreamIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetarStreamIngestService.class);
+
+    /**
+     * Longest accepted input line, longer lines are skipped and counted as rejected.
+     */
+    static final int MAX_LINE_LENGTH = 4096;
+
+    /**
+     * Longest accepted raw METAR string, matching the length of the raw_data column.
+     */
+    static final int MAX_RAW_DATA_LENGTH = 1000;
+
+    private static final Pattern ICAO_CODE = Pattern.compile(SubscriptionController.ICAO_CODE_REGEX);
+
+    private final MetarService metarService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public MetarStreamIngestService(MetarService metarService, ObjectMapper objectMapper,
+                                    @Value("${metar.ingest.stream.chunk-size:500}") int chunkSize) {
+        this.metarService = metarService;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Read newline-delimited METAR reports and store them chunk by chunk.
+     * Each chunk is saved in its own transaction before more input is read, so a slow
+     * database slows down reading of the input instead of buffering it. A chunk that cannot be
+     * saved is counted as failed and reading goes on with the next one.
+     *
+     * @param reader the source of newline-delimited JSON reports
+     * @param chunkListener called with the progress after every stored chunk
+     * @return the final progress, completed if the input was read to its end
+     */
+    public MetarIngestProgress ingest(Reader reader, Consumer<MetarIngestProgress> chunkListener) {
+        return ingest(reader, null, chunkListener);
+    }
+
+    /**
+     * Read newline-delimited METAR reports and store them chunk by chunk, resolving the observation
+     * times of reports without their own referenceTime against the given one.
+     *
+     * @param reader the source of newline-delimited JSON reports
+     * @param referenceTime the default reference time of the reports, or null for the receipt time
+     * @param chunkListener called with the progress after every stored chunk
+     * @return the final progress, completed if the input was read to its end
+     */
+    public MetarIngestProgress ingest(Reader reader, Instant referenceTime, Consumer<MetarIngestProgress> chunkListener) {
+        IngestRun run = new IngestRun(referenceTime, chunkListener);
+        StringBuilder line = new StringBuilder(256);
+        boolean lineTooLong = false;
+        boolean completed = false;
+
+        char[] buffer = new char[8192];
+        int read;
+        try {
+            while ((read = reader.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    char c = buffer[i];
+                    if (c == '\n') {
+                        run.acceptLine(line, lineTooLong);
+                        line.setLength(0);
+                        lineTooLong = false;
+                    } else if (line.length() < MAX_LINE_LENGTH) {
+                        line.append(c);
+                    } else {
+                        lineTooLong = true;
+                    }
+                }
+            }
+            // Last line without a trailing newline
+            if (line.length() > 0 || lineTooLong) {
+                run.acceptLine(line, lineTooLong);
+            }
+            completed = true;
+        } catch (IOException e) {
+            // Typically the client went away, the partial last line is dropped and the complete ones are stored
+            logger.warn("Streaming ingest input broke off after {} lines: {}", run.linesRead, e.getMessage());
+        }
+        run.flush();
+
+        logger.info("Finished streaming ingest: {} lines read, {} reports stored, {} rejected, {} failed, completed: {}",
+                run.linesRead, run.totalStored, run.totalRejected, run.totalFailed, completed);
+        return new MetarIngestProgress(run.chunkNumber, run.linesRead, 0, 0, 0,
+                run.totalStored, run.totalRejected, run.totalFailed, completed);
+    }
+
+    /**
+     * Parse a single NDJSON line into an unsaved MetarData entity.
+     *
+     * @param line the line without its newline
+     * @param defaultReferenceTime the reference time of lines without their own, or null
+     * @return the entity, or null if the line is not a valid report
+     */
+    private MetarData parseLine(CharSequence line, Instant defaultReferenceTime) {
+        try {
+            JsonNode node = objectMapper.readTree(line.toString());
+            String icaoCode = node.path("icaoCode").asText("").trim();
+            String data = node.path("data").asText("").trim();
+            if (!ICAO_CODE.matcher(icaoCode).matches() || data.isEmpty() || data.length() > MAX_RAW_DATA_LENGTH) {
+                return null;
+            }
+            Instant referenceTime = defaultReferenceTime;
+            JsonNode referenceTimeNode = node.get("referenceTime");
+            if (referenceTimeNode != null && !referenceTimeNode.isNull()) {
+                referenceTime = Instant.parse(referenceTimeNode.asText());
+            }
+            return metarService.createMetarData(icaoCode, data, referenceTime);
+        } catch (JsonProcessingException e) {
+            logger.debug("Rejected malformed METAR line: {}", e.getOriginalMessage());
+            return null;
+        } catch (DateTimeParseException e) {
+            logger.debug("Rejected METAR line with invalid referenceTime: {}", e.getParsedString());
+            return null;
+        }
+    }
+
+    private static boolean isBlank(CharSequence line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Counters and the pending chunk of a single ingest call.
+     */
+    private class IngestRun {
+
+        private final Instant referenceTime;
+        private final Consumer<MetarIngestProgress> chunkListener;
+        private final List<MetarData> chunk = new ArrayList<>(chunkSize);
+        private long chunkNumber;
+        private long linesRead;
+        private int chunkRejected;
+        private long totalStored;
+        private long totalRejected;
+        private long totalFailed;
+
+        IngestRun(Instant referenceTime, Consumer<MetarIngestProgress> chunkListener) {
+            this.referenceTime = referenceTime;
+            this.chunkListener = chunkListener;
+        }
+
+        void acceptLine(CharSequence line, boolean tooLong) {
+            linesRead++;
+            if (!tooLong && isBlank(line)) {
+                return;
+            }
+            MetarData metarData = tooLong ? null : parseLine(line, referenceTime);
+            if (metarData == null) {
+                chunkRejected++;
+                totalRejected++;
+                return;
+            }
+            chunk.add(metarData);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (chunk.isEmpty() && chunkRejected == 0) {
+                return;
+            }
+            int stored = 0;
+            int failed = 0;
+            if (!chunk.isEmpty()) {
+                try {
+                    stored = metarService.saveMetarDataBatch(chunk).size();
+                } catch (RuntimeException e) {
+                    // Reported in the progress of the chunk, later chunks are still stored
+                    failed = chunk.size();
+                    logger.error("Failed to store chunk {} of {} streamed METAR reports", chunkNumber + 1, failed, e);
+                }
+            }
+            chunk.clear();
+            totalStored += stored;
+            totalFailed += failed;
+            chunkListener.accept(new MetarIngestProgress(++chunkNumber, linesRead, stored, chunkRejected, failed,
+                    totalStored, totalRejected, totalFailed, false));
+            chunkRejected = 0;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Publication pattern of one station, learned from the observation times of its reports.
+ * The period is the median interval between the last MAX_OBSERVATIONS distinct observation times,
+ * rounded to whole minutes, and the phase is the offset within the period shared by most observations,
+ * so an occasional SPECI between the routine reports shifts neither. Not thread-safe.
+ */
+final class StationCadence {
+
+    /**
+     * The number of most recent observation times kept.
+     */
+    static final int MAX_OBSERVATIONS = 24;
+
+    /**
+     * The number of intervals needed before a period is trusted.
+     */
+    static final int MIN_INTERVALS = 3;
+
+    private static final long MIN_PERIOD_SECONDS = 10 * 60;
+    private static final long MAX_PERIOD_SECONDS = 6 * 60 * 60;
+
+    /**
+     * Observations this close to the phase count as on schedule.
+     */
+    private static final long PHASE_TOLERANCE_SECONDS = 60;
+
+    /**
+     * Distinct observation times in epoch seconds, ascending.
+     */
+    private final long[] times = new long[MAX_OBSERVATIONS];
+    private int size;
+    private long periodSeconds;
+    private long phaseSeconds;
+
+    /**
+     * Add the observation time of a report. Times already known are ignored.
+     *
+     * @param observedAt the observation time
+     */
+    void observe(Instant observedAt) {
+        long time = observedAt.getEpochSecond();
+        int index = Arrays.binarySearch(times, 0, size, time);
+        if (index >= 0) {
+            return;
+        }
+        int insertion = -index - 1;
+        if (size == MAX_OBSERVATIONS) {
+            if (insertion == 0) {
+                // Older than everything kept
+                return;
+            }
+            System.arraycopy(times, 1, times, 0, insertion - 1);
+            times[insertion - 1] = time;
+        } else {
+            System.arraycopy(times, insertion, times, insertion + 1, size - insertion);
+            times[insertion] = time;
+            size++;
+        }
+        estimate();
+    }
+
+    /**
+     * Get the latest observation time.
+     *
+     * @return the latest observation time, or null if nothing was observed
+     */
+    Instant getLastObservedAt() {
+        return size > 0 ? Instant.ofEpochSecond(times[size - 1]) : null;
+    }
+
+    /**
+     * Get the learned period.
+     *
+     * @return the period between routine reports, or null if too few reports were observed
+     */
+    Duration getPeriod() {
+        return periodSeconds > 0 ? Duration.ofSeconds(periodSeconds) : null;
+    }
+
+    /**
+     * Get the first routine observation time of the learned pattern after the given time.
+     *
+     * @param after the time to look after
+     * @return the next routine observation time, or null if the pattern is not known yet
+     */
+    Instant nextIssueAfter(Instant after) {
+        if (periodSeconds == 0) {
+            return null;
+        }
+        long periods = Math.floorDiv(after.getEpochSecond() - phaseSeconds, periodSeconds) + 1;
+        return Instant.ofEpochSecond(phaseSeconds + periods * periodSeconds);
+    }
+
+    private void estimate() {
+        if (size <= MIN_INTERVALS) {
+            periodSeconds = 0;
+            return;
+        }
+        long[] intervals = new long[size - 1];
+        for (int i = 1; i < size; i++) {
+            intervals[i - 1] = times[i] - times[i - 1];
+        }
+        Arrays.sort(intervals);
+        long median = intervals[intervals.length / 2];
+        long period = Math.round(median / 60.0) * 60;
+        period = Math.max(MIN_PERIOD_SECONDS, Math.min(MAX_PERIOD_SECONDS, period));
+
+        // The offset with the most observations within the tolerance, the latest one on a tie
+        long bestOffset = 0;
+        int bestCount = -1;
+        for (int i = 0; i < size; i++) {
+            long offset = Math.floorMod(times[i], period);
+            int count = 0;
+            for (int j = 0; j < size; j++) {
+                long distance = Math.abs(Math.floorMod(times[j], period) - offset);
+                if (Math.min(distance, period - distance) <= PHASE_TOLERANCE_SECONDS) {
+                    count++;
+                }
+            }
+            if (count >= bestCount) {
+                bestCount = count;
+                bestOffset = offset;
+            }
+        }
+        periodSeconds = period;
+        phaseSeconds = bestOffset;
+    }
+}
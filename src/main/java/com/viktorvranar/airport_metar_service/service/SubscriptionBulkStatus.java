@@ -0,0 +1,19 @@
+package com.viktorvranar.airport_metar_service.service;
+
+/**
+ * Outcome of a bulk subscription operation for a single ICAO code.
+ */
+public enum SubscriptionBulkStatus {
+    /** A subscription was created. */
+    CREATED,
+    /** The airport was subscribed already, nothing changed. */
+    EXISTS,
+    /** The subscription was deleted. */
+    DELETED,
+    /** The active status of the subscription was set. */
+    UPDATED,
+    /** There is no subscription for the airport. */
+    NOT_FOUND,
+    /** The ICAO code is not valid, it was not processed. */
+    INVALID
+}
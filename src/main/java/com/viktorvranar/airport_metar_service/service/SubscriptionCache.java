@@ -0,0 +1,617 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.repository.SubscriptionRepository;
+
+/**
+ * Immutable in-memory snapshot of all subscriptions.
+ * Readers get the current snapshot without locking or touching the database. Writers never change a
+ * published snapshot: every committed SubscriptionChangedEvent is merged into copies of its id and ICAO
+ * code orderings in a single pass, and search indexes already built are carried over with only the
+ * changed codes added or removed, so a write neither sorts nor re-indexes the whole table. The table is
+ * loaded once at startup, and reloaded every refresh-interval as a safety net for changes made outside
+ * this service.
+ * Filtered and paged listings use a search index of each ordering, built on first use of each sort key:
+ * the subscriptions in id order or in ICAO code order, with postings from every ICAO code n-gram, up to
+ * MAX_GRAM_LENGTH characters, and every prefix to the positions of the codes containing it. Grams are
+ * packed into ints and the postings of all grams share one sorted array, so building the index is a
+ * primitive sort instead of a map of millions of strings. A pattern only looks at the postings of its
+ * most selective literal part, and pages start at the cursor position with a binary search, so a page
+ * costs the same no matter how large the table is.
+ */
+@Service
+public class SubscriptionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriptionCache.class);
+
+    /**
+     * The longest indexed n-gram, the length of an ICAO code.
+     */
+    static final int MAX_GRAM_LENGTH = 4;
+
+    /**
+     * Gram characters are packed in base GRAM_RADIX: 1-26 for letters, 27-36 for digits and 37 for anything else.
+     */
+    private static final int GRAM_RADIX = 38;
+
+    /**
+     * Marks prefix grams, above every packed gram of MAX_GRAM_LENGTH characters.
+     */
+    private static final int PREFIX_FLAG = 1 << 22;
+
+    private static final int NO_GRAM = -1;
+
+    private final SubscriptionRepository subscriptionRepository;
+    private volatile Snapshot snapshot;
+
+    public SubscriptionCache(SubscriptionRepository subscriptionRepository) {
+        this.subscriptionRepository = subscriptionRepository;
+    }
+
+    /**
+     * Get all subscriptions, in id order.
+     *
+     * @return an unmodifiable list of detached Subscription copies
+     */
+    public List<Subscription> getAll() {
+        return snapshot().all;
+    }
+
+    /**
+     * Get the subscriptions with an active status, in id order.
+     *
+     * @param active the active status to filter by
+     * @return an unmodifiable list of detached Subscription copies
+     */
+    public List<Subscription> getByActiveStatus(boolean active) {
+        Snapshot current = snapshot();
+        return active ? current.active : current.inactive;
+    }
+
+    /**
+     * Find a page of subscriptions.
+     *
+     * @param active optional active status to filter by, null for both
+     * @param icaoCodePatterns case-insensitive LIKE patterns the ICAO code must all match, % for any
+     *                         characters and _ for one character
+     * @param sort the sort order
+     * @param cursor optional cursor of the page, taken from nextCursor of the previous page in the same sort order
+     * @param limit the maximum number of subscriptions on the page, Integer.MAX_VALUE for all
+     * @return the page of detached Subscription copies and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another sort order
+     */
+    public SubscriptionPage find(Boolean active, Collection<String> icaoCodePatterns, SubscriptionSort sort,
+                                 String cursor, int limit) {
+        Ordering ordering = snapshot().ordering(sort);
+        GramIndex index = ordering.index();
+        List<IcaoCodeFilter> filters = new ArrayList<>(icaoCodePatterns.size());
+        for (String icaoCodePattern : icaoCodePatterns) {
+            filters.add(IcaoCodeFilter.compile(icaoCodePattern));
+        }
+        // Candidates are either all positions or the postings of the most selective gram in [from, to)
+        boolean indexed = false;
+        int from = 0;
+        int to = ordering.items.length;
+        for (IcaoCodeFilter filter : filters) {
+            if (filter.gram != NO_GRAM) {
+                int gram = Arrays.binarySearch(index.gramKeys, filter.gram);
+                int gramFrom = gram >= 0 ? index.gramOffsets[gram] : 0;
+                int gramTo = gram >= 0 ? index.gramOffsets[gram + 1] : 0;
+                if (!indexed || gramTo - gramFrom < to - from) {
+                    indexed = true;
+                    from = gramFrom;
+                    to = gramTo;
+                }
+            }
+        }
+
+        int step = sort.isDescending() ? -1 : 1;
+        int start = cursor != null
+                ? ordering.startAfter(decodeCursor(sort, cursor), sort.isDescending())
+                : (sort.isDescending() ? ordering.items.length - 1 : 0);
+        int k = start;
+        if (indexed) {
+            k = Arrays.binarySearch(index.gramPositions, from, to, start);
+            if (k < 0) {
+                // First posting after the start going up, last one before it going down
+                k = sort.isDescending() ? -k - 2 : -k - 1;
+            }
+        }
+
+        List<Subscription> page = new ArrayList<>(Math.min(limit, 64));
+        boolean more = false;
+        for (; k >= from && k < to; k += step) {
+            int position = indexed ? index.gramPositions[k] : k;
+            Subscription subscription = ordering.items[position];
+            if ((active != null && subscription.isActive() != active)
+                    || !matchesAll(filters, index.upperCaseCodes[position])) {
+                continue;
+            }
+            if (page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.add(subscription);
+        }
+        String nextCursor = more ? encodeCursor(sort, page.get(page.size() - 1)) : null;
+        return new SubscriptionPage(Collections.unmodifiableList(page), nextCursor);
+    }
+
+    /**
+     * Load the subscription table at startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    /**
+     * Reload the subscription table.
+     */
+    @Scheduled(initialDelayString = "${metar.subscription-cache.refresh-interval:PT10M}",
+               fixedDelayString = "${metar.subscription-cache.refresh-interval:PT10M}")
+    public synchronized void reload() {
+        List<Subscription> subscriptions = subscriptionRepository.findAll(Sort.by("id"));
+        Subscription[] byId = new Subscription[subscriptions.size()];
+        for (int i = 0; i < byId.length; i++) {
+            byId[i] = copyOf(subscriptions.get(i));
+        }
+        snapshot = Snapshot.of(byId);
+        logger.debug("Loaded {} subscriptions into the subscription cache", byId.length);
+    }
+
+    /**
+     * Merge a committed change into a copy of the snapshot and publish the copy.
+     * Without a surrounding transaction the change is applied right away.
+     *
+     * @param event the change
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        if (snapshot == null) {
+            // Not loaded yet, the load will see the change
+            return;
+        }
+        // The last change of an ICAO code within the event wins, null removes it
+        boolean deleted = event.getType() == SubscriptionChangedEvent.Type.DELETED;
+        Map<String, Subscription> changes = new LinkedHashMap<>();
+        for (Subscription subscription : event.getSubscriptions()) {
+            changes.put(subscription.getIcaoCode(), deleted ? null : copyOf(subscription));
+        }
+        List<Subscription> removed = new ArrayList<>(changes.size());
+        List<Subscription> added = new ArrayList<>(changes.size());
+        for (Map.Entry<String, Subscription> change : changes.entrySet()) {
+            Subscription current = snapshot.get(change.getKey());
+            if (current != null) {
+                removed.add(current);
+            }
+            if (change.getValue() != null) {
+                added.add(change.getValue());
+            }
+        }
+        snapshot = snapshot.apply(removed, added);
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Copy a subscription, so the snapshot never shares an instance with a persistence context.
+     */
+    static Subscription copyOf(Subscription subscription) {
+        Subscription copy = new Subscription(subscription.getIcaoCode());
+        copy.setId(subscription.getId());
+        copy.setActive(subscription.isActive());
+        return copy;
+    }
+
+    private static boolean matchesAll(List<IcaoCodeFilter> filters, String upperCaseCode) {
+        for (IcaoCodeFilter filter : filters) {
+            if (!filter.matcher.test(upperCaseCode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String encodeCursor(SubscriptionSort sort, Subscription last) {
+        String key = sort.isByIcaoCode() ? last.getIcaoCode() : String.valueOf(last.getId());
+        String value = sort.getParameter() + "|" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor into a probe subscription carrying the sort key of the last subscription of the previous page.
+     */
+    private static Subscription decodeCursor(SubscriptionSort sort, String cursor) {
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = value.split("\\|", 2);
+        if (parts.length != 2 || !parts[0].equals(sort.getParameter())) {
+            throw new IllegalArgumentException("Malformed subscription cursor");
+        }
+        Subscription probe = new Subscription(parts[1]);
+        if (!sort.isByIcaoCode()) {
+            probe.setId(Long.parseLong(parts[1]));
+        }
+        return probe;
+    }
+
+    /**
+     * The subscriptions in id order and in ICAO code order, the latter also used to look codes up.
+     */
+    private static class Snapshot {
+        private final Ordering byId;
+        private final Ordering byIcaoCode;
+        private final List<Subscription> all;
+        private final List<Subscription> active;
+        private final List<Subscription> inactive;
+
+        private Snapshot(Ordering byId, Ordering byIcaoCode) {
+            List<Subscription> active = new ArrayList<>();
+            List<Subscription> inactive = new ArrayList<>();
+            for (Subscription subscription : byId.items) {
+                (subscription.isActive() ? active : inactive).add(subscription);
+            }
+            this.byId = byId;
+            this.byIcaoCode = byIcaoCode;
+            this.all = Collections.unmodifiableList(Arrays.asList(byId.items));
+            this.active = Collections.unmodifiableList(active);
+            this.inactive = Collections.unmodifiableList(inactive);
+        }
+
+        private static Snapshot of(Subscription[] byId) {
+            Subscription[] byIcaoCode = byId.clone();
+            Arrays.sort(byIcaoCode, Ordering.BY_ICAO_CODE);
+            return new Snapshot(new Ordering(byId, Ordering.BY_ID), new Ordering(byIcaoCode, Ordering.BY_ICAO_CODE));
+        }
+
+        private Subscription get(String icaoCode) {
+            int position = Arrays.binarySearch(byIcaoCode.items, new Subscription(icaoCode), Ordering.BY_ICAO_CODE);
+            return position >= 0 ? byIcaoCode.items[position] : null;
+        }
+
+        private Snapshot apply(List<Subscription> removed, List<Subscription> added) {
+            return new Snapshot(byId.apply(removed, added), byIcaoCode.apply(removed, added));
+        }
+
+        private Ordering ordering(SubscriptionSort sort) {
+            return sort.isByIcaoCode() ? byIcaoCode : byId;
+        }
+    }
+
+    /**
+     * Subscriptions in one sort order, with their search index built on first use.
+     */
+    private static class Ordering {
+        private static final Comparator<Subscription> BY_ID = Comparator.comparingLong(Subscription::getId);
+        private static final Comparator<Subscription> BY_ICAO_CODE = Comparator.comparing(Subscription::getIcaoCode);
+
+        private final Subscription[] items;
+        private final Comparator<Subscription> comparator;
+        private volatile GramIndex index;
+
+        private Ordering(Subscription[] items, Comparator<Subscription> comparator) {
+            this.items = items;
+            this.comparator = comparator;
+        }
+
+        private GramIndex index() {
+            GramIndex current = index;
+            if (current == null) {
+                synchronized (this) {
+                    if (index == null) {
+                        int[] positions = new int[items.length];
+                        for (int position = 0; position < positions.length; position++) {
+                            positions[position] = position;
+                        }
+                        index = GramIndex.EMPTY.apply(new int[0], items, positions);
+                    }
+                    current = index;
+                }
+            }
+            return current;
+        }
+
+        /**
+         * Merge removed and added subscriptions into a copy of this ordering, in one pass over the items.
+         * The search index is carried over if it has been built.
+         */
+        private Ordering apply(List<Subscription> removed, List<Subscription> added) {
+            boolean[] gone = new boolean[items.length];
+            int goneCount = 0;
+            for (Subscription subscription : removed) {
+                int position = Arrays.binarySearch(items, subscription, comparator);
+                if (position >= 0 && !gone[position]) {
+                    gone[position] = true;
+                    goneCount++;
+                }
+            }
+            Subscription[] sortedAdded = added.toArray(new Subscription[0]);
+            Arrays.sort(sortedAdded, comparator);
+
+            Subscription[] merged = new Subscription[items.length - goneCount + sortedAdded.length];
+            int[] newPositions = new int[items.length];
+            int[] addedPositions = new int[sortedAdded.length];
+            int size = 0;
+            int a = 0;
+            for (int position = 0; position <= items.length; position++) {
+                while (a < sortedAdded.length
+                        && (position == items.length || comparator.compare(sortedAdded[a], items[position]) < 0)) {
+                    addedPositions[a] = size;
+                    merged[size++] = sortedAdded[a++];
+                }
+                if (position < items.length) {
+                    if (gone[position]) {
+                        newPositions[position] = -1;
+                    } else {
+                        newPositions[position] = size;
+                        merged[size++] = items[position];
+                    }
+                }
+            }
+
+            Ordering next = new Ordering(merged, comparator);
+            GramIndex current = index;
+            if (current != null) {
+                next.index = current.apply(newPositions, sortedAdded, addedPositions);
+            }
+            return next;
+        }
+
+        /**
+         * Get the position of the first subscription after the probe in iteration order.
+         */
+        private int startAfter(Subscription probe, boolean descending) {
+            int index = Arrays.binarySearch(items, probe, comparator);
+            if (index >= 0) {
+                return descending ? index - 1 : index + 1;
+            }
+            int insertion = -index - 1;
+            return descending ? insertion - 1 : insertion;
+        }
+    }
+
+    /**
+     * The upper case ICAO codes of an ordering with the n-gram and prefix postings of each of them.
+     * The postings of gramKeys[i] are the ascending positions into the ordering in
+     * gramPositions[gramOffsets[i]] to gramPositions[gramOffsets[i + 1] - 1].
+     */
+    private static class GramIndex {
+        private static final GramIndex EMPTY = new GramIndex(new String[0], new int[0], new int[] {0}, new int[0]);
+
+        private final String[] upperCaseCodes;
+        private final int[] gramKeys;
+        private final int[] gramOffsets;
+        private final int[] gramPositions;
+
+        private GramIndex(String[] upperCaseCodes, int[] gramKeys, int[] gramOffsets, int[] gramPositions) {
+            this.upperCaseCodes = upperCaseCodes;
+            this.gramKeys = gramKeys;
+            this.gramOffsets = gramOffsets;
+            this.gramPositions = gramPositions;
+        }
+
+        /**
+         * Build the index of a changed ordering: the postings of this index are moved to the new positions
+         * of their subscriptions, dropping removed ones, and merged with the postings of the added ones.
+         * Only the added codes are sorted, the rest is a single merge pass over the postings.
+         *
+         * @param newPositions the new position of every subscription of this index, -1 if it was removed
+         * @param added the added subscriptions
+         * @param addedPositions the positions of the added subscriptions in the changed ordering
+         */
+        private GramIndex apply(int[] newPositions, Subscription[] added, int[] addedPositions) {
+            int size = added.length;
+            for (int newPosition : newPositions) {
+                if (newPosition >= 0) {
+                    size++;
+                }
+            }
+            String[] codes = new String[size];
+            for (int position = 0; position < newPositions.length; position++) {
+                if (newPositions[position] >= 0) {
+                    codes[newPositions[position]] = upperCaseCodes[position];
+                }
+            }
+            int count = 0;
+            for (int i = 0; i < added.length; i++) {
+                codes[addedPositions[i]] = added[i].getIcaoCode().toUpperCase(Locale.ROOT);
+                count += gramCount(codes[addedPositions[i]].length());
+            }
+            // Sorting the (gram, position) pairs of the added codes groups them by gram, in position order
+            long[] pairs = new long[count];
+            int pairCount = 0;
+            for (int position : addedPositions) {
+                String code = codes[position];
+                for (int start = 0; start < code.length(); start++) {
+                    int gram = 0;
+                    for (int end = start; end < Math.min(start + MAX_GRAM_LENGTH, code.length()); end++) {
+                        gram = gram * GRAM_RADIX + gramDigit(code.charAt(end));
+                        pairs[pairCount++] = (long) gram << 32 | position;
+                        if (start == 0) {
+                            pairs[pairCount++] = (long) (gram | PREFIX_FLAG) << 32 | position;
+                        }
+                    }
+                }
+            }
+            Arrays.sort(pairs);
+
+            int[] keys = new int[gramKeys.length + pairs.length];
+            int[] offsets = new int[keys.length + 1];
+            int[] positions = new int[gramPositions.length + pairs.length];
+            int grams = 0;
+            int postings = 0;
+            int g = 0;
+            int p = 0;
+            while (g < gramKeys.length || p < pairs.length) {
+                int gram = Math.min(g < gramKeys.length ? gramKeys[g] : Integer.MAX_VALUE,
+                        p < pairs.length ? (int) (pairs[p] >>> 32) : Integer.MAX_VALUE);
+                int k = 0;
+                int end = 0;
+                if (g < gramKeys.length && gramKeys[g] == gram) {
+                    k = gramOffsets[g];
+                    end = gramOffsets[++g];
+                }
+                int first = postings;
+                while (true) {
+                    while (k < end && newPositions[gramPositions[k]] < 0) {
+                        k++;
+                    }
+                    int kept = k < end ? newPositions[gramPositions[k]] : Integer.MAX_VALUE;
+                    int inserted = p < pairs.length && (int) (pairs[p] >>> 32) == gram ? (int) pairs[p] : Integer.MAX_VALUE;
+                    if (kept == Integer.MAX_VALUE && inserted == Integer.MAX_VALUE) {
+                        break;
+                    }
+                    int position;
+                    if (kept < inserted) {
+                        position = kept;
+                        k++;
+                    } else {
+                        position = inserted;
+                        p++;
+                    }
+                    // A gram repeated within one ICAO code is recorded once
+                    if (postings == first || positions[postings - 1] != position) {
+                        positions[postings++] = position;
+                    }
+                }
+                if (postings > first) {
+                    keys[grams] = gram;
+                    offsets[grams++] = first;
+                }
+            }
+            offsets[grams] = postings;
+            return new GramIndex(codes, Arrays.copyOf(keys, grams), Arrays.copyOf(offsets, grams + 1),
+                    Arrays.copyOf(positions, postings));
+        }
+
+        private static int gramCount(int length) {
+            int count = Math.min(MAX_GRAM_LENGTH, length);
+            for (int start = 0; start < length; start++) {
+                count += Math.min(MAX_GRAM_LENGTH, length - start);
+            }
+            return count;
+        }
+    }
+
+    private static int gramDigit(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        return GRAM_RADIX - 1;
+    }
+
+    /**
+     * Pack the first MAX_GRAM_LENGTH characters of a literal, or NO_GRAM for an empty literal.
+     */
+    private static int packGram(String literal) {
+        if (literal.isEmpty()) {
+            return NO_GRAM;
+        }
+        int gram = 0;
+        for (int i = 0; i < Math.min(MAX_GRAM_LENGTH, literal.length()); i++) {
+            gram = gram * GRAM_RADIX + gramDigit(literal.charAt(i));
+        }
+        return gram;
+    }
+
+    /**
+     * A compiled case-insensitive LIKE pattern with the gram whose postings hold all its candidates.
+     */
+    private static class IcaoCodeFilter {
+        private final int gram;
+        private final Predicate<String> matcher;
+
+        private IcaoCodeFilter(int gram, Predicate<String> matcher) {
+            this.gram = gram;
+            this.matcher = matcher;
+        }
+
+        private static IcaoCodeFilter compile(String icaoCodePattern) {
+            String pattern = icaoCodePattern.toUpperCase(Locale.ROOT);
+            String[] literals = pattern.split("[%_]", -1);
+            int gram;
+            if (!literals[0].isEmpty()) {
+                gram = packGram(literals[0]) | PREFIX_FLAG;
+            } else {
+                String longest = "";
+                for (String literal : literals) {
+                    if (literal.length() > longest.length()) {
+                        longest = literal;
+                    }
+                }
+                gram = packGram(longest);
+            }
+
+            String inner = pattern.length() >= 2 ? pattern.substring(1, pattern.length() - 1) : "";
+            Predicate<String> matcher;
+            if (literals.length == 1) {
+                matcher = pattern::equals;
+            } else if (literals.length == 2 && pattern.endsWith("%")) {
+                matcher = code -> code.startsWith(literals[0]);
+            } else if (literals.length == 3 && pattern.startsWith("%") && pattern.endsWith("%") && !inner.isEmpty()
+                    && inner.indexOf('%') < 0 && inner.indexOf('_') < 0) {
+                matcher = code -> code.contains(inner);
+            } else {
+                matcher = toRegex(pattern).asMatchPredicate();
+            }
+            return new IcaoCodeFilter(gram, matcher);
+        }
+
+        private static Pattern toRegex(String pattern) {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            for (char c : pattern.toCharArray()) {
+                if (c == '%' || c == '_') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '%' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            return Pattern.compile(regex.toString(), Pattern.DOTALL);
+        }
+    }
+}
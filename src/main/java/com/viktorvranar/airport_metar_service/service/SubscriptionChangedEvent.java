@@ -0,0 +1,40 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.util.List;
+
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+
+/**
+ * Application event published by SubscriptionService for every committed subscription change.
+ * The subscriptions are detached copies with the state after the change, so listeners can keep them.
+ */
+public class SubscriptionChangedEvent {
+
+    /**
+     * Kind of change.
+     */
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Type type;
+    private final List<Subscription> subscriptions;
+
+    public SubscriptionChangedEvent(Type type, List<Subscription> subscriptions) {
+        this.type = type;
+        this.subscriptions = List.copyOf(subscriptions);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the changed subscriptions.
+     *
+     * @return the subscriptions as they are after the change, or as they were before a delete
+     */
+    public List<Subscription> getSubscriptions() {
+        return subscriptions;
+    }
+}
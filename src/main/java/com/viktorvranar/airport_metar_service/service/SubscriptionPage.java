@@ -0,0 +1,32 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import java.util.List;
+
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+
+/**
+ * One page of a subscription listing.
+ */
+public class SubscriptionPage {
+
+    private final List<Subscription> subscriptions;
+    private final String nextCursor;
+
+    public SubscriptionPage(List<Subscription> subscriptions, String nextCursor) {
+        this.subscriptions = subscriptions;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Get the cursor of the next page.
+     *
+     * @return the opaque cursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
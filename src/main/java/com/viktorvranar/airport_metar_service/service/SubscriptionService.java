@@ -1,9 +1,17 @@
 package com.viktorvranar.airport_metar_service.service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.viktorvranar.airport_metar_service.entity.Subscription;
 import com.viktorvranar.airport_metar_service.repository.SubscriptionRepository;
@@ -12,73 +20,109 @@ import com.viktorvranar.airport_metar_service.repository.SubscriptionRepository;
 /**
  * Service class for managing airport subscriptions.
  * Provides business logic for creating, retrieving, and deleting subscriptions.
+ * Reads other than single ICAO code lookups are served from the in-memory SubscriptionCache, and every
+ * change is published as a SubscriptionChangedEvent.
  */
 public class SubscriptionService {
     
     private final SubscriptionRepository subscriptionRepository;
+    private final SubscriptionCache subscriptionCache;
+    private final ApplicationEventPublisher eventPublisher;
     
-    public SubscriptionService(SubscriptionRepository subscriptionRepository) {
+    public SubscriptionService(SubscriptionRepository subscriptionRepository,
+                               SubscriptionCache subscriptionCache,
+                               ApplicationEventPublisher eventPublisher) {
         this.subscriptionRepository = subscriptionRepository;
+        this.subscriptionCache = subscriptionCache;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
-     * Create a new subscription for an airport.
+     * Create a new subscription for an airport with a single insert that skips existing subscriptions.
      *
      * @param icaoCode the ICAO code of the airport to subscribe to
-     * @return the created Subscription entity
+     * @return the created Subscription entity, or null if the airport is subscribed already
      */
     public Subscription createSubscription(String icaoCode) {
-        Subscription subscription = new Subscription(icaoCode);
-        return subscriptionRepository.save(subscription);
+        Optional<Subscription> created = subscriptionRepository.insert(icaoCode);
+        created.ifPresent(subscription -> publish(SubscriptionChangedEvent.Type.CREATED, subscription));
+        return created.orElse(null);
     }
 
     /**
-     * Find all subscriptions.
+     * Find all subscriptions, from the subscription cache.
      *
-     * @return a list of all Subscription entities
+     * @return an unmodifiable list of all Subscription entities in id order
      */
     public List<Subscription> findAllSubscriptions() {
-        return subscriptionRepository.findAll();
+        return subscriptionCache.getAll();
     }
 
     /**
-     * Find all active subscriptions.
+     * Find all active subscriptions, from the subscription cache.
      *
-     * @return a list of active Subscription entities
+     * @return an unmodifiable list of active Subscription entities in id order
      */
     public List<Subscription> getActiveSubscriptions() {
-        return subscriptionRepository.findByActiveTrue();
+        return subscriptionCache.getByActiveStatus(true);
     }
     
     /**
-     * Find subscriptions by active status.
+     * Find subscriptions by active status, from the subscription cache.
      *
      * @param active the active status to filter by
-     * @return a list of Subscription entities with the specified active status
+     * @return an unmodifiable list of Subscription entities with the specified active status in id order
      */
     public List<Subscription> getSubscriptionsByActiveStatus(boolean active) {
-        return subscriptionRepository.findByActiveStatus(active);
+        return subscriptionCache.getByActiveStatus(active);
     }
     
     /**
-     * Find subscriptions by ICAO code pattern (case-insensitive).
+     * Find subscriptions by ICAO code pattern (case-insensitive), from the subscription cache search index.
      *
      * @param icaoCodePattern the pattern to match ICAO codes against (use % for wildcards)
-     * @return a list of Subscription entities matching the pattern
+     * @return a list of Subscription entities matching the pattern in id order
      */
     public List<Subscription> getSubscriptionsByIcaoCodePattern(String icaoCodePattern) {
-        return subscriptionRepository.findByIcaoCodePattern(icaoCodePattern);
+        return subscriptionCache.find(null, List.of(icaoCodePattern), SubscriptionSort.ID, null, Integer.MAX_VALUE)
+                .getSubscriptions();
     }
     
     /**
-     * Find subscriptions by active status and ICAO code pattern (case-insensitive).
+     * Find subscriptions by active status and ICAO code pattern (case-insensitive), from the subscription
+     * cache search index.
      *
      * @param active the active status to filter by
      * @param icaoCodePattern the pattern to match ICAO codes against (use % for wildcards)
-     * @return a list of Subscription entities matching the criteria
+     * @return a list of Subscription entities matching the criteria in id order
      */
     public List<Subscription> getSubscriptionsByActiveStatusAndIcaoCodePattern(boolean active, String icaoCodePattern) {
-        return subscriptionRepository.findByActiveStatusAndIcaoCodePattern(active, icaoCodePattern);
+        return subscriptionCache.find(active, List.of(icaoCodePattern), SubscriptionSort.ID, null, Integer.MAX_VALUE)
+                .getSubscriptions();
+    }
+    
+    /**
+     * Find a sorted page of subscriptions, from the subscription cache search index.
+     *
+     * @param active optional active status to filter by
+     * @param icaoCodeFragment optional case-insensitive part of the ICAO code
+     * @param icaoCodePrefix optional case-insensitive start of the ICAO code
+     * @param sort the sort order
+     * @param cursor optional cursor of the page, taken from nextCursor of the previous page
+     * @param limit the maximum number of subscriptions on the page, Integer.MAX_VALUE for all
+     * @return the page and the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another sort order
+     */
+    public SubscriptionPage findSubscriptions(Boolean active, String icaoCodeFragment, String icaoCodePrefix,
+                                              SubscriptionSort sort, String cursor, int limit) {
+        List<String> icaoCodePatterns = new ArrayList<>(2);
+        if (icaoCodeFragment != null) {
+            icaoCodePatterns.add("%" + icaoCodeFragment + "%");
+        }
+        if (icaoCodePrefix != null) {
+            icaoCodePatterns.add(icaoCodePrefix + "%");
+        }
+        return subscriptionCache.find(active, icaoCodePatterns, sort, cursor, limit);
     }
     
     /**
@@ -102,33 +146,99 @@ public class SubscriptionService {
     }
 
     /**
-     * Delete a subscription by ICAO code.
+     * Delete a subscription by ICAO code with a single delete.
      *
      * @param icaoCode the ICAO code of the airport to unsubscribe from
+     * @return true if the subscription was deleted, false if it did not exist
      */
-    public void deleteSubscription(String icaoCode) {
-        Optional<Subscription> subscriptionOpt = subscriptionRepository.findByIcaoCode(icaoCode);
-        if (subscriptionOpt.isPresent()) {
-            subscriptionRepository.delete(subscriptionOpt.get());
-        }
+    public boolean deleteSubscription(String icaoCode) {
+        Optional<Subscription> deleted = subscriptionRepository.deleteByIcaoCode(icaoCode);
+        deleted.ifPresent(subscription -> publish(SubscriptionChangedEvent.Type.DELETED, subscription));
+        return deleted.isPresent();
     }
     
     /**
-     * Update the active status of a subscription.
+     * Update the active status of a subscription with a single update.
      *
      * @param icaoCode the ICAO code of the airport
      * @param active the new active status (true to activate, false to deactivate)
      * @return the updated Subscription entity, or null if not found
      */
     public Subscription updateSubscriptionStatus(String icaoCode, boolean active) {
-        Optional<Subscription> subscriptionOpt = subscriptionRepository.findByIcaoCode(icaoCode);
-        if (subscriptionOpt.isPresent()) {
-            Subscription subscription = subscriptionOpt.get();
-            subscription.setActive(active);
-            return subscriptionRepository.save(subscription);
+        Optional<Subscription> updated = subscriptionRepository.updateActiveByIcaoCode(icaoCode, active);
+        updated.ifPresent(subscription -> publish(SubscriptionChangedEvent.Type.UPDATED, subscription));
+        return updated.orElse(null);
+    }
+    
+    /**
+     * Subscribe to many airports in one transaction with a single multi-row insert.
+     *
+     * @param icaoCodes the ICAO codes of the airports, without duplicates
+     * @return the outcome per ICAO code in request order, CREATED or EXISTS
+     */
+    @Transactional
+    public Map<String, SubscriptionBulkStatus> createSubscriptions(Collection<String> icaoCodes) {
+        List<Subscription> created = subscriptionRepository.insertAll(icaoCodes.toArray(new String[0]));
+        publish(SubscriptionChangedEvent.Type.CREATED, created);
+        return bulkResults(icaoCodes, created, SubscriptionBulkStatus.CREATED, SubscriptionBulkStatus.EXISTS);
+    }
+    
+    /**
+     * Unsubscribe from many airports in one transaction with a single delete.
+     *
+     * @param icaoCodes the ICAO codes of the airports, without duplicates
+     * @return the outcome per ICAO code in request order, DELETED or NOT_FOUND
+     */
+    @Transactional
+    public Map<String, SubscriptionBulkStatus> deleteSubscriptions(Collection<String> icaoCodes) {
+        List<Subscription> deleted = subscriptionRepository.deleteAllByIcaoCodeIn(icaoCodes.toArray(new String[0]));
+        publish(SubscriptionChangedEvent.Type.DELETED, deleted);
+        return bulkResults(icaoCodes, deleted, SubscriptionBulkStatus.DELETED, SubscriptionBulkStatus.NOT_FOUND);
+    }
+    
+    /**
+     * Update the active status of many subscriptions in one transaction with a single update.
+     *
+     * @param icaoCodes the ICAO codes of the airports, without duplicates
+     * @param active the new active status (true to activate, false to deactivate)
+     * @return the outcome per ICAO code in request order, UPDATED or NOT_FOUND
+     */
+    @Transactional
+    public Map<String, SubscriptionBulkStatus> updateSubscriptionStatuses(Collection<String> icaoCodes, boolean active) {
+        List<Subscription> updated = subscriptionRepository.updateActiveByIcaoCodeIn(icaoCodes.toArray(new String[0]), active);
+        publish(SubscriptionChangedEvent.Type.UPDATED, updated);
+        return bulkResults(icaoCodes, updated, SubscriptionBulkStatus.UPDATED, SubscriptionBulkStatus.NOT_FOUND);
+    }
+    
+    private static Map<String, SubscriptionBulkStatus> bulkResults(Collection<String> icaoCodes, List<Subscription> changed,
+                                                                   SubscriptionBulkStatus changedStatus,
+                                                                   SubscriptionBulkStatus unchangedStatus) {
+        Set<String> changedCodes = new HashSet<>();
+        for (Subscription subscription : changed) {
+            changedCodes.add(subscription.getIcaoCode());
+        }
+        Map<String, SubscriptionBulkStatus> results = new LinkedHashMap<>();
+        for (String icaoCode : icaoCodes) {
+            results.put(icaoCode, changedCodes.contains(icaoCode) ? changedStatus : unchangedStatus);
         }
-        return null;
+        return results;
     }
     
+    /**
+     * Publish a change, listeners run once it commits.
+     */
+    private void publish(SubscriptionChangedEvent.Type type, Subscription subscription) {
+        publish(type, List.of(subscription));
+    }
     
+    private void publish(SubscriptionChangedEvent.Type type, List<Subscription> subscriptions) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        List<Subscription> copies = new ArrayList<>(subscriptions.size());
+        for (Subscription subscription : subscriptions) {
+            copies.add(SubscriptionCache.copyOf(subscription));
+        }
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(type, copies));
+    }
 }
@@ -0,0 +1,51 @@
+package com.viktorvranar.airport_metar_service.service;
+
+/**
+ * Sort order of a subscription listing.
+ * Both keys are unique, so they also serve as keyset cursors.
+ */
+public enum SubscriptionSort {
+
+    ID("id", false, false),
+    ID_DESC("-id", false, true),
+    ICAO_CODE("icaoCode", true, false),
+    ICAO_CODE_DESC("-icaoCode", true, true);
+
+    private final String parameter;
+    private final boolean byIcaoCode;
+    private final boolean descending;
+
+    SubscriptionSort(String parameter, boolean byIcaoCode, boolean descending) {
+        this.parameter = parameter;
+        this.byIcaoCode = byIcaoCode;
+        this.descending = descending;
+    }
+
+    /**
+     * Parse a sort request parameter.
+     *
+     * @param parameter id or icaoCode, prefixed with - for descending order
+     * @return the sort order
+     * @throws IllegalArgumentException if the parameter is unknown
+     */
+    public static SubscriptionSort fromParameter(String parameter) {
+        for (SubscriptionSort sort : values()) {
+            if (sort.parameter.equals(parameter)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Unknown subscription sort: " + parameter);
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    public boolean isByIcaoCode() {
+        return byIcaoCode;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+}
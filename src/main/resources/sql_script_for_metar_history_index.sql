@@ -0,0 +1,12 @@
+-- ==========================================
+-- Airport METAR Service: METAR history index
+-- ==========================================
+-- History pages are read in (observed_at, id) order per airport with a keyset
+-- condition, which is a range scan on this index. It replaces the
+-- (icao_code, observed_at) index, which it covers.
+-- Run this once against an existing database; the dev profile creates it on startup.
+
+\connect metar_service_dev;
+
+CREATE INDEX IF NOT EXISTS idx_metar_icao_code_observed_at_id ON metar (icao_code, observed_at, id);
+DROP INDEX IF EXISTS idx_metar_icao_code_observed_at;
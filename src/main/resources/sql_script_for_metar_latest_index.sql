@@ -0,0 +1,11 @@
+-- ==========================================
+-- Airport METAR Service: METAR latest report index
+-- ==========================================
+-- The latest report of an airport is the row with the highest id for its ICAO code.
+-- This index turns that lookup, for one airport, the latest METAR cache warm-up or a
+-- bulk request, into a single index probe per airport.
+-- Run this once against an existing database; the dev profile creates it on startup.
+
+\connect metar_service_dev;
+
+CREATE INDEX IF NOT EXISTS idx_metar_icao_code_id ON metar (icao_code, id);
@@ -0,0 +1,11 @@
+-- ==========================================
+-- Airport METAR Service: METAR parse version migration
+-- ==========================================
+-- parse_version counts how often the re-parse job rewrote the parsed fields of a
+-- report. It is part of the ETag of the latest METAR, so clients holding the ETag
+-- of the old content get the rewritten report instead of 304 Not Modified.
+-- Run this once against an existing database created before the column existed.
+
+\connect metar_service_dev;
+
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS parse_version INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,25 @@
+-- ==========================================
+-- Airport METAR Service: METAR raw hash migration
+-- ==========================================
+-- Repeated reports are detected through the SHA-256 hash of raw_data and the
+-- unique constraint uk_metar_icao_code_raw_hash on (icao_code, raw_hash).
+-- Run this once against an existing database created before the raw_hash column existed.
+
+\connect metar_service_dev;
+
+-- 1. Add the hash column
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS raw_hash VARCHAR(64);
+
+-- 2. Remove repeated reports, keeping the first stored copy
+DELETE FROM metar m
+USING metar older
+WHERE m.icao_code = older.icao_code
+  AND m.raw_data = older.raw_data
+  AND m.id > older.id;
+
+-- 3. Backfill the hash for existing rows (requires PostgreSQL 11+)
+UPDATE metar SET raw_hash = encode(sha256(convert_to(raw_data, 'UTF8')), 'hex')
+WHERE raw_hash IS NULL AND raw_data IS NOT NULL;
+
+-- 4. Add the unique constraint
+ALTER TABLE metar ADD CONSTRAINT uk_metar_icao_code_raw_hash UNIQUE (icao_code, raw_hash);
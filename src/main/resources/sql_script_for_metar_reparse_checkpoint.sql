@@ -0,0 +1,15 @@
+-- ==========================================
+-- Airport METAR Service: METAR re-parse checkpoint table
+-- ==========================================
+-- The re-parse job (/actuator/metarreparse) stores the id of the last re-parsed
+-- row here, in the same transaction as the updated rows, so it can be resumed.
+-- Run this once against an existing database; the dev profile creates it on startup.
+
+\connect metar_service_dev;
+
+CREATE TABLE IF NOT EXISTS metar_reparse_checkpoint (
+    job_name VARCHAR(64) PRIMARY KEY,
+    last_id BIGINT NOT NULL,
+    rows_processed BIGINT NOT NULL,
+    updated_at TIMESTAMP(6) WITH TIME ZONE
+);
@@ -0,0 +1,24 @@
+-- ==========================================
+-- Airport METAR Service: METAR id sequence migration
+-- ==========================================
+-- The metar.id column is generated from the pooled sequence metar_seq
+-- (allocationSize = 50) so that Hibernate can batch inserts.
+-- Run this once against an existing database that was created while
+-- metar.id was still an identity column.
+
+\connect metar_service_dev;
+
+-- 1. Create the sequence with the same increment as the entity allocationSize
+CREATE SEQUENCE IF NOT EXISTS metar_seq INCREMENT BY 50;
+
+-- 2. Move the sequence past the ids that are already in use.
+--    The pooled optimizer treats each value it reads as the top of a block of
+--    allocationSize ids, so the first value must be MAX(id) + allocationSize:
+--    the first block is then MAX(id) + 1 .. MAX(id) + 50 and reuses no ids.
+SELECT setval('metar_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM metar), false);
+
+-- 3. Ids are now assigned by the application, drop the identity default
+ALTER TABLE metar ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+-- 4. Grant privileges on the new sequence
+GRANT ALL PRIVILEGES ON SEQUENCE metar_seq TO metar_user_dev;
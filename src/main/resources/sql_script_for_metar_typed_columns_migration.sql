@@ -0,0 +1,25 @@
+-- ==========================================
+-- Airport METAR Service: METAR typed columns migration
+-- ==========================================
+-- Normalized values are stored next to the raw text: observation timestamp (UTC),
+-- receipt timestamp, wind speed in knots, visibility in meters, temperature and
+-- dew point in degrees Celsius and QNH in hPa.
+-- Run this once against an existing database created before these columns existed.
+-- Rows stored before the migration keep NULL in the new columns.
+
+\connect metar_service_dev;
+
+-- 1. Add the typed columns
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS observed_at TIMESTAMP(6) WITH TIME ZONE;
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS received_at TIMESTAMP(6) WITH TIME ZONE;
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS wind_speed_kt INTEGER;
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS visibility_m INTEGER;
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS temperature_c INTEGER;
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS dew_point_c INTEGER;
+ALTER TABLE metar ADD COLUMN IF NOT EXISTS qnh_hpa INTEGER;
+
+-- 2. Add the indexes for time range and threshold queries
+CREATE INDEX IF NOT EXISTS idx_metar_icao_code_observed_at_id ON metar (icao_code, observed_at, id);
+CREATE INDEX IF NOT EXISTS idx_metar_observed_at ON metar (observed_at);
+CREATE INDEX IF NOT EXISTS idx_metar_wind_speed_kt ON metar (wind_speed_kt);
+CREATE INDEX IF NOT EXISTS idx_metar_visibility_m ON metar (visibility_m);
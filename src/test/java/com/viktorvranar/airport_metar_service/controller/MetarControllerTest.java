@@ -1,18 +1,55 @@
 package com.viktorvranar.airport_metar_service.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viktorvranar.airport_metar_service.config.BinaryFormatsConfig;
 import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.MetarField;
+import com.viktorvranar.airport_metar_service.entity.MetarProjection;
 import com.viktorvranar.airport_metar_service.exception.MetarDataNotFoundException;
+import com.viktorvranar.airport_metar_service.service.MetarDemandTracker;
+import com.viktorvranar.airport_metar_service.service.MetarExportService;
+import com.viktorvranar.airport_metar_service.service.MetarHistoryPage;
+import com.viktorvranar.airport_metar_service.service.MetarIngestProgress;
+import com.viktorvranar.airport_metar_service.service.MetarIngestQueue;
+import com.viktorvranar.airport_metar_service.service.MetarResponseCache;
 import com.viktorvranar.airport_metar_service.service.MetarService;
+import com.viktorvranar.airport_metar_service.service.MetarStreamHub;
+import com.viktorvranar.airport_metar_service.service.MetarStreamIngestService;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -26,6 +63,24 @@ class MetarControllerTest {
     @MockBean
     private MetarService metarService;
 
+    @MockBean
+    private MetarStreamIngestService metarStreamIngestService;
+
+    @MockBean
+    private MetarIngestQueue metarIngestQueue;
+
+    @MockBean
+    private MetarExportService metarExportService;
+
+    @MockBean
+    private MetarResponseCache metarResponseCache;
+
+    @MockBean
+    private MetarStreamHub metarStreamHub;
+
+    @MockBean
+    private MetarDemandTracker metarDemandTracker;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -109,6 +164,7 @@ class MetarControllerTest {
                 .andExpect(jsonPath("$.temperature").value("15"))
                 .andExpect(jsonPath("$.dewPoint").value("10"))
                 .andExpect(jsonPath("$.altimeter").value("Q1013"));
+        verify(metarDemandTracker).recordRead(icaoCode);
     }
     
     @Test
@@ -132,6 +188,7 @@ class MetarControllerTest {
         metarData.setAltimeter("Q1013");
         
         when(metarService.getLatestMetarData(icaoCode)).thenReturn(metarData);
+        whenLatestFieldsReturn(metarData);
 
         // When & Then
         mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
@@ -171,6 +228,7 @@ class MetarControllerTest {
         metarData.setAltimeter("Q1013");
         
         when(metarService.getLatestMetarData(icaoCode)).thenReturn(metarData);
+        whenLatestFieldsReturn(metarData);
 
         // When & Then
         mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
@@ -230,6 +288,451 @@ class MetarControllerTest {
                 .andExpect(status().isNotFound());
     }
     
+    @Test
+    void testGetLatestMetarDataSetsValidators() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        MetarData metarData = observedMetarData(icaoCode);
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(metarData);
+        whenLatestFieldsReturn(metarData);
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"42\""))
+                .andExpect(header().string("Last-Modified", "Wed, 03 Sep 2025 07:00:00 GMT"))
+                .andExpect(header().string("Cache-Control", "no-cache"));
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode).param("decoded", "true"))
+                .andExpect(header().string("ETag", "\"42-d\""));
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode).param("fields", "temperature,windSpeed"))
+                .andExpect(header().string("ETag", "\"42-f120\""));
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode).param("fields", "windSpeed,temperature,windSpeed"))
+                .andExpect(header().string("ETag", "\"42-f120\""));
+    }
+
+    @Test
+    void testGetLatestMetarDataIfNoneMatch() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(observedMetarData(icaoCode));
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .header("If-None-Match", "\"42\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"42\""))
+                .andExpect(content().string(""));
+        verify(metarService, never()).decodeMetarData(any());
+
+        // Another representation of the same report has another ETag
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .param("decoded", "true")
+                .header("If-None-Match", "\"42\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetLatestMetarDataReparsedReportGetsNewETag() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        MetarData metarData = observedMetarData(icaoCode);
+        metarData.setParseVersion(2);
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(metarData);
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .header("If-None-Match", "\"42\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"42v2\""));
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode).param("decoded", "true"))
+                .andExpect(header().string("ETag", "\"42v2-d\""));
+    }
+
+    @Test
+    void testGetLatestMetarDataIfModifiedSince() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(observedMetarData(icaoCode));
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .header("If-Modified-Since", "Wed, 03 Sep 2025 07:00:00 GMT"))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .header("If-Modified-Since", "Wed, 03 Sep 2025 06:30:00 GMT"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetLatestMetarDataServesCachedBody() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        MetarData metarData = observedMetarData(icaoCode);
+        byte[] cached = "{\"id\":42,\"cached\":true}".getBytes(StandardCharsets.UTF_8);
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(metarData);
+        when(metarResponseCache.get(metarData, "42")).thenReturn(cached);
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/json"))
+                .andExpect(header().longValue("Content-Length", cached.length))
+                .andExpect(content().bytes(cached));
+        verify(metarResponseCache, never()).put(any(), anyString(), any());
+    }
+
+    @Test
+    void testGetLatestMetarDataCachesSerializedBody() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        MetarData metarData = observedMetarData(icaoCode);
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(metarData);
+        when(metarService.decodeMetarData(metarData)).thenReturn("Weather report for airport LDZA.");
+
+        // When
+        byte[] body = mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode).param("decoded", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.decodedData").value("Weather report for airport LDZA."))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Then
+        verify(metarResponseCache).put(metarData, "42-d", body);
+    }
+
+    @Test
+    void testGetLatestMetarDataCbor() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(observedMetarData(icaoCode));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/cbor"))
+                .andExpect(header().string("ETag", "\"42-cbor\""))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn();
+
+        // Then
+        Map<?, ?> body = BinaryFormatsConfig.cborMapper(objectMapper)
+                .readValue(result.getResponse().getContentAsByteArray(), Map.class);
+        assertEquals(42, body.get("id"));
+        assertEquals("LDZA", body.get("icaoCode"));
+        verify(metarResponseCache).put(any(), eq("42-cbor"), any());
+    }
+
+    @Test
+    void testGetLatestMetarDataNegotiatesEncoding() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(observedMetarData(icaoCode));
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .header("Accept", "application/json;q=0.5, application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-jackson-smile"))
+                .andExpect(header().string("ETag", "\"42-smile\""));
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .header("Accept", "*/*"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/json"))
+                .andExpect(header().string("ETag", "\"42\""));
+        mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .header("Accept", "text/csv"))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void testGetMetarDataHistorySmile() throws Exception {
+        // Given
+        when(metarService.getMetarDataHistory("LDZA", null, null, 100, null))
+                .thenReturn(new MetarHistoryPage<>(List.of(observedMetarData("LDZA")), "next"));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/airport/{icaoCode}/METAR/history", "LDZA")
+                .accept(BinaryFormatsConfig.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-jackson-smile"))
+                .andReturn();
+
+        // Then
+        Map<?, ?> body = BinaryFormatsConfig.smileMapper(objectMapper)
+                .readValue(result.getResponse().getContentAsByteArray(), Map.class);
+        assertEquals("next", body.get("nextCursor"));
+        assertEquals(42, ((Map<?, ?>) ((List<?>) body.get("reports")).get(0)).get("id"));
+    }
+
+    @Test
+    void testGetLatestMetarDataBulk() throws Exception {
+        // Given
+        MetarData ldza = observedMetarData("LDZA");
+        MetarData ldsp = observedMetarData("LDSP");
+        ldsp.setId(43L);
+        when(metarService.getLatestMetarData(anyCollection())).thenReturn(Map.of("LDZA", ldza, "LDSP", ldsp));
+
+        // When & Then
+        mockMvc.perform(get("/airport/METAR").param("icao", "LDSP,XXXX,LDZA,LDSP"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reports.LDSP.id").value(43L))
+                .andExpect(jsonPath("$.reports.LDZA.id").value(42L))
+                .andExpect(jsonPath("$.reports.XXXX").doesNotExist())
+                .andExpect(jsonPath("$.missing.length()").value(1))
+                .andExpect(jsonPath("$.missing[0]").value("XXXX"));
+        verify(metarService).getLatestMetarData(Set.of("LDSP", "XXXX", "LDZA"));
+    }
+
+    @Test
+    void testGetLatestMetarDataBulkRejectsTooManyAirports() throws Exception {
+        // Given
+        List<String> icaoCodes = new ArrayList<>();
+        for (int i = 0; i <= MetarController.MAX_BULK_ICAO_CODES; i++) {
+            icaoCodes.add(String.format("K%03d", i));
+        }
+
+        // When & Then
+        mockMvc.perform(get("/airport/METAR").param("icao", String.join(",", icaoCodes)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/airport/METAR"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testAwaitLatestMetarDataReturnsNewerReportRightAway() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        MetarStreamHub.Waiter waiter = mock(MetarStreamHub.Waiter.class);
+        when(metarStreamHub.awaitNewer(eq(icaoCode), eq(41L), any())).thenReturn(waiter);
+        when(metarStreamHub.cancel(waiter)).thenReturn(true);
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(observedMetarData(icaoCode));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode).param("sinceId", "41"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"42\""))
+                .andExpect(jsonPath("$.id").value(42L));
+    }
+
+    @Test
+    void testAwaitLatestMetarDataWokenByNewReport() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        MetarStreamHub.Waiter waiter = mock(MetarStreamHub.Waiter.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Consumer<MetarData>> callback = ArgumentCaptor.forClass(Consumer.class);
+        when(metarStreamHub.awaitNewer(eq(icaoCode), eq(42L), callback.capture())).thenReturn(waiter);
+        when(metarService.getLatestMetarData(icaoCode)).thenReturn(observedMetarData(icaoCode));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/airport/{icaoCode}/METAR", icaoCode)
+                .param("sinceId", "42")
+                .param("fields", "temperature"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MetarData newer = observedMetarData(icaoCode);
+        newer.setId(43L);
+        newer.setTemperature("16");
+        callback.getValue().accept(newer);
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.temperature").value("16"))
+                .andExpect(jsonPath("$.windSpeed").doesNotExist());
+        verify(metarService, never()).getLatestMetarData(eq(icaoCode), any());
+    }
+
+    @Test
+    void testAwaitLatestMetarDataRefusedWhenTooManyWaiting() throws Exception {
+        // Given
+        when(metarStreamHub.awaitNewer(anyString(), anyLong(), any())).thenReturn(null);
+
+        // When
+        MvcResult result = mockMvc.perform(get("/airport/{icaoCode}/METAR", "LDZA").param("sinceId", "42"))
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable());
+        verify(metarService, never()).getLatestMetarData("LDZA");
+    }
+
+    @Test
+    void testStreamLatestMetarData() throws Exception {
+        // Given
+        when(metarStreamHub.subscribe(any())).thenReturn(new SseEmitter());
+
+        // When & Then
+        mockMvc.perform(get("/airport/METAR/events").param("icao", "LDZA,LDSP,LDZA"))
+                .andExpect(request().asyncStarted());
+        verify(metarStreamHub).subscribe(Set.of("LDZA", "LDSP"));
+    }
+
+    @Test
+    void testStreamLatestMetarDataRefused() throws Exception {
+        // Given
+        when(metarStreamHub.subscribe(any())).thenReturn(null);
+
+        // When & Then
+        mockMvc.perform(get("/airport/METAR/events"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/airport/METAR/events").param("icao", "LDZA"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void testGetMetarDataHistory() throws Exception {
+        // Given
+        Instant from = Instant.parse("2025-09-01T00:00:00Z");
+        when(metarService.getMetarDataHistory("LDZA", from, null, 1, null))
+                .thenReturn(new MetarHistoryPage<>(List.of(observedMetarData("LDZA")), "next"));
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR/history", "LDZA")
+                .param("from", "2025-09-01T00:00:00Z")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reports[0].id").value(42L))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void testGetMetarDataHistoryBadRequest() throws Exception {
+        // Given
+        when(metarService.getMetarDataHistory("LDZA", null, null, 100, "bad"))
+                .thenThrow(new IllegalArgumentException("Malformed history cursor"));
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR/history", "LDZA").param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/airport/{icaoCode}/METAR/history", "LDZA").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/airport/{icaoCode}/METAR/history", "LDZA").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testExportMetarDataCsvGzip() throws Exception {
+        // Given
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(4);
+            out.write("id,icaoCode\r\n42,LDZA\r\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(metarExportService).export(eq("LDZA"), eq(Instant.parse("2025-09-01T00:00:00Z")), isNull(),
+                eq(MetarExportService.Format.CSV), any(OutputStream.class));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/airport/{icaoCode}/METAR/export", "LDZA")
+                .param("format", "csv")
+                .param("from", "2025-09-01T00:00:00Z")
+                .param("gzip", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        assertEquals(3_600_000L, result.getRequest().getAsyncContext().getTimeout());
+        result.getAsyncResult();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"LDZA-metar.csv\""));
+        byte[] body = result.getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertEquals("id,icaoCode\r\n42,LDZA\r\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testExportMetarDataRefusedWhenTooManyRunning() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return 0L;
+        }).when(metarExportService).export(eq("LDZA"), isNull(), isNull(),
+                eq(MetarExportService.Format.NDJSON), any(OutputStream.class));
+        List<MvcResult> running = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            running.add(mockMvc.perform(get("/airport/{icaoCode}/METAR/export", "LDZA"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn());
+        }
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR/export", "LDZA"))
+                .andExpect(status().isServiceUnavailable());
+        release.countDown();
+        for (MvcResult result : running) {
+            result.getAsyncResult();
+        }
+        verify(metarExportService, times(4)).export(eq("LDZA"), isNull(), isNull(),
+                eq(MetarExportService.Format.NDJSON), any(OutputStream.class));
+    }
+
+    @Test
+    void testExportMetarDataUnknownFormat() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR/export", "LDZA").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+        verify(metarExportService, never()).export(anyString(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testGetLatestMetarDataBulkWithFields() throws Exception {
+        // Given
+        Set<MetarField> fields = Set.of(MetarField.TEMPERATURE);
+        when(metarService.getLatestMetarData(Set.of("LDZA", "LDSP"), fields))
+                .thenReturn(Map.of("LDZA", MetarProjection.of(observedMetarData("LDZA"), fields)));
+
+        // When & Then
+        mockMvc.perform(get("/airport/METAR").param("icao", "LDZA,LDSP").param("fields", "temperature"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reports.LDZA.temperature").value("15"))
+                .andExpect(jsonPath("$.reports.LDZA.length()").value(1))
+                .andExpect(jsonPath("$.missing[0]").value("LDSP"));
+        verify(metarService, never()).getLatestMetarData(anyCollection());
+    }
+
+    @Test
+    void testGetMetarDataHistoryWithFields() throws Exception {
+        // Given
+        Set<MetarField> fields = Set.of(MetarField.ID, MetarField.OBSERVED_AT, MetarField.DEW_POINT);
+        when(metarService.getMetarDataHistory("LDZA", null, null, 100, null, fields))
+                .thenReturn(new MetarHistoryPage<>(List.of(MetarProjection.of(observedMetarData("LDZA"), fields)), null));
+
+        // When & Then
+        mockMvc.perform(get("/airport/{icaoCode}/METAR/history", "LDZA").param("fields", "observedAt,id,dewPoint,unknown"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.reports[0].id").value(42L))
+                .andExpect(jsonPath("$.reports[0].observedAt").value("2025-09-03T07:00:00Z"))
+                .andExpect(jsonPath("$.reports[0].dewPoint").isEmpty())
+                .andExpect(jsonPath("$.reports[0].length()").value(3))
+                .andExpect(jsonPath("$.nextCursor").isEmpty());
+    }
+
+    private void whenLatestFieldsReturn(MetarData metarData) {
+        when(metarService.getLatestMetarData(eq(metarData.getIcaoCode()), any()))
+                .thenAnswer(invocation -> MetarProjection.of(metarData, invocation.getArgument(1)));
+    }
+
+    private static MetarData observedMetarData(String icaoCode) {
+        MetarData metarData = new MetarData();
+        metarData.setId(42L);
+        metarData.setIcaoCode(icaoCode);
+        metarData.setRawData("METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+        metarData.setTemperature("15");
+        metarData.setWindSpeed("00");
+        metarData.setObservedAt(Instant.parse("2025-09-03T07:00:00Z"));
+        return metarData;
+    }
+    
     @Test
     void testStoreMetarDataValidationFailure() throws Exception {
         // Given
@@ -245,4 +748,128 @@ class MetarControllerTest {
                 .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testStoreMetarDataBatch() throws Exception {
+        // Given
+        MetarData first = new MetarData();
+        first.setId(1L);
+        first.setIcaoCode("LDZA");
+        MetarData second = new MetarData();
+        second.setId(2L);
+        second.setIcaoCode("LDSP");
+
+        when(metarService.createMetarData(anyString(), anyString(), any())).thenReturn(new MetarData());
+        when(metarService.saveMetarDataBatch(anyList())).thenReturn(List.of(first, second));
+
+        String body = "{\"referenceTime\": \"2025-01-31T23:59:59Z\", \"reports\": ["
+                + "{\"icaoCode\": \"LDZA\", \"data\": \"METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG\"},"
+                + "{\"icaoCode\": \"LDSP\", \"data\": \"METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012\", "
+                + "\"referenceTime\": \"2024-12-31T23:59:59Z\"}]}";
+
+        // When & Then
+        mockMvc.perform(post("/airport/METAR/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].icaoCode").value("LDZA"))
+                .andExpect(jsonPath("$[1].icaoCode").value("LDSP"));
+        verify(metarService).createMetarData("LDZA", "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG",
+                Instant.parse("2025-01-31T23:59:59Z"));
+        verify(metarService).createMetarData("LDSP", "METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012",
+                Instant.parse("2024-12-31T23:59:59Z"));
+    }
+
+    @Test
+    void testStoreMetarDataBatchValidationFailure() throws Exception {
+        // Given
+        String body = "{\"reports\": [{\"icaoCode\": \"LDZA\", \"data\": \"\"}]}";
+
+        // When & Then
+        mockMvc.perform(post("/airport/METAR/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStreamMetarData() throws Exception {
+        // Given
+        when(metarStreamIngestService.ingest(any(), any(), any()))
+                .thenReturn(new MetarIngestProgress(1, 3, 0, 0, 0, 2, 1, 0, true));
+
+        // When & Then
+        mockMvc.perform(post("/airport/METAR/stream?referenceTime=2025-01-31T23:59:59Z")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"icaoCode\": \"LDZA\", \"data\": \"METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(jsonPath("$.completed").value(true))
+                .andExpect(jsonPath("$.totalStored").value(2))
+                .andExpect(jsonPath("$.totalRejected").value(1));
+        verify(metarStreamIngestService).ingest(any(), eq(Instant.parse("2025-01-31T23:59:59Z")), any());
+    }
+
+    @Test
+    void testStoreMetarDataDeduplicated() throws Exception {
+        // Given
+        String icaoCode = "LDZA";
+        String rawData = "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG";
+
+        MetarData metarData = new MetarData();
+        metarData.setId(1L);
+        metarData.setIcaoCode(icaoCode);
+        metarData.setRawData(rawData);
+        metarData.setDeduplicated(true);
+
+        when(metarService.saveMetarData(anyString(), anyString())).thenReturn(metarData);
+
+        MetarController.MetarDataRequest request = new MetarController.MetarDataRequest();
+        request.setData(rawData);
+
+        // When & Then
+        mockMvc.perform(post("/airport/{icaoCode}/METAR", icaoCode)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1L))
+                .andExpect(jsonPath("$.deduplicated").value(true))
+                .andExpect(jsonPath("$.rawHash").doesNotExist());
+    }
+
+    @Test
+    void testStoreMetarDataAsync() throws Exception {
+        // Given
+        when(metarIngestQueue.isEnabled()).thenReturn(true);
+        when(metarIngestQueue.enqueue(anyString(), anyString())).thenReturn("ticket-1");
+
+        MetarController.MetarDataRequest request = new MetarController.MetarDataRequest();
+        request.setData("METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+
+        // When & Then
+        mockMvc.perform(post("/airport/{icaoCode}/METAR", "LDZA")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.ticket").value("ticket-1"))
+                .andExpect(jsonPath("$.icaoCode").value("LDZA"));
+    }
+
+    @Test
+    void testStoreMetarDataAsyncQueueFull() throws Exception {
+        // Given
+        when(metarIngestQueue.isEnabled()).thenReturn(true);
+        when(metarIngestQueue.enqueue(anyString(), anyString())).thenReturn(null);
+
+        MetarController.MetarDataRequest request = new MetarController.MetarDataRequest();
+        request.setData("METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+
+        // When & Then
+        mockMvc.perform(post("/airport/{icaoCode}/METAR", "LDZA")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+}
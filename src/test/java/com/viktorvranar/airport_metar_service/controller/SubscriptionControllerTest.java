@@ -1,20 +1,33 @@
 package com.viktorvranar.airport_metar_service.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viktorvranar.airport_metar_service.config.BinaryFormatsConfig;
 import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.service.SubscriptionBulkStatus;
+import com.viktorvranar.airport_metar_service.service.SubscriptionPage;
 import com.viktorvranar.airport_metar_service.service.SubscriptionService;
+import com.viktorvranar.airport_metar_service.service.SubscriptionSort;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
@@ -41,7 +54,6 @@ class SubscriptionControllerTest {
         subscription.setId(1L);
         subscription.setIcaoCode(icaoCode);
         
-        when(subscriptionService.existsByIcaoCode(icaoCode)).thenReturn(false);
         when(subscriptionService.createSubscription(icaoCode)).thenReturn(subscription);
 
         // Create request object
@@ -76,7 +88,7 @@ class SubscriptionControllerTest {
         // Given
         String icaoCode = "LDZA";
         
-        when(subscriptionService.existsByIcaoCode(icaoCode)).thenReturn(true);
+        when(subscriptionService.createSubscription(icaoCode)).thenReturn(null);
 
         // Create request object
         SubscriptionController.SubscriptionRequest request = new SubscriptionController.SubscriptionRequest();
@@ -108,6 +120,25 @@ class SubscriptionControllerTest {
                 .andExpect(jsonPath("$[1].icaoCode").value("LDDU"));
     }
     
+    @Test
+    void testGetAllSubscriptionsCbor() throws Exception {
+        // Given
+        Subscription subscription = new Subscription("LDZA");
+        subscription.setId(1L);
+        when(subscriptionService.findAllSubscriptions()).thenReturn(List.of(subscription));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/subscriptions").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/cbor"))
+                .andReturn();
+
+        // Then
+        List<?> body = BinaryFormatsConfig.cborMapper(objectMapper)
+                .readValue(result.getResponse().getContentAsByteArray(), List.class);
+        assertEquals("LDZA", ((Map<?, ?>) body.get(0)).get("icaoCode"));
+    }
+    
     @Test
     void testGetActiveSubscriptions() throws Exception {
         // Given
@@ -201,12 +232,62 @@ class SubscriptionControllerTest {
                 .andExpect(jsonPath("$[1].active").value(true));
     }
 
+    @Test
+    void testGetSubscriptionPage() throws Exception {
+        // Given
+        Subscription subscription = new Subscription("LDZA");
+        subscription.setId(1L);
+        when(subscriptionService.findSubscriptions(true, null, "LD", SubscriptionSort.ICAO_CODE_DESC, null, 1))
+                .thenReturn(new SubscriptionPage(List.of(subscription), "next"));
+
+        // When & Then
+        mockMvc.perform(get("/subscriptions")
+                .param("active", "true")
+                .param("icaoCodePrefix", "LD")
+                .param("sort", "-icaoCode")
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.subscriptions[0].icaoCode").value("LDZA"))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void testGetSortedSubscriptionsWithoutLimit() throws Exception {
+        // Given
+        Subscription subscription = new Subscription("LDZA");
+        subscription.setId(1L);
+        when(subscriptionService.findSubscriptions(null, null, null, SubscriptionSort.ICAO_CODE, null, Integer.MAX_VALUE))
+                .thenReturn(new SubscriptionPage(List.of(subscription), null));
+
+        // When & Then
+        mockMvc.perform(get("/subscriptions").param("sort", "icaoCode"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].icaoCode").value("LDZA"));
+    }
+
+    @Test
+    void testGetSubscriptionPageInvalidParameters() throws Exception {
+        // Given
+        when(subscriptionService.findSubscriptions(any(), any(), any(), any(), eq("bad"), anyInt()))
+                .thenThrow(new IllegalArgumentException("Malformed subscription cursor"));
+
+        // When & Then
+        mockMvc.perform(get("/subscriptions").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/subscriptions").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/subscriptions").param("sort", "name"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/subscriptions").param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testUnsubscribe() throws Exception {
         // Given
         String icaoCode = "LDZA";
         
-        when(subscriptionService.existsByIcaoCode(icaoCode)).thenReturn(true);
+        when(subscriptionService.deleteSubscription(icaoCode)).thenReturn(true);
 
         // When & Then
         mockMvc.perform(delete("/subscriptions/{icaoCode}", icaoCode))
@@ -218,7 +299,7 @@ class SubscriptionControllerTest {
         // Given
         String icaoCode = "LDZA";
         
-        when(subscriptionService.existsByIcaoCode(icaoCode)).thenReturn(false);
+        when(subscriptionService.deleteSubscription(icaoCode)).thenReturn(false);
 
         // When & Then
         mockMvc.perform(delete("/subscriptions/{icaoCode}", icaoCode))
@@ -313,4 +394,64 @@ class SubscriptionControllerTest {
                 .andExpect(jsonPath("$.icaoCode").value(icaoCode))
                 .andExpect(jsonPath("$.active").value(true));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSubscribeAll() throws Exception {
+        // Given
+        Map<String, SubscriptionBulkStatus> results = new LinkedHashMap<>();
+        results.put("LDZA", SubscriptionBulkStatus.CREATED);
+        results.put("LDSP", SubscriptionBulkStatus.EXISTS);
+        when(subscriptionService.createSubscriptions(any())).thenReturn(results);
+
+        SubscriptionController.BulkSubscriptionRequest request = new SubscriptionController.BulkSubscriptionRequest();
+        request.setIcaoCodes(Arrays.asList("LDZA", "bad", "LDSP", "LDZA"));
+
+        // When & Then
+        mockMvc.perform(post("/subscriptions/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.LDZA").value("CREATED"))
+                .andExpect(jsonPath("$.results.bad").value("INVALID"))
+                .andExpect(jsonPath("$.results.LDSP").value("EXISTS"));
+        verify(subscriptionService).createSubscriptions(new LinkedHashSet<>(List.of("LDZA", "LDSP")));
+    }
+
+    @Test
+    void testUnsubscribeAllAndUpdateStatuses() throws Exception {
+        // Given
+        when(subscriptionService.deleteSubscriptions(any())).thenReturn(Map.of("LDZA", SubscriptionBulkStatus.NOT_FOUND));
+        when(subscriptionService.updateSubscriptionStatuses(any(), eq(false)))
+                .thenReturn(Map.of("LDZA", SubscriptionBulkStatus.UPDATED));
+
+        SubscriptionController.BulkSubscriptionStatusRequest request = new SubscriptionController.BulkSubscriptionStatusRequest();
+        request.setIcaoCodes(List.of("LDZA"));
+        request.setActive("0");
+
+        // When & Then
+        mockMvc.perform(post("/subscriptions/bulk/delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.LDZA").value("NOT_FOUND"));
+        mockMvc.perform(put("/subscriptions/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results.LDZA").value("UPDATED"));
+    }
+
+    @Test
+    void testSubscribeAllValidationFailure() throws Exception {
+        // Given
+        SubscriptionController.BulkSubscriptionRequest request = new SubscriptionController.BulkSubscriptionRequest();
+        request.setIcaoCodes(List.of());
+
+        // When & Then
+        mockMvc.perform(post("/subscriptions/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+        verify(subscriptionService, never()).createSubscriptions(any());
+    }
+}
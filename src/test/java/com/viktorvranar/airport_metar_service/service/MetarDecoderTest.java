@@ -0,0 +1,51 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetarDecoderTest {
+
+    @Test
+    void testDecodeFullReport() {
+        // Given
+        MetarData metarData = new MetarData();
+        metarData.setIcaoCode("LDZA");
+        MetarParser.parse(metarData, "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 M02/M05 Q1013 NOSIG");
+
+        // When
+        String decoded = MetarDecoder.decode(metarData);
+
+        // Then
+        assertEquals("Weather report for airport LDZA. Observation time: 030700Z. Wind: from 000 degrees at 00 knots. "
+                + "Visibility: 9999 meters. Weather conditions: LDZA no significant weather scattered clouds at 040. "
+                + "Temperature: -02 degrees Celsius. Dew point: -05 degrees Celsius. Altimeter: Q1013.", decoded);
+    }
+
+    @Test
+    void testDecodeWeatherGroups() {
+        assertEquals("light snow mist", MetarDecoder.decodeWeatherConditions("-SN BR"));
+        assertEquals("heavy thunderstorm with rain", MetarDecoder.decodeWeatherConditions("+TSRA"));
+        assertEquals("freezing fog", MetarDecoder.decodeWeatherConditions("FZFG"));
+        assertEquals("rain and snow", MetarDecoder.decodeWeatherConditions("RASN"));
+        assertEquals("showers in the vicinity", MetarDecoder.decodeWeatherConditions("VCSH"));
+        assertEquals("thunderstorm", MetarDecoder.decodeWeatherConditions("TS"));
+    }
+
+    @Test
+    void testDecodeCloudLayers() {
+        assertEquals("few clouds at 050 broken clouds at 012 cumulonimbus overcast at 020 towering cumulus vertical visibility 001",
+                MetarDecoder.decodeWeatherConditions("FEW050 BKN012CB OVC020TCU VV001"));
+        assertEquals("sky clear", MetarDecoder.decodeWeatherConditions("SKC"));
+    }
+
+    @Test
+    void testDecodeDoesNotRewriteDecodedText() {
+        // The chained replacements turned RA into "runway altimeter " and the A of the station into "altimeter "
+        assertEquals("rain", MetarDecoder.decodeWeatherConditions("RA"));
+        assertEquals("KBOS RMK AO2 BKN", MetarDecoder.decodeWeatherConditions("KBOS  RMK AO2 BKN"));
+        assertEquals("SCT04 FEW040XX", MetarDecoder.decodeWeatherConditions("SCT04 FEW040XX"));
+        assertEquals("", MetarDecoder.decodeWeatherConditions(""));
+    }
+}
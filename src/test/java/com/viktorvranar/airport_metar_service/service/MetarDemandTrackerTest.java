@@ -0,0 +1,45 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetarDemandTrackerTest {
+
+    private static final Instant NOW = Instant.parse("2025-09-12T12:00:00Z");
+
+    @Test
+    void testReadRateDecaysWithHalfLife() {
+        // Given
+        MetarDemandTracker tracker = new MetarDemandTracker(Duration.ofHours(1), 10);
+
+        // When
+        for (int i = 0; i < 10; i++) {
+            tracker.recordRead("LDZA", NOW);
+        }
+
+        // Then
+        assertEquals(10 * Math.log(2), tracker.readsPerHour("LDZA", NOW), 1e-9);
+        assertEquals(5 * Math.log(2), tracker.readsPerHour("LDZA", NOW.plus(Duration.ofHours(1))), 1e-9);
+        assertEquals(0.0, tracker.readsPerHour("LDSP", NOW));
+    }
+
+    @Test
+    void testTracksAtMostMaxAirportsUntilPruned() {
+        // Given
+        MetarDemandTracker tracker = new MetarDemandTracker(Duration.ofHours(1), 1);
+        tracker.recordRead("LDZA", NOW);
+
+        // When
+        tracker.recordRead("LDSP", NOW);
+        tracker.recordRead("EHAM", NOW.plus(Duration.ofDays(1)));
+
+        // Then
+        assertEquals(0.0, tracker.readsPerHour("LDSP", NOW));
+        assertEquals(0.0, tracker.readsPerHour("LDZA", NOW));
+        assertTrue(tracker.readsPerHour("EHAM", NOW.plus(Duration.ofDays(1))) > 0);
+    }
+}
@@ -0,0 +1,141 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MetarExportServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ResultSet resultSet;
+
+    private MetarExportService metarExportService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        metarExportService = new MetarExportService(jdbcTemplate, transactionManager, new ObjectMapper(), 1);
+        when(resultSet.getLong("id")).thenReturn(42L);
+        when(resultSet.getString("icao_code")).thenReturn("LDZA");
+        when(resultSet.getString("raw_data")).thenReturn("METAR LDZA 030700Z 00000KT 9999 NSW \"SCT040\", 15/10 Q1013");
+        when(resultSet.getString("temperature")).thenReturn("15");
+        when(resultSet.getTimestamp("observed_at")).thenReturn(Timestamp.from(Instant.parse("2025-09-03T07:00:00Z")));
+        when(resultSet.getObject("temperature_c", Integer.class)).thenReturn(15);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void testExportNdjson() throws IOException {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = metarExportService.export("LDZA", null, null, MetarExportService.Format.NDJSON, out);
+
+        // Then
+        assertEquals(2, rows);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(3, lines.length);
+        assertEquals("", lines[2]);
+        assertTrue(lines[0].startsWith("{\"id\":42,\"icaoCode\":\"LDZA\","), lines[0]);
+        assertTrue(lines[0].contains("\"observedAt\":\"2025-09-03T07:00:00Z\""), lines[0]);
+        assertTrue(lines[0].contains("\"temperatureC\":15,"), lines[0]);
+        assertTrue(lines[0].contains("\"qnhHpa\":null}"), lines[0]);
+        assertEquals(lines[0], lines[1]);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testExportCsv() throws IOException {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        long rows = metarExportService.export("LDZA", null, null, MetarExportService.Format.CSV, out);
+
+        // Then
+        assertEquals(2, rows);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n", -1);
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("id,icaoCode,rawData,observationTime,"), lines[0]);
+        assertEquals("42,LDZA,\"METAR LDZA 030700Z 00000KT 9999 NSW \"\"SCT040\"\", 15/10 Q1013\",,,,,,15,,,"
+                + "2025-09-03T07:00:00Z,,,,15,,", lines[1]);
+    }
+
+    @Test
+    void testExportBindsTimeBoundsAndFetchSize() throws Exception {
+        // Given
+        Instant from = Instant.parse("2025-09-01T00:00:00Z");
+        Instant to = Instant.parse("2025-09-02T00:00:00Z");
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+
+        // When
+        metarExportService.export("LDZA", from, to, MetarExportService.Format.NDJSON, new ByteArrayOutputStream());
+
+        // Then
+        ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        verify(jdbcTemplate).query(creator.capture(), any(RowCallbackHandler.class));
+        creator.getValue().createPreparedStatement(connection);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(connection).prepareStatement(sql.capture(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY));
+        assertTrue(sql.getValue().endsWith("WHERE icao_code = ? AND observed_at >= ? AND observed_at < ? ORDER BY id"));
+        verify(statement).setFetchSize(1);
+        verify(statement).setObject(1, "LDZA");
+        verify(statement).setObject(2, Timestamp.from(from));
+        verify(statement).setObject(3, Timestamp.from(to));
+    }
+
+    @Test
+    void testExportRethrowsWriteFailure() {
+        // Given
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        // When & Then
+        IOException exception = assertThrows(IOException.class,
+                () -> metarExportService.export("LDZA", null, null, MetarExportService.Format.NDJSON, broken));
+        assertEquals("Broken pipe", exception.getMessage());
+        verify(transactionManager).rollback(any());
+    }
+}
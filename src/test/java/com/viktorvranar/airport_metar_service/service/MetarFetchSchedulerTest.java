@@ -0,0 +1,165 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.repository.MetarDataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class MetarFetchSchedulerTest {
+
+    @Mock
+    private MetarFetchService metarFetchService;
+
+    @Mock
+    private SubscriptionService subscriptionService;
+
+    @Mock
+    private MetarDataRepository metarDataRepository;
+
+    private MetarDemandTracker metarDemandTracker;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MetarFetchScheduler metarFetchScheduler;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        metarDemandTracker = new MetarDemandTracker(Duration.ofHours(1), 10000);
+        meterRegistry = new SimpleMeterRegistry();
+        metarFetchScheduler = new MetarFetchScheduler(metarFetchService, subscriptionService, metarDataRepository,
+                metarDemandTracker, meterRegistry, Duration.ofMinutes(30), Duration.ofMinutes(5), Duration.ofMinutes(2),
+                Duration.ofMinutes(1), Duration.ofHours(1), Duration.ofDays(1), 0.1);
+        when(metarFetchService.fetchStations(any())).thenReturn(new MetarFetchService.FetchCycleResult(0, 0, 0, List.of()));
+        when(metarDataRepository.findIcaoCodeAndObservedAtByIcaoCodeInObservedSince(anyCollection(), any(Instant.class)))
+                .thenReturn(List.of());
+    }
+
+    @Test
+    void testNewStationsAreFetchedUnlessCurrentReportIsStored() {
+        // Given
+        subscribe("LDZA", "LDSP");
+        storedHourlyAtHalfPast("LDZA");
+        Instant now = Instant.parse("2025-09-12T12:40:00Z");
+
+        // When
+        metarFetchScheduler.fetchDue(now);
+
+        // Then
+        verify(metarFetchService, times(1)).fetchStations(List.of("LDSP"));
+        assertEquals(Instant.parse("2025-09-12T13:35:00Z"), metarFetchScheduler.getNextFetchAt("LDZA"));
+        assertEquals(Instant.parse("2025-09-12T13:10:00Z"), metarFetchScheduler.getNextFetchAt("LDSP"));
+        assertEquals(2.0, meterRegistry.get("metar.fetch.scheduled.stations").gauge().value());
+    }
+
+    @Test
+    void testLateReportIsRetriedWithBackoffUntilPublished() {
+        // Given
+        subscribe("LDZA");
+        storedHourlyAtHalfPast("LDZA");
+
+        // When
+        metarFetchScheduler.fetchDue(Instant.parse("2025-09-12T13:36:00Z"));
+        Instant firstRetry = metarFetchScheduler.getNextFetchAt("LDZA");
+        metarFetchScheduler.fetchDue(firstRetry);
+        Instant secondRetry = metarFetchScheduler.getNextFetchAt("LDZA");
+        when(metarFetchService.fetchStations(any()))
+                .thenReturn(new MetarFetchService.FetchCycleResult(1, 0, 0, List.of(report("LDZA", "2025-09-12T13:30:00Z"))));
+        metarFetchScheduler.fetchDue(secondRetry);
+
+        // Then
+        assertEquals(Instant.parse("2025-09-12T13:38:00Z"), firstRetry);
+        assertEquals(Instant.parse("2025-09-12T13:42:00Z"), secondRetry);
+        assertEquals(Instant.parse("2025-09-12T14:35:00Z"), metarFetchScheduler.getNextFetchAt("LDZA"));
+        assertEquals(1, meterRegistry.get("metar.fetch.report.delay").timer().count());
+        verify(metarFetchService, times(3)).fetchStations(List.of("LDZA"));
+    }
+
+    @Test
+    void testDemandShortensFetchInterval() {
+        // Given
+        subscribe("LDSP");
+        Instant now = Instant.parse("2025-09-12T12:40:00Z");
+        for (int i = 0; i < 100; i++) {
+            metarDemandTracker.recordRead("LDSP", now);
+        }
+
+        // When
+        metarFetchScheduler.fetchDue(now);
+
+        // Then
+        Instant next = metarFetchScheduler.getNextFetchAt("LDSP");
+        assertTrue(next.isAfter(now.plus(Duration.ofMinutes(7))));
+        assertTrue(next.isBefore(now.plus(Duration.ofMinutes(8))));
+    }
+
+    @Test
+    void testUnsubscribedStationsAreDropped() {
+        // Given
+        subscribe("LDZA", "LDSP");
+        Instant now = Instant.parse("2025-09-12T12:40:00Z");
+        metarFetchScheduler.fetchDue(now);
+        subscribe("LDZA");
+
+        // When
+        metarFetchScheduler.fetchDue(now.plus(Duration.ofHours(2)));
+
+        // Then
+        assertEquals(1, metarFetchScheduler.getStationCount());
+        assertNull(metarFetchScheduler.getNextFetchAt("LDSP"));
+        verify(metarFetchService, times(1)).fetchStations(List.of("LDZA"));
+    }
+
+    @Test
+    void testFailedFetchKeepsStationsScheduled() {
+        // Given
+        subscribe("LDSP");
+        Instant now = Instant.parse("2025-09-12T12:40:00Z");
+        when(metarFetchService.fetchStations(any())).thenThrow(new RuntimeException("Database error"));
+
+        // When
+        MetarFetchService.FetchCycleResult result = metarFetchScheduler.fetchDue(now);
+
+        // Then
+        assertNull(result);
+        assertEquals(Instant.parse("2025-09-12T13:10:00Z"), metarFetchScheduler.getNextFetchAt("LDSP"));
+    }
+
+    private void subscribe(String... icaoCodes) {
+        List<Subscription> subscriptions = new ArrayList<>();
+        for (String icaoCode : icaoCodes) {
+            subscriptions.add(new Subscription(icaoCode));
+        }
+        when(subscriptionService.getActiveSubscriptions()).thenReturn(subscriptions);
+    }
+
+    private void storedHourlyAtHalfPast(String icaoCode) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int hour = 8; hour <= 12; hour++) {
+            rows.add(new Object[]{icaoCode, Instant.parse(String.format("2025-09-12T%02d:30:00Z", hour))});
+        }
+        when(metarDataRepository.findIcaoCodeAndObservedAtByIcaoCodeInObservedSince(anyCollection(), any(Instant.class)))
+                .thenReturn(rows);
+    }
+
+    private static MetarData report(String icaoCode, String observedAt) {
+        MetarData metarData = new MetarData();
+        metarData.setIcaoCode(icaoCode);
+        metarData.setObservedAt(Instant.parse(observedAt));
+        return metarData;
+    }
+}
@@ -0,0 +1,168 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class MetarFetchServiceTest {
+
+    private static final String LDZA_FILE = "2025/09/12 12:30\nLDZA 121230Z 24008KT CAVOK 24/12 Q1018 NOSIG\n";
+
+    @Mock
+    private SubscriptionService subscriptionService;
+
+    @Mock
+    private MetarService metarService;
+
+    private HttpServer stubServer;
+
+    private final AtomicInteger bodiesSent = new AtomicInteger();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MetarFetchService metarFetchService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+
+        // Local stand-in for the NOAA station file server
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.createContext("/stations/LDZA.TXT", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] body = LDZA_FILE.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+                bodiesSent.incrementAndGet();
+            }
+            exchange.close();
+        });
+        stubServer.createContext("/stations/", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        stubServer.start();
+
+        String baseUrl = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/stations";
+        meterRegistry = new SimpleMeterRegistry();
+        metarFetchService = new MetarFetchService(subscriptionService, metarService, baseUrl, 4, Duration.ofSeconds(5),
+                "fixed", meterRegistry);
+
+        when(subscriptionService.getActiveSubscriptions())
+                .thenReturn(List.of(new Subscription("LDZA"), new Subscription("XXXX")));
+        when(metarService.createMetarData("LDZA", "LDZA 121230Z 24008KT CAVOK 24/12 Q1018 NOSIG")).thenReturn(new MetarData());
+        when(metarService.saveMetarDataBatch(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubServer.stop(0);
+    }
+
+    @Test
+    void testFetchStoresNewReports() {
+        // When
+        MetarFetchService.FetchCycleResult result = metarFetchService.fetchActiveSubscriptions();
+
+        // Then
+        assertEquals(1, result.getStored());
+        assertEquals(0, result.getNotModified());
+        assertEquals(1, result.getFailed());
+        assertEquals(1, result.getReports().size());
+        verify(metarService, times(1)).createMetarData("LDZA", "LDZA 121230Z 24008KT CAVOK 24/12 Q1018 NOSIG");
+        verify(metarService, times(1)).saveMetarDataBatch(anyList());
+    }
+
+    @Test
+    void testFetchStoresOneByOneWhenBatchFails() {
+        // Given
+        when(metarService.saveMetarDataBatch(anyList())).thenThrow(new IllegalStateException("batch failed"));
+        MetarData stored = new MetarData();
+        stored.setIcaoCode("LDZA");
+        when(metarService.saveMetarData("LDZA", "LDZA 121230Z 24008KT CAVOK 24/12 Q1018 NOSIG")).thenReturn(stored);
+
+        // When
+        MetarFetchService.FetchCycleResult result = metarFetchService.fetchActiveSubscriptions();
+        MetarFetchService.FetchCycleResult next = metarFetchService.fetchActiveSubscriptions();
+
+        // Then
+        assertEquals(1, result.getStored());
+        assertEquals(1, result.getFailed());
+        assertSame(stored, result.getReports().get(0));
+        // The station is remembered as stored, so the next fetch is conditional
+        assertEquals(1, next.getNotModified());
+        assertEquals(1, bodiesSent.get());
+    }
+
+    @Test
+    void testFetchDoesNotCountRepeatsAsStored() {
+        // Given
+        when(metarService.saveMetarDataBatch(anyList())).thenReturn(List.of());
+
+        // When
+        MetarFetchService.FetchCycleResult result = metarFetchService.fetchActiveSubscriptions();
+
+        // Then
+        assertEquals(0, result.getStored());
+        assertEquals(1, result.getReports().size());
+    }
+
+    @Test
+    void testFetchUsesConditionalRequestForUnchangedStation() {
+        // Given
+        metarFetchService.fetchActiveSubscriptions();
+
+        // When
+        MetarFetchService.FetchCycleResult result = metarFetchService.fetchActiveSubscriptions();
+
+        // Then
+        assertEquals(0, result.getStored());
+        assertEquals(1, result.getNotModified());
+        assertEquals(1, bodiesSent.get());
+        verify(metarService, times(1)).saveMetarDataBatch(anyList());
+    }
+
+    @Test
+    void testFetchStationsReturnsReportsAndCountsRequests() {
+        // Given
+        metarFetchService.fetchStations(List.of("LDZA"));
+
+        // When
+        MetarFetchService.FetchCycleResult result = metarFetchService.fetchStations(List.of("LDZA", "XXXX"));
+
+        // Then
+        assertTrue(result.getReports().isEmpty());
+        assertEquals(1.0, meterRegistry.get("metar.fetch.requests").tag("result", "updated").counter().count());
+        assertEquals(1.0, meterRegistry.get("metar.fetch.requests").tag("result", "not-modified").counter().count());
+        assertEquals(1.0, meterRegistry.get("metar.fetch.requests").tag("result", "failed").counter().count());
+        verify(subscriptionService, never()).getActiveSubscriptions();
+    }
+
+    @Test
+    void testExtractMetarLine() {
+        assertEquals("LDZA 121230Z 24008KT CAVOK 24/12 Q1018 NOSIG", MetarFetchService.extractMetarLine(LDZA_FILE));
+        assertNull(MetarFetchService.extractMetarLine("2025/09/12 12:30\n"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MetarIngestQueueTest {
+
+    @Mock
+    private MetarService metarService;
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(metarService.createMetarData(anyString(), anyString())).thenAnswer(invocation -> {
+            MetarData metarData = new MetarData();
+            metarData.setIcaoCode(invocation.getArgument(0));
+            metarData.setRawData(invocation.getArgument(1));
+            return metarData;
+        });
+        when(metarService.saveMetarDataBatch(anyList())).thenAnswer(invocation -> {
+            List<MetarData> batch = invocation.getArgument(0);
+            batchSizes.add(batch.size());
+            return batch;
+        });
+    }
+
+    @Test
+    void testQueuedReportsAreDrainedOnStop() {
+        // Given
+        MetarIngestQueue queue = new MetarIngestQueue(metarService, true, 100, 3, Duration.ofSeconds(1), Duration.ofSeconds(5));
+        queue.start();
+
+        // When
+        for (int i = 0; i < 7; i++) {
+            assertNotNull(queue.enqueue("LDZA", "METAR LDZA 0307" + i + "0Z 00000KT 9999 NSW 15/10 Q1013"));
+        }
+        queue.stop();
+
+        // Then
+        assertFalse(queue.isRunning());
+        assertEquals(0, queue.getQueueSize());
+        assertEquals(7, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 3));
+        assertNull(queue.enqueue("LDZA", "METAR LDZA 030800Z 00000KT 9999 NSW 15/10 Q1013"));
+    }
+
+    @Test
+    void testEnqueueRefusedWhenQueueIsFull() throws Exception {
+        // Given
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(metarService.saveMetarDataBatch(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.getArgument(0);
+        });
+        MetarIngestQueue queue = new MetarIngestQueue(metarService, true, 1, 10, Duration.ZERO, Duration.ofSeconds(5));
+        queue.start();
+
+        // Hold the writer inside its first batch so the queue can fill up
+        assertNotNull(queue.enqueue("LDZA", "METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // When
+        String queued = queue.enqueue("LDZA", "METAR LDZA 030710Z 00000KT 9999 NSW 15/10 Q1013");
+        String refused = queue.enqueue("LDZA", "METAR LDZA 030720Z 00000KT 9999 NSW 15/10 Q1013");
+
+        // Then
+        assertNotNull(queued);
+        assertNull(refused);
+        release.countDown();
+        queue.stop();
+        assertEquals(0, queue.getQueueSize());
+    }
+
+    @Test
+    void testDisabledQueueRefusesReports() {
+        // Given
+        MetarIngestQueue queue = new MetarIngestQueue(metarService, false, 100, 10, Duration.ofMillis(10), Duration.ofSeconds(5));
+        queue.start();
+
+        // When & Then
+        assertFalse(queue.isEnabled());
+        assertFalse(queue.isRunning());
+        assertNull(queue.enqueue("LDZA", "METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013"));
+    }
+}
@@ -0,0 +1,149 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.repository.MetarDataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MetarLatestCacheTest {
+
+    @Mock
+    private MetarDataRepository metarDataRepository;
+
+    @Mock
+    private SubscriptionService subscriptionService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MetarLatestCache metarLatestCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        metarLatestCache = new MetarLatestCache(metarDataRepository, subscriptionService, meterRegistry, true, 2, Duration.ofDays(2));
+    }
+
+    @Test
+    void testGetCountsHitsAndMisses() {
+        // Given
+        MetarData metarData = metarData(1L, "LDZA");
+        metarLatestCache.put(metarData);
+
+        // When
+        MetarData hit = metarLatestCache.get("LDZA");
+        MetarData miss = metarLatestCache.get("LDSP");
+
+        // Then
+        assertSame(metarData, hit);
+        assertNull(miss);
+        assertEquals(1.0, meterRegistry.get("metar.latest.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("metar.latest.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void testPutKeepsReportWithHighestId() {
+        // Given
+        MetarData newer = metarData(5L, "LDZA");
+        MetarData older = metarData(3L, "LDZA");
+
+        // When
+        metarLatestCache.put(newer);
+        metarLatestCache.put(older);
+
+        // Then
+        assertSame(newer, metarLatestCache.get("LDZA"));
+    }
+
+    @Test
+    void testPutInTransactionIsAppliedAfterCommit() {
+        // Given
+        MetarData metarData = metarData(1L, "LDZA");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // When
+            metarLatestCache.put(metarData);
+
+            // Then
+            assertEquals(0, metarLatestCache.size());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertSame(metarData, metarLatestCache.get("LDZA"));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testBoundEvictsLeastRecentlyReadAirport() throws InterruptedException {
+        // Given
+        metarLatestCache.put(metarData(1L, "LDZA"));
+        metarLatestCache.put(metarData(2L, "LDSP"));
+        Thread.sleep(1);
+        metarLatestCache.get("LDZA");
+
+        // When
+        metarLatestCache.put(metarData(3L, "LDDU"));
+
+        // Then
+        assertEquals(2, metarLatestCache.size());
+        assertNotNull(metarLatestCache.get("LDZA"));
+        assertNotNull(metarLatestCache.get("LDDU"));
+        assertNull(metarLatestCache.get("LDSP"));
+    }
+
+    @Test
+    void testEvictOnlyRemovesMatchingReport() {
+        // Given
+        metarLatestCache.put(metarData(5L, "LDZA"));
+
+        // When
+        metarLatestCache.evict("LDZA", 4L);
+
+        // Then
+        assertNotNull(metarLatestCache.get("LDZA"));
+        metarLatestCache.evict("LDZA", 5L);
+        assertNull(metarLatestCache.get("LDZA"));
+    }
+
+    @Test
+    void testWarmUpLoadsRecentSubscribedAirports() {
+        // Given
+        when(subscriptionService.getActiveSubscriptions())
+                .thenReturn(List.of(new Subscription("LDZA"), new Subscription("LDSP"), new Subscription("LDDU")));
+        MetarData stale = metarData(5L, "LDDU");
+        stale.setObservedAt(Instant.now().minus(Duration.ofDays(3)));
+        when(metarDataRepository.findLatestForEachIcaoCodeIn(any(String[].class)))
+                .thenReturn(List.of(metarData(7L, "LDZA"), metarData(6L, "LDSP"), stale));
+
+        // When
+        metarLatestCache.warmUp();
+
+        // Then
+        assertEquals(2, metarLatestCache.size());
+        assertEquals(7L, metarLatestCache.get("LDZA").getId());
+        assertNull(metarLatestCache.get("LDDU"));
+        verify(metarDataRepository).findLatestForEachIcaoCodeIn(new String[] {"LDZA", "LDSP", "LDDU"});
+    }
+
+    private static MetarData metarData(long id, String icaoCode) {
+        MetarData metarData = new MetarData();
+        metarData.setId(id);
+        metarData.setIcaoCode(icaoCode);
+        metarData.setObservedAt(Instant.now());
+        return metarData;
+    }
+}
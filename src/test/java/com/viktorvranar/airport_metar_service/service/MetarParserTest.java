@@ -0,0 +1,229 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetarParserTest {
+
+    @Test
+    void testParseFullReport() {
+        // Given
+        MetarData metarData = new MetarData();
+
+        // When
+        MetarParser.parse(metarData, "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+
+        // Then
+        assertEquals("030700Z", metarData.getObservationTime());
+        assertEquals("000", metarData.getWindDirection());
+        assertEquals("00", metarData.getWindSpeed());
+        assertEquals("9999", metarData.getVisibility());
+        assertEquals("LDZA NSW SCT040", metarData.getWeatherConditions());
+        assertEquals("15", metarData.getTemperature());
+        assertEquals("10", metarData.getDewPoint());
+        assertEquals("Q1013", metarData.getAltimeter());
+    }
+
+    @Test
+    void testParseNegativeTemperaturesAndInches() {
+        // Given
+        MetarData metarData = new MetarData();
+
+        // When
+        MetarParser.parse(metarData, "KBOS 121254Z 05016KT 1SM -SN BR OVC009 M01/M03 A2975 RMK AO2");
+
+        // Then
+        assertEquals("050", metarData.getWindDirection());
+        assertEquals("16", metarData.getWindSpeed());
+        assertEquals("1SM", metarData.getVisibility());
+        assertEquals("KBOS -SN BR OVC009 RMK AO2", metarData.getWeatherConditions());
+        assertEquals("M01", metarData.getTemperature());
+        assertEquals("M03", metarData.getDewPoint());
+        assertEquals("A2975", metarData.getAltimeter());
+    }
+
+    @Test
+    void testParseIgnoresRunwayVisualRangeAndVariableWind() {
+        // Given
+        MetarData metarData = new MetarData();
+
+        // When
+        MetarParser.parse(metarData, "METAR LDZA 120600Z 00000KT 210V280 0300 R23/0550N FG 08/08 Q1020");
+
+        // Then
+        assertEquals("0300", metarData.getVisibility());
+        assertEquals("LDZA FG", metarData.getWeatherConditions());
+    }
+
+    @Test
+    void testParseWithoutWeatherConditionsLeavesFieldUnset() {
+        // Given
+        MetarData metarData = new MetarData();
+
+        // When
+        MetarParser.parse(metarData, "121200Z 12008KT 9999 15/10 Q1013");
+
+        // Then
+        assertNull(metarData.getWeatherConditions());
+    }
+
+    @Test
+    void testParseSetsNormalizedValues() {
+        // Given
+        MetarData metarData = new MetarData();
+        Instant receivedAt = Instant.parse("2025-09-03T07:05:00Z");
+
+        // When
+        MetarParser.parse(metarData, "METAR LDZA 030700Z 24010MPS 0800 FG VV001 M02/M05 Q1013", receivedAt);
+
+        // Then
+        assertEquals(Instant.parse("2025-09-03T07:00:00Z"), metarData.getObservedAt());
+        assertEquals(19, metarData.getWindSpeedKt());
+        assertEquals(800, metarData.getVisibilityM());
+        assertEquals(-2, metarData.getTemperatureC());
+        assertEquals(-5, metarData.getDewPointC());
+        assertEquals(1013, metarData.getQnhHpa());
+    }
+
+    @Test
+    void testParseConvertsImperialUnits() {
+        // Given
+        MetarData metarData = new MetarData();
+
+        // When
+        MetarParser.parse(metarData, "KJFK 121251Z 18012KT 10SM FEW050 24/16 A3002 RMK AO2");
+
+        // Then
+        assertNull(metarData.getObservedAt());
+        assertEquals(12, metarData.getWindSpeedKt());
+        assertEquals(16093, metarData.getVisibilityM());
+        assertEquals(24, metarData.getTemperatureC());
+        assertEquals(1017, metarData.getQnhHpa());
+    }
+
+    @Test
+    void testResolveObservationTimeAcrossMonthBoundary() {
+        // Report from the last day of the previous month, received just after midnight
+        assertEquals(Instant.parse("2025-02-28T23:50:00Z"),
+                resolve("282350Z", "2025-03-01T00:05:00Z"));
+        // Day 31 does not exist in the current or previous month
+        assertEquals(Instant.parse("2025-01-31T23:50:00Z"),
+                resolve("312350Z", "2025-03-01T00:05:00Z"));
+        // Report slightly ahead of the receipt clock
+        assertEquals(Instant.parse("2025-04-01T00:00:00Z"),
+                resolve("010000Z", "2025-03-31T23:55:00Z"));
+        // Time only group
+        assertEquals(Instant.parse("2025-03-09T23:30:00Z"),
+                resolve("2330Z", "2025-03-10T00:10:00Z"));
+        // Not a valid time
+        assertNull(resolve("122460Z", "2025-03-12T12:00:00Z"));
+    }
+
+    @Test
+    void testParseResolvesObservationTimeAgainstReferenceTime() {
+        // Given
+        MetarData metarData = new MetarData();
+
+        // When, an archive report from January backfilled in March with the end of January as reference
+        MetarParser.parse(metarData, "METAR LDZA 150700Z 00000KT 9999 NSW 15/10 Q1013", Instant.parse("2025-01-31T23:59:59Z"));
+
+        // Then
+        assertEquals(Instant.parse("2025-01-15T07:00:00Z"), metarData.getObservedAt());
+    }
+
+    private static Instant resolve(String token, String receivedAt) {
+        return MetarParser.resolveObservationTime(token, 0, token.length(), Instant.parse(receivedAt));
+    }
+
+    @Test
+    void testParseMatchesRegexRulesOnCorpus() throws IOException {
+        // Given
+        List<String> reports = loadCorpus();
+        reports.add("METAR LDZA\n121200Z\r\n12008KT\t9999\fFEW040\u000B15/10 Q1013");
+        reports.add("");
+        reports.add("METAR ");
+
+        for (String report : reports) {
+            MetarData expected = new MetarData();
+            MetarData actual = new MetarData();
+
+            // When
+            parseWithRegexRules(expected, report);
+            MetarParser.parse(actual, report);
+
+            // Then
+            assertEquals(expected.getObservationTime(), actual.getObservationTime(), report);
+            assertEquals(expected.getWindDirection(), actual.getWindDirection(), report);
+            assertEquals(expected.getWindSpeed(), actual.getWindSpeed(), report);
+            assertEquals(expected.getVisibility(), actual.getVisibility(), report);
+            assertEquals(expected.getWeatherConditions(), actual.getWeatherConditions(), report);
+            assertEquals(expected.getTemperature(), actual.getTemperature(), report);
+            assertEquals(expected.getDewPoint(), actual.getDewPoint(), report);
+            assertEquals(expected.getAltimeter(), actual.getAltimeter(), report);
+        }
+    }
+
+    private List<String> loadCorpus() throws IOException {
+        List<String> reports = new ArrayList<>();
+        try (InputStream in = getClass().getResourceAsStream("/metar/corpus.txt");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                reports.add(line);
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * Regex based reference implementation of the METAR token rules, kept as the oracle
+     * the single-pass parser is checked against.
+     */
+    private static void parseWithRegexRules(MetarData metarData, String rawData) {
+        String data = rawData.startsWith("METAR ") ? rawData.substring(6) : rawData;
+        String[] tokens = data.split("\\s+");
+
+        for (String token : tokens) {
+            if (token.matches("\\d{4,6}Z")) {
+                metarData.setObservationTime(token);
+            } else if (token.matches("\\d{3,5}(MPS|KT|KMH)")) {
+                if (token.length() >= 6) {
+                    metarData.setWindDirection(token.substring(0, 3));
+                    String speedPart = token.substring(3);
+                    String unit = speedPart.replaceAll("\\d+", "");
+                    metarData.setWindSpeed(speedPart.replace(unit, ""));
+                }
+            } else if (token.matches("\\d{3}V\\d{3}")) {
+                // not stored
+            } else if (token.matches("\\d{4}|\\d{1,3}SM|M|P\\d{4}")) {
+                metarData.setVisibility(token);
+            } else if (token.matches("R\\d{2}[LRC]?/\\S+")) {
+                // not stored
+            } else if (token.matches("(NSW|NCD|SKC|CLR|VV\\d{3}|FEW\\d{3}|SCT\\d{3}|BKN\\d{3}|OVC\\d{3}|VV\\d{3}|-\\w{2,4}|\\+\\w{2,4}|\\w{2,4})")) {
+                String currentConditions = metarData.getWeatherConditions();
+                if (currentConditions == null || currentConditions.isEmpty()) {
+                    metarData.setWeatherConditions(token);
+                } else {
+                    metarData.setWeatherConditions(currentConditions + " " + token);
+                }
+            } else if (token.matches("[M]?\\d{1,2}/[M]?\\d{1,2}")) {
+                String[] tempDew = token.split("/");
+                metarData.setTemperature(tempDew[0]);
+                metarData.setDewPoint(tempDew[1]);
+            } else if (token.matches("[QA]\\d{4}")) {
+                metarData.setAltimeter(token);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.MetarReparseCheckpoint;
+import com.viktorvranar.airport_metar_service.repository.MetarReparseCheckpointRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+class MetarReparseJobTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private MetarReparseCheckpointRepository checkpointRepository;
+
+    @Mock
+    private MetarLatestCache metarLatestCache;
+
+    private MetarReparseJob metarReparseJob;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        metarReparseJob = new MetarReparseJob(jdbcTemplate, new TransactionTemplate(transactionManager),
+                checkpointRepository, metarLatestCache, 2, 2, 0, "");
+        when(checkpointRepository.findById(MetarReparseJob.JOB_NAME)).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void testRunReparsesChunksAndAdvancesCheckpoint() {
+        // Given
+        MetarData first = row(1L, "METAR LDZA 030700Z 24010KT 9999 FEW040 15/10 Q1013");
+        MetarData second = row(2L, "KBOS 030654Z 05016KT 1SM -SN OVC009 M01/M03 A2975");
+        MetarData third = row(7L, "METAR LDZA 030730Z 00000KT 0800 FG 08/08 Q1020");
+        List<MetarData> firstChunk = List.of(first, second);
+        List<MetarData> secondChunk = List.of(third);
+        stubChunk(0L, firstChunk);
+        stubChunk(2L, secondChunk);
+
+        // When
+        metarReparseJob.run(false);
+
+        // Then
+        assertEquals("030700Z", first.getObservationTime());
+        assertEquals(Instant.parse("2025-09-03T07:00:00Z"), first.getObservedAt());
+        assertEquals(10, first.getWindSpeedKt());
+        assertEquals(-1, second.getTemperatureC());
+        assertEquals(1007, second.getQnhHpa());
+        assertEquals(800, third.getVisibilityM());
+        verify(jdbcTemplate).batchUpdate(eq(MetarReparseJob.UPDATE_SQL), same(firstChunk), eq(2), any());
+        verify(jdbcTemplate).batchUpdate(eq(MetarReparseJob.UPDATE_SQL), same(secondChunk), eq(1), any());
+
+        ArgumentCaptor<MetarReparseCheckpoint> checkpoint = ArgumentCaptor.forClass(MetarReparseCheckpoint.class);
+        verify(checkpointRepository, times(2)).save(checkpoint.capture());
+        assertEquals(7L, checkpoint.getValue().getLastId());
+        assertEquals(3L, checkpoint.getValue().getRowsProcessed());
+        verify(metarLatestCache).evict("LDZA", 1L);
+        verify(metarLatestCache).evict("KBOS", 2L);
+        verify(metarLatestCache).evict("LDZA", 7L);
+
+        MetarReparseProgress progress = metarReparseJob.getProgress();
+        assertEquals(MetarReparseProgress.State.COMPLETED, progress.getState());
+        assertEquals(7L, progress.getLastId());
+        assertEquals(3L, progress.getRowsThisRun());
+    }
+
+    @Test
+    void testRunResolvesLegacyRowsAgainstLegacyReferenceTime() {
+        // Given
+        MetarData legacy = row(1L, "METAR LDZA 150700Z 24010KT 9999 FEW040 15/10 Q1013");
+        legacy.setReceivedAt(null);
+        stubChunk(0L, List.of(legacy));
+        MetarReparseJob withReference = new MetarReparseJob(jdbcTemplate, new TransactionTemplate(transactionManager),
+                checkpointRepository, metarLatestCache, 2, 2, 0, "2025-01-31T23:59:59Z");
+
+        // When
+        withReference.run(false);
+
+        // Then
+        assertEquals(Instant.parse("2025-01-15T07:00:00Z"), legacy.getObservedAt());
+        assertEquals(0L, withReference.getProgress().getRowsUnresolved());
+    }
+
+    @Test
+    void testRunCountsLegacyRowsWithoutReferenceAsUnresolved() {
+        // Given
+        MetarData legacy = row(1L, "METAR LDZA 150700Z 24010KT 9999 FEW040 15/10 Q1013");
+        legacy.setReceivedAt(null);
+        stubChunk(0L, List.of(legacy));
+
+        // When
+        metarReparseJob.run(false);
+
+        // Then
+        assertNull(legacy.getObservedAt());
+        assertEquals("150700Z", legacy.getObservationTime());
+        assertEquals(1L, metarReparseJob.getProgress().getRowsUnresolved());
+    }
+
+    @Test
+    void testRunResumesFromCheckpoint() {
+        // Given
+        MetarReparseCheckpoint checkpoint = new MetarReparseCheckpoint(MetarReparseJob.JOB_NAME);
+        checkpoint.setLastId(100L);
+        checkpoint.setRowsProcessed(80L);
+        when(checkpointRepository.findById(MetarReparseJob.JOB_NAME)).thenReturn(Optional.of(checkpoint));
+        stubChunk(100L, List.of());
+
+        // When
+        metarReparseJob.run(false);
+
+        // Then
+        verify(jdbcTemplate).query(eq(MetarReparseJob.SELECT_CHUNK_SQL), any(RowMapper.class), eq(100L), eq(2));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList(), anyInt(), any());
+        MetarReparseProgress progress = metarReparseJob.getProgress();
+        assertEquals(MetarReparseProgress.State.COMPLETED, progress.getState());
+        assertEquals(100L, progress.getLastId());
+        assertEquals(80L, progress.getRowsProcessed());
+    }
+
+    @Test
+    void testRunRestartIgnoresCheckpoint() {
+        // Given
+        stubChunk(0L, List.of());
+
+        // When
+        metarReparseJob.run(true);
+
+        // Then
+        verify(checkpointRepository, never()).findById(anyString());
+        verify(jdbcTemplate).query(eq(MetarReparseJob.SELECT_CHUNK_SQL), any(RowMapper.class), eq(0L), eq(2));
+    }
+
+    @Test
+    void testFailedChunkKeepsCheckpointPosition() {
+        // Given
+        List<MetarData> chunk = List.of(row(1L, "METAR LDZA 030700Z 24010KT 9999 15/10 Q1013"),
+                row(2L, "METAR LDZA 030730Z 24010KT 9999 15/10 Q1013"));
+        stubChunk(0L, chunk);
+        when(jdbcTemplate.batchUpdate(eq(MetarReparseJob.UPDATE_SQL), same(chunk), eq(2), any()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+        // When
+        metarReparseJob.run(false);
+
+        // Then
+        MetarReparseProgress progress = metarReparseJob.getProgress();
+        assertEquals(MetarReparseProgress.State.FAILED, progress.getState());
+        assertEquals(0L, progress.getLastId());
+        assertEquals("timeout", progress.getError());
+        verify(checkpointRepository, never()).save(any());
+    }
+
+    private void stubChunk(long afterId, List<MetarData> rows) {
+        when(jdbcTemplate.query(eq(MetarReparseJob.SELECT_CHUNK_SQL), any(RowMapper.class), eq(afterId), eq(2)))
+                .thenReturn(rows);
+    }
+
+    private static MetarData row(long id, String rawData) {
+        MetarData metarData = new MetarData();
+        metarData.setId(id);
+        metarData.setIcaoCode(rawData.contains("KBOS") ? "KBOS" : "LDZA");
+        metarData.setRawData(rawData);
+        metarData.setReceivedAt(Instant.parse("2025-09-03T07:35:00Z"));
+        return metarData;
+    }
+}
@@ -0,0 +1,115 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetarResponseCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MetarResponseCache metarResponseCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        metarResponseCache = new MetarResponseCache(meterRegistry, true, 2);
+    }
+
+    @Test
+    void testGetReturnsBodyOfSameInstance() {
+        // Given
+        MetarData metarData = metarData(1L, "LDZA");
+        byte[] body = bytes("{\"id\":1}");
+        metarResponseCache.put(metarData, "1", body);
+
+        // When & Then
+        assertSame(body, metarResponseCache.get(metarData, "1"));
+        assertNull(metarResponseCache.get(metarData, "1-d"));
+        assertEquals(1.0, meterRegistry.get("metar.response.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("metar.response.cache.requests").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void testNewReportReplacesBodies() {
+        // Given
+        MetarData older = metarData(1L, "LDZA");
+        MetarData newer = metarData(2L, "LDZA");
+        metarResponseCache.put(older, "1", bytes("{\"id\":1}"));
+
+        // When
+        byte[] stale = metarResponseCache.get(newer, "2");
+        metarResponseCache.put(newer, "2", bytes("{\"id\":2}"));
+        metarResponseCache.put(older, "1-d", bytes("{}"));
+
+        // Then
+        assertNull(stale);
+        assertNull(metarResponseCache.get(older, "1"));
+        assertNull(metarResponseCache.get(older, "1-d"));
+        assertArrayEquals(bytes("{\"id\":2}"), metarResponseCache.get(newer, "2"));
+    }
+
+    @Test
+    void testReloadedReportDoesNotSeeBodiesOfReplacedInstance() {
+        // Given, e.g. the row was re-parsed in place and loaded again
+        MetarData cached = metarData(1L, "LDZA");
+        MetarData reloaded = metarData(1L, "LDZA");
+        metarResponseCache.put(cached, "1", bytes("{\"id\":1}"));
+
+        // When & Then
+        assertNull(metarResponseCache.get(reloaded, "1"));
+        metarResponseCache.put(reloaded, "1", bytes("{\"id\":1,\"temperature\":\"15\"}"));
+        assertArrayEquals(bytes("{\"id\":1,\"temperature\":\"15\"}"), metarResponseCache.get(reloaded, "1"));
+    }
+
+    @Test
+    void testBoundsAirportsAndRepresentations() {
+        // Given
+        MetarData ldza = metarData(1L, "LDZA");
+        metarResponseCache.put(ldza, "1", bytes("{}"));
+        metarResponseCache.put(metarData(2L, "LDSP"), "2", bytes("{}"));
+        metarResponseCache.get(ldza, "1");
+
+        // When
+        metarResponseCache.put(metarData(3L, "LDDU"), "3", bytes("{}"));
+        for (int i = 0; i < MetarResponseCache.MAX_REPRESENTATIONS_PER_AIRPORT + 1; i++) {
+            metarResponseCache.put(ldza, "1-f" + i, bytes("{}"));
+        }
+
+        // Then
+        assertEquals(2, metarResponseCache.size());
+        assertNotNull(metarResponseCache.get(ldza, "1"));
+        assertNull(metarResponseCache.get(ldza, "1-f" + (MetarResponseCache.MAX_REPRESENTATIONS_PER_AIRPORT - 1)));
+        assertEquals(1.0, meterRegistry.get("metar.response.cache.evictions").counter().count());
+    }
+
+    @Test
+    void testDisabledCacheKeepsNothing() {
+        // Given
+        metarResponseCache = new MetarResponseCache(new SimpleMeterRegistry(), false, 2);
+        MetarData metarData = metarData(1L, "LDZA");
+
+        // When
+        metarResponseCache.put(metarData, "1", bytes("{}"));
+
+        // Then
+        assertNull(metarResponseCache.get(metarData, "1"));
+        assertEquals(0, metarResponseCache.size());
+    }
+
+    private static MetarData metarData(long id, String icaoCode) {
+        MetarData metarData = new MetarData();
+        metarData.setId(id);
+        metarData.setIcaoCode(icaoCode);
+        return metarData;
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,8 @@
 package com.viktorvranar.airport_metar_service.service;
 
 import com.viktorvranar.airport_metar_service.entity.MetarData;
+import com.viktorvranar.airport_metar_service.entity.MetarField;
+import com.viktorvranar.airport_metar_service.entity.MetarProjection;
 import com.viktorvranar.airport_metar_service.exception.MetarDataNotFoundException;
 import com.viktorvranar.airport_metar_service.repository.MetarDataRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,10 +10,15 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -21,12 +28,21 @@ class MetarServiceTest {
     @Mock
     private MetarDataRepository metarDataRepository;
 
+    @Mock
+    private MetarLatestCache metarLatestCache;
+
+    @Mock
+    private MetarStreamHub metarStreamHub;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private MetarService metarService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        metarService = new MetarService(metarDataRepository);
+        metarService = new MetarService(metarDataRepository, metarLatestCache, metarStreamHub, transactionManager);
     }
 
     @Test
@@ -106,6 +122,208 @@ class MetarServiceTest {
         verify(metarDataRepository, times(1)).findFirstByIcaoCodeOrderByIdDesc(icaoCode);
     }
 
+    @Test
+    void testGetLatestMetarDataServedFromCache() {
+        // Given
+        String icaoCode = "LDZA";
+        MetarData metarData = new MetarData();
+        metarData.setId(1L);
+        metarData.setIcaoCode(icaoCode);
+        when(metarLatestCache.get(icaoCode)).thenReturn(metarData);
+
+        // When
+        MetarData result = metarService.getLatestMetarData(icaoCode);
+
+        // Then
+        assertSame(metarData, result);
+        verify(metarDataRepository, never()).findFirstByIcaoCodeOrderByIdDesc(icaoCode);
+    }
+
+    @Test
+    void testGetLatestMetarDataCacheMissPopulatesCache() {
+        // Given
+        String icaoCode = "LDZA";
+        MetarData metarData = new MetarData();
+        metarData.setId(1L);
+        metarData.setIcaoCode(icaoCode);
+        when(metarDataRepository.findFirstByIcaoCodeOrderByIdDesc(icaoCode)).thenReturn(Optional.of(metarData));
+
+        // When
+        metarService.getLatestMetarData(icaoCode);
+
+        // Then
+        verify(metarLatestCache).put(metarData);
+    }
+
+    @Test
+    void testSaveMetarDataUpdatesCache() {
+        // Given
+        MetarData savedMetarData = new MetarData();
+        savedMetarData.setId(1L);
+        savedMetarData.setIcaoCode("LDZA");
+        when(metarDataRepository.save(any(MetarData.class))).thenReturn(savedMetarData);
+
+        // When
+        metarService.saveMetarData("LDZA", "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+
+        // Then
+        verify(metarLatestCache).put(savedMetarData);
+        verify(metarStreamHub).publish(savedMetarData);
+    }
+
+    @Test
+    void testGetLatestMetarDataForManyAirports() {
+        // Given
+        MetarData ldza = new MetarData();
+        ldza.setId(1L);
+        ldza.setIcaoCode("LDZA");
+        MetarData ldsp = new MetarData();
+        ldsp.setId(2L);
+        ldsp.setIcaoCode("LDSP");
+        when(metarLatestCache.get("LDZA")).thenReturn(ldza);
+        when(metarDataRepository.findLatestForEachIcaoCodeIn(new String[] {"LDSP", "XXXX"})).thenReturn(List.of(ldsp));
+
+        // When
+        Map<String, MetarData> result = metarService.getLatestMetarData(List.of("LDZA", "LDSP", "XXXX"));
+
+        // Then
+        assertEquals(2, result.size());
+        assertSame(ldza, result.get("LDZA"));
+        assertSame(ldsp, result.get("LDSP"));
+        assertFalse(result.containsKey("XXXX"));
+        verify(metarLatestCache).put(ldsp);
+    }
+
+    @Test
+    void testGetLatestMetarDataFieldsFromCache() {
+        // Given
+        MetarData cached = historyRow(30L, "2025-09-03T07:30:00Z");
+        cached.setTemperature("15");
+        cached.setRawData("METAR LDZA 030730Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+        when(metarLatestCache.get("LDZA")).thenReturn(cached);
+
+        // When
+        MetarProjection projection = metarService.getLatestMetarData("LDZA", MetarField.parse("temperature,windSpeed"));
+
+        // Then
+        assertEquals(30L, projection.getId());
+        assertEquals(List.of("windSpeed", "temperature"), new ArrayList<>(projection.getFields().keySet()));
+        assertEquals("15", projection.getFields().get("temperature"));
+        assertNull(projection.getFields().get("windSpeed"));
+        verify(metarDataRepository, never()).findLatestProjection(anyString(), any());
+    }
+
+    @Test
+    void testGetLatestMetarDataFieldsFromDatabase() {
+        // Given
+        Set<MetarField> fields = Set.of(MetarField.TEMPERATURE);
+        MetarProjection ldsp = new MetarProjection(2L, "LDSP", null, null, Map.of("temperature", "20"));
+        when(metarDataRepository.findLatestProjection("LDZA", fields)).thenReturn(Optional.empty());
+        when(metarDataRepository.findLatestProjectionForEachIcaoCodeIn(new String[] {"LDSP", "XXXX"}, fields))
+                .thenReturn(List.of(ldsp));
+
+        // When
+        Map<String, MetarProjection> result = metarService.getLatestMetarData(List.of("LDSP", "XXXX"), fields);
+
+        // Then
+        assertEquals(Map.of("LDSP", ldsp), result);
+        assertThrows(MetarDataNotFoundException.class, () -> metarService.getLatestMetarData("LDZA", fields));
+        verify(metarDataRepository, never()).findLatestForEachIcaoCodeIn(any());
+        verify(metarLatestCache, never()).put(any());
+    }
+
+    @Test
+    void testGetMetarDataHistoryPagesWithFields() {
+        // Given
+        Set<MetarField> fields = Set.of(MetarField.TEMPERATURE);
+        Instant observedAt = Instant.parse("2025-09-03T07:00:00Z");
+        List<MetarProjection> rows = List.of(
+                new MetarProjection(30L, "LDZA", Instant.parse("2025-09-03T07:30:00Z"), null, Map.of()),
+                new MetarProjection(29L, "LDZA", observedAt, null, Map.of()));
+        when(metarDataRepository.findHistoryPageProjection("LDZA", Instant.EPOCH, Instant.parse("9999-12-31T00:00:00Z"),
+                Long.MIN_VALUE, 2, fields)).thenReturn(rows);
+
+        // When
+        MetarHistoryPage<MetarProjection> page = metarService.getMetarDataHistory("LDZA", null, null, 1, null, fields);
+
+        // Then
+        assertEquals(1, page.getReports().size());
+        assertEquals(new MetarHistoryCursor("LDZA", Instant.parse("2025-09-03T07:30:00Z"), 30L).encode(),
+                page.getNextCursor());
+        verify(metarDataRepository, never()).findHistoryPage(anyString(), any(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void testDecodeMetarDataIsMemoized() {
+        // Given
+        MetarData metarData = metarService.createMetarData("LDZA", "METAR LDZA 030700Z 00000KT 9999 -RA BKN012 15/10 Q1013");
+
+        // When
+        String first = metarService.decodeMetarData(metarData);
+        String second = metarService.decodeMetarData(metarData);
+
+        // Then
+        assertTrue(first.contains("Weather conditions: LDZA light rain broken clouds at 012."), first);
+        assertSame(first, second);
+        assertSame(first, metarData.getDecodedData());
+
+        // When parsed again
+        MetarParser.parse(metarData, "METAR LDZA 030730Z 00000KT 9999 NSW 15/10 Q1013");
+
+        // Then
+        assertNull(metarData.getDecodedData());
+        assertTrue(metarService.decodeMetarData(metarData).contains("no significant weather"));
+    }
+
+    @Test
+    void testGetMetarDataHistoryPages() {
+        // Given
+        String icaoCode = "LDZA";
+        Instant from = Instant.parse("2025-09-01T00:00:00Z");
+        Instant to = Instant.parse("2025-09-04T00:00:00Z");
+        List<MetarData> rows = List.of(
+                historyRow(30L, "2025-09-03T07:30:00Z"),
+                historyRow(29L, "2025-09-03T07:00:00Z"),
+                historyRow(28L, "2025-09-03T06:30:00Z"));
+        when(metarDataRepository.findHistoryPage(icaoCode, from, to, Long.MIN_VALUE, 3)).thenReturn(rows);
+
+        // When
+        MetarHistoryPage<MetarData> page = metarService.getMetarDataHistory(icaoCode, from, to, 2, null);
+
+        // Then
+        assertEquals(2, page.getReports().size());
+        assertEquals(29L, page.getReports().get(1).getId());
+        assertNotNull(page.getNextCursor());
+
+        // When
+        when(metarDataRepository.findHistoryPage(icaoCode, from, Instant.parse("2025-09-03T07:00:00Z"), 29L, 3))
+                .thenReturn(List.of(historyRow(28L, "2025-09-03T06:30:00Z")));
+        MetarHistoryPage<MetarData> next = metarService.getMetarDataHistory(icaoCode, from, to, 2, page.getNextCursor());
+
+        // Then
+        assertEquals(1, next.getReports().size());
+        assertNull(next.getNextCursor());
+    }
+
+    @Test
+    void testGetMetarDataHistoryRejectsForeignCursor() {
+        // Given
+        String cursor = new MetarHistoryCursor("LDSP", Instant.parse("2025-09-03T07:00:00Z"), 29L).encode();
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> metarService.getMetarDataHistory("LDZA", null, null, 2, cursor));
+        assertThrows(IllegalArgumentException.class, () -> metarService.getMetarDataHistory("LDZA", null, null, 2, "not-a-cursor"));
+        verify(metarDataRepository, never()).findHistoryPage(anyString(), any(), any(), anyLong(), anyInt());
+    }
+
+    private static MetarData historyRow(long id, String observedAt) {
+        MetarData metarData = new MetarData();
+        metarData.setId(id);
+        metarData.setIcaoCode("LDZA");
+        metarData.setObservedAt(Instant.parse(observedAt));
+        return metarData;
+    }
+
     @Test
     void testGetLatestMetarDataNotFound() {
         // Given
@@ -186,4 +404,149 @@ class MetarServiceTest {
         assertEquals("Q1014", secondMetar.getAltimeter());
         verify(metarDataRepository, times(1)).findByIcaoCode(icaoCode);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSaveMetarDataBatch() {
+        // Given
+        List<MetarData> batch = new ArrayList<>();
+        batch.add(metarService.createMetarData("LDZA", "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG"));
+        batch.add(metarService.createMetarData("LDSP", "METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012"));
+        when(metarDataRepository.saveAllAndFlush(batch)).thenReturn(batch);
+
+        // When
+        List<MetarData> result = metarService.saveMetarDataBatch(batch);
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals("LDZA", result.get(0).getIcaoCode());
+        assertEquals("Q1013", result.get(0).getAltimeter());
+        assertEquals("LDSP", result.get(1).getIcaoCode());
+        assertEquals("130", result.get(1).getWindDirection());
+        assertEquals("15", result.get(1).getWindSpeed());
+        verify(metarDataRepository, times(1)).saveAllAndFlush(batch);
+        verify(metarDataRepository, never()).save(any(MetarData.class));
+    }
+
+    @Test
+    void testSaveMetarDataSkipsRepeatOfLatestReport() {
+        // Given
+        String icaoCode = "LDZA";
+        String rawData = "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG";
+        MetarData stored = metarService.createMetarData(icaoCode, rawData);
+        stored.setId(1L);
+        when(metarDataRepository.save(any(MetarData.class))).thenReturn(stored);
+        when(metarDataRepository.findFirstByIcaoCodeAndRawHash(icaoCode, stored.getRawHash())).thenReturn(Optional.of(stored));
+        metarService.saveMetarData(icaoCode, rawData);
+
+        // When
+        MetarData result = metarService.saveMetarData(icaoCode, rawData);
+
+        // Then
+        assertTrue(result.isDeduplicated());
+        assertEquals(1L, result.getId());
+        verify(metarDataRepository, times(1)).save(any(MetarData.class));
+    }
+
+    @Test
+    void testSaveMetarDataSkipsRepeatOfCachedReportWithoutQuery() {
+        // Given
+        String icaoCode = "LDZA";
+        String rawData = "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG";
+        MetarData cached = metarService.createMetarData(icaoCode, rawData);
+        cached.setId(7L);
+        when(metarLatestCache.peek(icaoCode)).thenReturn(cached);
+
+        // When
+        MetarData result = metarService.saveMetarData(icaoCode, rawData);
+
+        // Then
+        assertTrue(result.isDeduplicated());
+        assertEquals(7L, result.getId());
+        assertNotSame(cached, result);
+        assertFalse(cached.isDeduplicated());
+        verify(metarDataRepository, never()).findFirstByIcaoCodeAndRawHash(anyString(), anyString());
+        verify(metarDataRepository, never()).save(any(MetarData.class));
+    }
+
+    @Test
+    void testSaveMetarDataSkipsRepeatRejectedByConstraint() {
+        // Given
+        String icaoCode = "LDZA";
+        String rawData = "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG";
+        MetarData stored = metarService.createMetarData(icaoCode, rawData);
+        stored.setId(1L);
+        when(metarDataRepository.save(any(MetarData.class))).thenThrow(new DataIntegrityViolationException("uk_metar_icao_code_raw_hash"));
+        when(metarDataRepository.findFirstByIcaoCodeAndRawHash(icaoCode, stored.getRawHash())).thenReturn(Optional.of(stored));
+
+        // When
+        MetarData result = metarService.saveMetarData(icaoCode, rawData);
+
+        // Then
+        assertTrue(result.isDeduplicated());
+        assertEquals(1L, result.getId());
+    }
+
+    @Test
+    void testSaveMetarDataBatchSkipsRepeats() {
+        // Given
+        MetarData alreadyStored = metarService.createMetarData("LDZA", "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+        MetarData fresh = metarService.createMetarData("LDSP", "METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012");
+        MetarData repeatInBatch = metarService.createMetarData("LDSP", "METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012");
+        List<Object[]> existing = new ArrayList<>();
+        existing.add(new Object[] {"LDZA", alreadyStored.getRawHash()});
+        when(metarDataRepository.findIcaoCodeAndRawHashByPairs(any(String[].class), any(String[].class))).thenReturn(existing);
+        when(metarDataRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // When
+        List<MetarData> result = metarService.saveMetarDataBatch(List.of(alreadyStored, fresh, repeatInBatch));
+
+        // Then
+        assertEquals(1, result.size());
+        assertSame(fresh, result.get(0));
+        verify(metarDataRepository).findIcaoCodeAndRawHashByPairs(
+                new String[] {"LDZA", "LDSP", "LDSP"},
+                new String[] {alreadyStored.getRawHash(), fresh.getRawHash(), repeatInBatch.getRawHash()});
+    }
+
+    @Test
+    void testSaveMetarDataBatchSavesOneByOneAfterConcurrentRepeat() {
+        // Given
+        MetarData fresh = metarService.createMetarData("LDZA", "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+        MetarData storedMeanwhile = metarService.createMetarData("LDSP", "METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012");
+        MetarData existing = metarService.createMetarData("LDSP", "METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012");
+        existing.setId(5L);
+        when(metarDataRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> {
+            List<MetarData> batch = invocation.getArgument(0);
+            batch.get(0).setId(100L);
+            batch.get(1).setId(101L);
+            throw new DataIntegrityViolationException("uk_metar_icao_code_raw_hash");
+        });
+        when(metarDataRepository.save(fresh)).thenAnswer(invocation -> {
+            assertNull(fresh.getId());
+            fresh.setId(150L);
+            return fresh;
+        });
+        when(metarDataRepository.save(storedMeanwhile)).thenThrow(new DataIntegrityViolationException("uk_metar_icao_code_raw_hash"));
+        when(metarDataRepository.findFirstByIcaoCodeAndRawHash("LDSP", storedMeanwhile.getRawHash())).thenReturn(Optional.of(existing));
+
+        // When
+        List<MetarData> result = metarService.saveMetarDataBatch(List.of(fresh, storedMeanwhile));
+
+        // Then
+        assertEquals(1, result.size());
+        assertSame(fresh, result.get(0));
+        assertEquals(150L, result.get(0).getId());
+        verify(metarLatestCache).put(fresh);
+        verify(metarLatestCache, never()).put(storedMeanwhile);
+    }
+
+    @Test
+    void testCreateMetarDataSetsRawHash() {
+        // When
+        MetarData metarData = metarService.createMetarData("LDZA", "METAR LDZA 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+
+        // Then
+        assertEquals(64, metarData.getRawHash().length());
+        assertEquals(metarData.getRawHash(), MetarService.hashRawData(metarData.getRawData()));
+    }
+}
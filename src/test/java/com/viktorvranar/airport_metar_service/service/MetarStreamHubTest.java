@@ -0,0 +1,113 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetarStreamHubTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MetarStreamHub metarStreamHub;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules().enable(SerializationFeature.INDENT_OUTPUT);
+        metarStreamHub = new MetarStreamHub(objectMapper, meterRegistry, 4, "drop-oldest", 2, Duration.ofMinutes(1), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        metarStreamHub.close();
+    }
+
+    @Test
+    void testEncodeBuildsSingleLineFrame() throws Exception {
+        // Given
+        MetarData metarData = metarData(42L, "LDZA");
+
+        // When
+        String frame = new String(metarStreamHub.encode(metarData), StandardCharsets.UTF_8);
+
+        // Then
+        assertTrue(frame.startsWith("id:42\nevent:metar\ndata:{"), frame);
+        assertTrue(frame.endsWith("}\n\n"), frame);
+        String[] lines = frame.split("\n", -1);
+        assertEquals(5, lines.length, frame);
+        assertTrue(lines[2].startsWith("data:{") && lines[2].endsWith("}"), frame);
+    }
+
+    @Test
+    void testPublishOnlyEncodesForListenedAirports() {
+        // Given
+        assertNotNull(metarStreamHub.subscribe(Set.of("LDZA", "LDSP")));
+
+        // When
+        metarStreamHub.publish(metarData(1L, "LDZA"));
+        metarStreamHub.publish(metarData(2L, "EHAM"));
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("metar.stream.events").counter().count());
+    }
+
+    @Test
+    void testSubscribeRefusedBeyondMaxConnections() {
+        // Given
+        assertNotNull(metarStreamHub.subscribe(Set.of("LDZA")));
+        assertNotNull(metarStreamHub.subscribe(Set.of("LDSP")));
+
+        // When & Then
+        assertNull(metarStreamHub.subscribe(Set.of("EHAM")));
+        assertEquals(2, metarStreamHub.getConnectionCount());
+        assertEquals(2.0, meterRegistry.get("metar.stream.connections").gauge().value());
+    }
+
+    @Test
+    void testPublishWakesWaiterForNewerReportOnce() throws Exception {
+        // Given
+        CompletableFuture<MetarData> woken = new CompletableFuture<>();
+        MetarStreamHub.Waiter waiter = metarStreamHub.awaitNewer("LDZA", 42L, woken::complete);
+
+        // When
+        metarStreamHub.publish(metarData(42L, "LDZA"));
+        metarStreamHub.publish(metarData(43L, "LDSP"));
+        metarStreamHub.publish(metarData(44L, "LDZA"));
+
+        // Then
+        assertEquals(44L, woken.get(5, TimeUnit.SECONDS).getId());
+        assertFalse(metarStreamHub.cancel(waiter));
+        assertEquals(0.0, meterRegistry.get("metar.long-poll.waiters").gauge().value());
+    }
+
+    @Test
+    void testAwaitNewerRefusedBeyondMaxWaiters() {
+        // Given
+        MetarStreamHub.Waiter waiter = metarStreamHub.awaitNewer("LDZA", 42L, metarData -> { });
+
+        // When & Then
+        assertNull(metarStreamHub.awaitNewer("LDSP", 42L, metarData -> { }));
+        assertTrue(metarStreamHub.cancel(waiter));
+        assertNotNull(metarStreamHub.awaitNewer("LDSP", 42L, metarData -> { }));
+    }
+
+    private static MetarData metarData(Long id, String icaoCode) {
+        MetarData metarData = new MetarData();
+        metarData.setId(id);
+        metarData.setIcaoCode(icaoCode);
+        metarData.setRawData("METAR " + icaoCode + " 030700Z 00000KT 9999 NSW SCT040 15/10 Q1013 NOSIG");
+        return metarData;
+    }
+}
@@ -0,0 +1,163 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.viktorvranar.airport_metar_service.entity.MetarData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MetarStreamIngestServiceTest {
+
+    @Mock
+    private MetarService metarService;
+
+    private MetarStreamIngestService metarStreamIngestService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        metarStreamIngestService = new MetarStreamIngestService(metarService, new ObjectMapper(), 2);
+        when(metarService.createMetarData(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            MetarData metarData = new MetarData();
+            metarData.setIcaoCode(invocation.getArgument(0));
+            metarData.setRawData(invocation.getArgument(1));
+            return metarData;
+        });
+        when(metarService.saveMetarDataBatch(anyList())).thenAnswer(invocation -> new ArrayList<>(invocation.getArgument(0)));
+    }
+
+    @Test
+    void testIngestStoresReportsInChunks() throws Exception {
+        // Given
+        String input = "{\"icaoCode\": \"LDZA\", \"data\": \"METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013\"}\n"
+                + "{\"icaoCode\": \"LDSP\", \"data\": \"METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012\"}\r\n"
+                + "\n"
+                + "{\"icaoCode\": \"LDDU\", \"data\": \"METAR LDDU 030700Z VRB02KT CAVOK 25/16 Q1016\"}";
+        List<MetarIngestProgress> chunks = new ArrayList<>();
+
+        // When
+        MetarIngestProgress summary = metarStreamIngestService.ingest(new StringReader(input), chunks::add);
+
+        // Then
+        assertEquals(2, chunks.size());
+        assertEquals(2, chunks.get(0).getChunkStored());
+        assertEquals(1, chunks.get(1).getChunkStored());
+        assertTrue(summary.isCompleted());
+        assertEquals(4, summary.getLinesRead());
+        assertEquals(3, summary.getTotalStored());
+        assertEquals(0, summary.getTotalRejected());
+        verify(metarService, times(2)).saveMetarDataBatch(anyList());
+    }
+
+    @Test
+    void testIngestCountsRejectedLines() throws Exception {
+        // Given
+        String input = "not json\n"
+                + "{\"icaoCode\": \"LDZA\"}\n"
+                + "{\"icaoCode\": \"\", \"data\": \"METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013\"}\n"
+                + "{\"icaoCode\": \"ldza; drop\", \"data\": \"METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013\"}\n"
+                + "{\"icaoCode\": \"LDZA\", \"data\": \"" + "X".repeat(MetarStreamIngestService.MAX_LINE_LENGTH) + "\"}\n"
+                + "{\"icaoCode\": \"LDZA\", \"data\": \"METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013\"}\n";
+        List<MetarIngestProgress> chunks = new ArrayList<>();
+
+        // When
+        MetarIngestProgress summary = metarStreamIngestService.ingest(new StringReader(input), chunks::add);
+
+        // Then
+        assertEquals(1, chunks.size());
+        assertEquals(1, chunks.get(0).getChunkStored());
+        assertEquals(5, chunks.get(0).getChunkRejected());
+        assertEquals(6, summary.getLinesRead());
+        assertEquals(1, summary.getTotalStored());
+        assertEquals(5, summary.getTotalRejected());
+    }
+
+    @Test
+    void testIngestPassesReferenceTime() throws Exception {
+        // Given
+        Instant streamReferenceTime = Instant.parse("2025-01-31T23:59:59Z");
+        String input = "{\"icaoCode\": \"LDZA\", \"data\": \"METAR LDZA 150700Z 00000KT 9999 NSW 15/10 Q1013\"}\n"
+                + "{\"icaoCode\": \"LDSP\", \"data\": \"METAR LDSP 150700Z 13015KT 9999 FEW030 22/14 Q1012\", "
+                + "\"referenceTime\": \"2024-12-31T23:59:59Z\"}\n"
+                + "{\"icaoCode\": \"LDDU\", \"data\": \"METAR LDDU 150700Z VRB02KT CAVOK 25/16 Q1016\", "
+                + "\"referenceTime\": \"last winter\"}\n";
+
+        // When
+        MetarIngestProgress summary = metarStreamIngestService.ingest(new StringReader(input), streamReferenceTime, progress -> {});
+
+        // Then
+        assertEquals(2, summary.getTotalStored());
+        assertEquals(1, summary.getTotalRejected());
+        verify(metarService).createMetarData("LDZA", "METAR LDZA 150700Z 00000KT 9999 NSW 15/10 Q1013", streamReferenceTime);
+        verify(metarService).createMetarData("LDSP", "METAR LDSP 150700Z 13015KT 9999 FEW030 22/14 Q1012",
+                Instant.parse("2024-12-31T23:59:59Z"));
+    }
+
+    @Test
+    void testIngestCountsFailedChunksAndGoesOn() {
+        // Given
+        when(metarService.saveMetarDataBatch(anyList()))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenAnswer(invocation -> new ArrayList<>(invocation.getArgument(0)));
+        String input = "{\"icaoCode\": \"LDZA\", \"data\": \"METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013\"}\n"
+                + "{\"icaoCode\": \"LDSP\", \"data\": \"METAR LDSP 030700Z 13015KT 9999 FEW030 22/14 Q1012\"}\n"
+                + "{\"icaoCode\": \"LDDU\", \"data\": \"METAR LDDU 030700Z VRB02KT CAVOK 25/16 Q1016\"}\n";
+        List<MetarIngestProgress> chunks = new ArrayList<>();
+
+        // When
+        MetarIngestProgress summary = metarStreamIngestService.ingest(new StringReader(input), chunks::add);
+
+        // Then
+        assertEquals(2, chunks.size());
+        assertEquals(0, chunks.get(0).getChunkStored());
+        assertEquals(2, chunks.get(0).getChunkFailed());
+        assertEquals(1, chunks.get(1).getChunkStored());
+        assertTrue(summary.isCompleted());
+        assertEquals(1, summary.getTotalStored());
+        assertEquals(2, summary.getTotalFailed());
+    }
+
+    @Test
+    void testIngestSummaryNotCompletedWhenInputBreaksOff() {
+        // Given
+        String input = "{\"icaoCode\": \"LDZA\", \"data\": \"METAR LDZA 030700Z 00000KT 9999 NSW 15/10 Q1013\"}\n"
+                + "{\"icaoCode\": \"LDSP\", \"data\": \"METAR LDSP";
+        StringReader received = new StringReader(input);
+        Reader reader = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = received.read(buffer, offset, length);
+                if (read < 0) {
+                    throw new IOException("Connection reset");
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        List<MetarIngestProgress> chunks = new ArrayList<>();
+
+        // When
+        MetarIngestProgress summary = metarStreamIngestService.ingest(reader, chunks::add);
+
+        // Then
+        assertFalse(summary.isCompleted());
+        assertEquals(1, summary.getTotalStored());
+        assertEquals(0, summary.getTotalRejected());
+    }
+}
@@ -0,0 +1,44 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StationCadenceTest {
+
+    @Test
+    void testLearnsHourlyPatternDespiteSpeci() {
+        // Given
+        StationCadence cadence = new StationCadence();
+
+        // When
+        for (String time : new String[]{"08:50", "09:50", "11:12", "10:50", "11:50", "12:50", "12:50"}) {
+            cadence.observe(Instant.parse("2025-09-12T" + time + ":00Z"));
+        }
+
+        // Then
+        assertEquals(Duration.ofHours(1), cadence.getPeriod());
+        assertEquals(Instant.parse("2025-09-12T12:50:00Z"), cadence.getLastObservedAt());
+        assertEquals(Instant.parse("2025-09-12T13:50:00Z"), cadence.nextIssueAfter(cadence.getLastObservedAt()));
+        assertEquals(Instant.parse("2025-09-12T11:50:00Z"), cadence.nextIssueAfter(Instant.parse("2025-09-12T11:12:00Z")));
+    }
+
+    @Test
+    void testPeriodUnknownUntilEnoughObservations() {
+        // Given
+        StationCadence cadence = new StationCadence();
+
+        // When
+        cadence.observe(Instant.parse("2025-09-12T12:00:00Z"));
+        cadence.observe(Instant.parse("2025-09-12T12:30:00Z"));
+        cadence.observe(Instant.parse("2025-09-12T13:00:00Z"));
+
+        // Then
+        assertNull(cadence.getPeriod());
+        assertNull(cadence.nextIssueAfter(cadence.getLastObservedAt()));
+        assertEquals(Instant.parse("2025-09-12T13:00:00Z"), cadence.getLastObservedAt());
+    }
+}
@@ -0,0 +1,181 @@
+package com.viktorvranar.airport_metar_service.service;
+
+import com.viktorvranar.airport_metar_service.entity.Subscription;
+import com.viktorvranar.airport_metar_service.repository.SubscriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SubscriptionCacheTest {
+
+    @Mock
+    private SubscriptionRepository subscriptionRepository;
+
+    private SubscriptionCache subscriptionCache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        subscriptionCache = new SubscriptionCache(subscriptionRepository);
+        when(subscriptionRepository.findAll(any(Sort.class)))
+                .thenReturn(List.of(subscription(1L, "LDZA", true), subscription(2L, "LDDU", false)));
+    }
+
+    @Test
+    void testReadsLoadSnapshotOnce() {
+        // When
+        List<Subscription> all = subscriptionCache.getAll();
+        List<Subscription> active = subscriptionCache.getByActiveStatus(true);
+        List<Subscription> inactive = subscriptionCache.getByActiveStatus(false);
+
+        // Then
+        assertEquals(List.of("LDZA", "LDDU"), all.stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("LDZA"), active.stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("LDDU"), inactive.stream().map(Subscription::getIcaoCode).toList());
+        assertThrows(UnsupportedOperationException.class, () -> all.add(new Subscription("EHAM")));
+        verify(subscriptionRepository, times(1)).findAll(any(Sort.class));
+    }
+
+    @Test
+    void testChangesReplaceSnapshot() {
+        // Given
+        List<Subscription> before = subscriptionCache.getAll();
+        Subscription created = subscription(3L, "EHAM", true);
+        Subscription deactivated = subscription(1L, "LDZA", false);
+
+        // When
+        subscriptionCache.onSubscriptionChanged(new SubscriptionChangedEvent(SubscriptionChangedEvent.Type.CREATED, List.of(created)));
+        subscriptionCache.onSubscriptionChanged(new SubscriptionChangedEvent(SubscriptionChangedEvent.Type.UPDATED, List.of(deactivated)));
+        subscriptionCache.onSubscriptionChanged(new SubscriptionChangedEvent(SubscriptionChangedEvent.Type.DELETED,
+                List.of(subscription(2L, "LDDU", false))));
+        created.setActive(false);
+
+        // Then
+        assertEquals(2, before.size());
+        assertEquals(List.of("LDZA", "EHAM"), subscriptionCache.getAll().stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("EHAM"), subscriptionCache.getByActiveStatus(true).stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("LDZA"), subscriptionCache.getByActiveStatus(false).stream().map(Subscription::getIcaoCode).toList());
+        verify(subscriptionRepository, times(1)).findAll(any(Sort.class));
+    }
+
+    @Test
+    void testFindBySubstringAndPrefix() {
+        // Given
+        when(subscriptionRepository.findAll(any(Sort.class))).thenReturn(List.of(
+                subscription(1L, "LDZA", true), subscription(2L, "LDDU", false), subscription(3L, "EDZA", true),
+                subscription(4L, "LDSP", true), subscription(5L, "KZAB", true)));
+
+        // When
+        List<Subscription> substring = subscriptionCache.find(null, List.of("%za%"), SubscriptionSort.ID, null,
+                Integer.MAX_VALUE).getSubscriptions();
+        List<Subscription> prefix = subscriptionCache.find(true, List.of("LD%"), SubscriptionSort.ICAO_CODE_DESC, null,
+                Integer.MAX_VALUE).getSubscriptions();
+        List<Subscription> both = subscriptionCache.find(null, List.of("%ZA%", "L%"), SubscriptionSort.ID, null,
+                Integer.MAX_VALUE).getSubscriptions();
+        List<Subscription> wildcard = subscriptionCache.find(null, List.of("_D%A"), SubscriptionSort.ID, null,
+                Integer.MAX_VALUE).getSubscriptions();
+        List<Subscription> none = subscriptionCache.find(null, List.of("%XY%"), SubscriptionSort.ID, null,
+                Integer.MAX_VALUE).getSubscriptions();
+
+        // Then
+        assertEquals(List.of("LDZA", "EDZA", "KZAB"), substring.stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("LDZA", "LDSP"), prefix.stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("LDZA"), both.stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("LDZA", "EDZA"), wildcard.stream().map(Subscription::getIcaoCode).toList());
+        assertTrue(none.isEmpty());
+    }
+
+    @Test
+    void testFindPagesWithCursor() {
+        // Given
+        when(subscriptionRepository.findAll(any(Sort.class))).thenReturn(List.of(
+                subscription(1L, "LDZA", true), subscription(2L, "EHAM", true), subscription(3L, "KJFK", true),
+                subscription(4L, "EDDF", true), subscription(5L, "LDSP", true)));
+
+        // When
+        SubscriptionPage first = subscriptionCache.find(null, List.of(), SubscriptionSort.ICAO_CODE, null, 2);
+        SubscriptionPage second = subscriptionCache.find(null, List.of(), SubscriptionSort.ICAO_CODE, first.getNextCursor(), 2);
+        SubscriptionPage last = subscriptionCache.find(null, List.of(), SubscriptionSort.ICAO_CODE, second.getNextCursor(), 2);
+        SubscriptionPage descending = subscriptionCache.find(null, List.of(), SubscriptionSort.ID_DESC, null, 3);
+
+        // Then
+        assertEquals(List.of("EDDF", "EHAM"), first.getSubscriptions().stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("KJFK", "LDSP"), second.getSubscriptions().stream().map(Subscription::getIcaoCode).toList());
+        assertEquals(List.of("LDZA"), last.getSubscriptions().stream().map(Subscription::getIcaoCode).toList());
+        assertNull(last.getNextCursor());
+        assertEquals(List.of(5L, 4L, 3L), descending.getSubscriptions().stream().map(Subscription::getId).toList());
+        assertThrows(IllegalArgumentException.class,
+                () -> subscriptionCache.find(null, List.of(), SubscriptionSort.ID, first.getNextCursor(), 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> subscriptionCache.find(null, List.of(), SubscriptionSort.ID, "not a cursor", 2));
+    }
+
+    @Test
+    void testFindSeesCommittedChanges() {
+        // Given
+        assertEquals(1, subscriptionCache.find(null, List.of("%A%"), SubscriptionSort.ID, null, 10).getSubscriptions().size());
+
+        // When
+        subscriptionCache.onSubscriptionChanged(new SubscriptionChangedEvent(SubscriptionChangedEvent.Type.CREATED,
+                List.of(subscription(3L, "EHAM", true))));
+
+        // Then
+        assertEquals(List.of("LDZA", "EHAM"), subscriptionCache.find(null, List.of("%A%"), SubscriptionSort.ID, null, 10)
+                .getSubscriptions().stream().map(Subscription::getIcaoCode).toList());
+    }
+
+    @Test
+    void testChangesPatchBuiltSearchIndexes() {
+        // Given
+        when(subscriptionRepository.findAll(any(Sort.class))).thenReturn(List.of(
+                subscription(1L, "LDZA", true), subscription(2L, "EHAM", true), subscription(3L, "KJFK", false),
+                subscription(4L, "EDDF", true), subscription(5L, "LDSP", true), subscription(6L, "ZZZZ", true)));
+        List<String> patterns = List.of("%", "%D%", "LD%", "%ZZ%", "E_D%", "%A", "K%", "%FF%");
+        for (SubscriptionSort sort : List.of(SubscriptionSort.ID, SubscriptionSort.ICAO_CODE)) {
+            subscriptionCache.find(null, List.of("%D%"), sort, null, 10);
+        }
+
+        // When
+        subscriptionCache.onSubscriptionChanged(new SubscriptionChangedEvent(SubscriptionChangedEvent.Type.CREATED,
+                List.of(subscription(7L, "LDDU", true), subscription(8L, "AAAA", true), subscription(9L, "KFFA", false))));
+        subscriptionCache.onSubscriptionChanged(new SubscriptionChangedEvent(SubscriptionChangedEvent.Type.UPDATED,
+                List.of(subscription(3L, "KJFK", true), subscription(5L, "LDSP", false))));
+        subscriptionCache.onSubscriptionChanged(new SubscriptionChangedEvent(SubscriptionChangedEvent.Type.DELETED,
+                List.of(subscription(1L, "LDZA", true), subscription(6L, "ZZZZ", true), subscription(99L, "XXXX", true))));
+
+        // Then
+        SubscriptionRepository reloadedRepository = mock(SubscriptionRepository.class);
+        when(reloadedRepository.findAll(any(Sort.class))).thenReturn(List.of(
+                subscription(2L, "EHAM", true), subscription(3L, "KJFK", true), subscription(4L, "EDDF", true),
+                subscription(5L, "LDSP", false), subscription(7L, "LDDU", true), subscription(8L, "AAAA", true),
+                subscription(9L, "KFFA", false)));
+        SubscriptionCache reloaded = new SubscriptionCache(reloadedRepository);
+        for (SubscriptionSort sort : SubscriptionSort.values()) {
+            for (String pattern : patterns) {
+                for (Boolean active : new Boolean[] {null, true, false}) {
+                    assertEquals(
+                            reloaded.find(active, List.of(pattern), sort, null, 100).getSubscriptions().stream()
+                                    .map(Subscription::getId).toList(),
+                            subscriptionCache.find(active, List.of(pattern), sort, null, 100).getSubscriptions().stream()
+                                    .map(Subscription::getId).toList(),
+                            sort + " " + pattern + " " + active);
+                }
+            }
+        }
+        assertEquals(List.of(2L, 3L, 4L, 7L, 8L), subscriptionCache.getByActiveStatus(true).stream().map(Subscription::getId).toList());
+    }
+
+    private static Subscription subscription(Long id, String icaoCode, boolean active) {
+        Subscription subscription = new Subscription(icaoCode);
+        subscription.setId(id);
+        subscription.setActive(active);
+        return subscription;
+    }
+}
@@ -4,11 +4,14 @@ import com.viktorvranar.airport_metar_service.entity.Subscription;
 import com.viktorvranar.airport_metar_service.repository.SubscriptionRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,12 +22,18 @@ class SubscriptionServiceTest {
     @Mock
     private SubscriptionRepository subscriptionRepository;
 
+    @Mock
+    private SubscriptionCache subscriptionCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private SubscriptionService subscriptionService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        subscriptionService = new SubscriptionService(subscriptionRepository);
+        subscriptionService = new SubscriptionService(subscriptionRepository, subscriptionCache, eventPublisher);
     }
 
     @Test
@@ -34,7 +43,7 @@ class SubscriptionServiceTest {
         Subscription subscription = new Subscription(icaoCode);
         subscription.setId(1L);
         
-        when(subscriptionRepository.save(any(Subscription.class))).thenReturn(subscription);
+        when(subscriptionRepository.insert(icaoCode)).thenReturn(Optional.of(subscription));
 
         // When
         Subscription result = subscriptionService.createSubscription(icaoCode);
@@ -43,7 +52,25 @@ class SubscriptionServiceTest {
         assertNotNull(result);
         assertEquals(icaoCode, result.getIcaoCode());
         assertTrue(result.isActive());
-        verify(subscriptionRepository, times(1)).save(any(Subscription.class));
+        verify(subscriptionRepository, times(1)).insert(icaoCode);
+        verify(subscriptionRepository, never()).existsByIcaoCode(anyString());
+        SubscriptionChangedEvent event = captureEvent();
+        assertEquals(SubscriptionChangedEvent.Type.CREATED, event.getType());
+        assertEquals(1L, event.getSubscriptions().get(0).getId());
+    }
+
+    @Test
+    void testCreateSubscriptionConflict() {
+        // Given
+        String icaoCode = "LDZA";
+        when(subscriptionRepository.insert(icaoCode)).thenReturn(Optional.empty());
+
+        // When
+        Subscription result = subscriptionService.createSubscription(icaoCode);
+
+        // Then
+        assertNull(result);
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
@@ -54,7 +81,7 @@ class SubscriptionServiceTest {
             new Subscription("LDDU")
         );
         
-        when(subscriptionRepository.findAll()).thenReturn(subscriptions);
+        when(subscriptionCache.getAll()).thenReturn(subscriptions);
 
         // When
         List<Subscription> result = subscriptionService.findAllSubscriptions();
@@ -62,7 +89,7 @@ class SubscriptionServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(2, result.size());
-        verify(subscriptionRepository, times(1)).findAll();
+        verifyNoInteractions(subscriptionRepository);
     }
     
     @Test
@@ -73,7 +100,7 @@ class SubscriptionServiceTest {
             new Subscription("LDDU")
         );
         
-        when(subscriptionRepository.findByActiveTrue()).thenReturn(subscriptions);
+        when(subscriptionCache.getByActiveStatus(true)).thenReturn(subscriptions);
 
         // When
         List<Subscription> result = subscriptionService.getActiveSubscriptions();
@@ -81,7 +108,7 @@ class SubscriptionServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(2, result.size());
-        verify(subscriptionRepository, times(1)).findByActiveTrue();
+        verifyNoInteractions(subscriptionRepository);
     }
     
     @Test
@@ -92,7 +119,7 @@ class SubscriptionServiceTest {
             new Subscription("LDDU")
         );
         
-        when(subscriptionRepository.findByActiveStatus(true)).thenReturn(subscriptions);
+        when(subscriptionCache.getByActiveStatus(true)).thenReturn(subscriptions);
 
         // When
         List<Subscription> result = subscriptionService.getSubscriptionsByActiveStatus(true);
@@ -100,7 +127,7 @@ class SubscriptionServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(2, result.size());
-        verify(subscriptionRepository, times(1)).findByActiveStatus(true);
+        verifyNoInteractions(subscriptionRepository);
     }
     
     @Test
@@ -112,7 +139,8 @@ class SubscriptionServiceTest {
         );
         String pattern = "%LD%";
         
-        when(subscriptionRepository.findByIcaoCodePattern(pattern)).thenReturn(subscriptions);
+        when(subscriptionCache.find(null, List.of(pattern), SubscriptionSort.ID, null, Integer.MAX_VALUE))
+                .thenReturn(new SubscriptionPage(subscriptions, null));
 
         // When
         List<Subscription> result = subscriptionService.getSubscriptionsByIcaoCodePattern(pattern);
@@ -120,7 +148,7 @@ class SubscriptionServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(2, result.size());
-        verify(subscriptionRepository, times(1)).findByIcaoCodePattern(pattern);
+        verifyNoInteractions(subscriptionRepository);
     }
     
     @Test
@@ -132,7 +160,8 @@ class SubscriptionServiceTest {
         );
         String pattern = "%LD%";
         
-        when(subscriptionRepository.findByActiveStatusAndIcaoCodePattern(true, pattern)).thenReturn(subscriptions);
+        when(subscriptionCache.find(true, List.of(pattern), SubscriptionSort.ID, null, Integer.MAX_VALUE))
+                .thenReturn(new SubscriptionPage(subscriptions, null));
 
         // When
         List<Subscription> result = subscriptionService.getSubscriptionsByActiveStatusAndIcaoCodePattern(true, pattern);
@@ -140,7 +169,21 @@ class SubscriptionServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(2, result.size());
-        verify(subscriptionRepository, times(1)).findByActiveStatusAndIcaoCodePattern(true, pattern);
+        verifyNoInteractions(subscriptionRepository);
+    }
+    
+    @Test
+    void testFindSubscriptions() {
+        // Given
+        SubscriptionPage page = new SubscriptionPage(List.of(new Subscription("LDZA")), "next");
+        when(subscriptionCache.find(false, List.of("%ZA%", "LD%"), SubscriptionSort.ICAO_CODE, "cursor", 10)).thenReturn(page);
+
+        // When
+        SubscriptionPage result = subscriptionService.findSubscriptions(false, "ZA", "LD", SubscriptionSort.ICAO_CODE, "cursor", 10);
+
+        // Then
+        assertSame(page, result);
+        verifyNoInteractions(subscriptionRepository);
     }
 
     @Test
@@ -182,26 +225,33 @@ class SubscriptionServiceTest {
         Subscription subscription = new Subscription(icaoCode);
         subscription.setId(1L);
         
-        when(subscriptionRepository.findByIcaoCode(icaoCode)).thenReturn(Optional.of(subscription));
+        when(subscriptionRepository.deleteByIcaoCode(icaoCode)).thenReturn(Optional.of(subscription));
 
         // When
-        subscriptionService.deleteSubscription(icaoCode);
+        boolean result = subscriptionService.deleteSubscription(icaoCode);
 
         // Then
-        verify(subscriptionRepository, times(1)).delete(subscription);
+        assertTrue(result);
+        verify(subscriptionRepository, times(1)).deleteByIcaoCode(icaoCode);
+        verify(subscriptionRepository, never()).findByIcaoCode(anyString());
+        SubscriptionChangedEvent event = captureEvent();
+        assertEquals(SubscriptionChangedEvent.Type.DELETED, event.getType());
+        assertEquals(icaoCode, event.getSubscriptions().get(0).getIcaoCode());
     }
 
     @Test
     void testDeleteSubscriptionNotFound() {
         // Given
         String icaoCode = "LDZA";
-        when(subscriptionRepository.findByIcaoCode(icaoCode)).thenReturn(Optional.empty());
+        when(subscriptionRepository.deleteByIcaoCode(icaoCode)).thenReturn(Optional.empty());
 
         // When
-        subscriptionService.deleteSubscription(icaoCode);
+        boolean result = subscriptionService.deleteSubscription(icaoCode);
 
         // Then
+        assertFalse(result);
         verify(subscriptionRepository, times(0)).delete(any(Subscription.class));
+        verifyNoInteractions(eventPublisher);
     }
     
     @Test
@@ -210,10 +260,9 @@ class SubscriptionServiceTest {
         String icaoCode = "LDZA";
         Subscription subscription = new Subscription(icaoCode);
         subscription.setId(1L);
-        subscription.setActive(true);
+        subscription.setActive(false);
         
-        when(subscriptionRepository.findByIcaoCode(icaoCode)).thenReturn(Optional.of(subscription));
-        when(subscriptionRepository.save(any(Subscription.class))).thenReturn(subscription);
+        when(subscriptionRepository.updateActiveByIcaoCode(icaoCode, false)).thenReturn(Optional.of(subscription));
         
         // When
         Subscription result = subscriptionService.updateSubscriptionStatus(icaoCode, false);
@@ -222,22 +271,68 @@ class SubscriptionServiceTest {
         assertNotNull(result);
         assertEquals(icaoCode, result.getIcaoCode());
         assertFalse(result.isActive());
-        verify(subscriptionRepository, times(1)).findByIcaoCode(icaoCode);
-        verify(subscriptionRepository, times(1)).save(subscription);
+        verify(subscriptionRepository, times(1)).updateActiveByIcaoCode(icaoCode, false);
+        verify(subscriptionRepository, never()).findByIcaoCode(anyString());
+        SubscriptionChangedEvent event = captureEvent();
+        assertEquals(SubscriptionChangedEvent.Type.UPDATED, event.getType());
+        assertFalse(event.getSubscriptions().get(0).isActive());
+        assertNotSame(subscription, event.getSubscriptions().get(0));
     }
     
     @Test
     void testUpdateSubscriptionStatusNotFound() {
         // Given
         String icaoCode = "LDZA";
-        when(subscriptionRepository.findByIcaoCode(icaoCode)).thenReturn(Optional.empty());
+        when(subscriptionRepository.updateActiveByIcaoCode(icaoCode, false)).thenReturn(Optional.empty());
         
         // When
         Subscription result = subscriptionService.updateSubscriptionStatus(icaoCode, false);
         
         // Then
         assertNull(result);
-        verify(subscriptionRepository, times(1)).findByIcaoCode(icaoCode);
+        verify(subscriptionRepository, times(1)).updateActiveByIcaoCode(icaoCode, false);
         verify(subscriptionRepository, times(0)).save(any(Subscription.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testCreateSubscriptions() {
+        // Given
+        Subscription created = new Subscription("LDSP");
+        created.setId(3L);
+        when(subscriptionRepository.insertAll(new String[] {"LDZA", "LDSP"})).thenReturn(List.of(created));
+
+        // When
+        Map<String, SubscriptionBulkStatus> result = subscriptionService.createSubscriptions(List.of("LDZA", "LDSP"));
+
+        // Then
+        assertEquals(List.of("LDZA", "LDSP"), List.copyOf(result.keySet()));
+        assertEquals(SubscriptionBulkStatus.EXISTS, result.get("LDZA"));
+        assertEquals(SubscriptionBulkStatus.CREATED, result.get("LDSP"));
+        SubscriptionChangedEvent event = captureEvent();
+        assertEquals(SubscriptionChangedEvent.Type.CREATED, event.getType());
+        assertEquals(List.of(3L), event.getSubscriptions().stream().map(Subscription::getId).toList());
+    }
+
+    @Test
+    void testDeleteAndUpdateSubscriptionsWithoutChanges() {
+        // Given
+        when(subscriptionRepository.deleteAllByIcaoCodeIn(any())).thenReturn(List.of());
+        when(subscriptionRepository.updateActiveByIcaoCodeIn(any(), eq(true))).thenReturn(List.of());
+
+        // When
+        Map<String, SubscriptionBulkStatus> deleted = subscriptionService.deleteSubscriptions(List.of("LDZA"));
+        Map<String, SubscriptionBulkStatus> updated = subscriptionService.updateSubscriptionStatuses(List.of("LDZA"), true);
+
+        // Then
+        assertEquals(Map.of("LDZA", SubscriptionBulkStatus.NOT_FOUND), deleted);
+        assertEquals(Map.of("LDZA", SubscriptionBulkStatus.NOT_FOUND), updated);
+        verifyNoInteractions(eventPublisher);
+    }
+
+    private SubscriptionChangedEvent captureEvent() {
+        ArgumentCaptor<SubscriptionChangedEvent> event = ArgumentCaptor.forClass(SubscriptionChangedEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        return event.getValue();
     }
-}
\ No newline at end of file
+}